@@ -1,11 +1,13 @@
 package com.github.kraudy.compiler;
 
 import java.util.List;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import java.io.File;
+import java.nio.file.Path;
 
 /*
  * Simple Unix-style CLI argument parser.
@@ -30,10 +32,31 @@ public class ArgParser {
 
     validOptions.put("diff", "diff");
 
+    validOptions.put("local-clock", "localClock"); // Estimate server time locally
+
+    validOptions.put("j", "jobs"); // Parallel build jobs
+    validOptions.put("jobs", "jobs");
+
+    validOptions.put("migrate-ahead", "migrateAhead"); // Targets prepared ahead of the build
+
+    validOptions.put("scan-threads", "scanThreads"); // Concurrent source reads of the dependency scan
+
+    validOptions.put("source-mirror", "sourceMirror"); // Local checkout of the spec sources
+    validOptions.put("no-local-sources", "noLocalSources"); // Scan sources from the IFS only
+
+    validOptions.put("impact", "impact"); // Rebuild set of changed sources or targets, nothing is built
+    validOptions.put("json", "json");
+
+    validOptions.put("graph", "graphFile"); // Dependency graph export, .dot or .json
+
+    validOptions.put("sql-package", "sqlPackage"); // Extended dynamic SQL package of the catalog queries
+
+    validOptions.put("exec-backend", "execBackend"); // Transport of the CL commands: jdbc or cmdcall
+
   }
 
   private static final List<String> booleanOptions = Arrays.asList(
-    "dryRun", "debug", "verbose", "clean", "diff", "noMigrate"
+    "dryRun", "debug", "verbose", "clean", "diff", "noMigrate", "localClock", "noLocalSources", "json"
   );
 
   public ArgParser(String[] args) {
@@ -137,17 +160,140 @@ public class ArgParser {
     return (boolean) options.getOrDefault("noMigrate", false);
 }
 
+  public boolean noLocalSources() {
+    return (boolean) options.getOrDefault("noLocalSources", false);
+  }
+
+  public boolean isJson() {
+    return (boolean) options.getOrDefault("json", false);
+  }
+
+  /* Comma separated stream files or target keys. Null when not in impact mode */
+  public List<String> getImpact() {
+    String impact = (String) options.get("impact");
+    if (impact == null) return null;
+
+    List<String> changes = new ArrayList<>();
+    for (String change : impact.split(",")) {
+      if (!change.trim().isEmpty()) changes.add(change.trim());
+    }
+    if (changes.isEmpty()) throw new IllegalArgumentException("Impact needs a stream file or target key");
+    return changes;
+  }
+
+  /* Null when not given */
+  public File getGraphFile() {
+    String graph = (String) options.get("graphFile");
+    if (graph == null) return null;
+
+    String name = graph.toLowerCase();
+    if (!name.endsWith(".dot") && !name.endsWith(".json")) {
+      throw new IllegalArgumentException("Graph file must end in .dot or .json: " + graph);
+    }
+    return new File(graph);
+  }
+
+  /* [LIB/]NAME in upper case. Null when not given */
+  public String getSqlPackage() {
+    String sqlPackage = (String) options.get("sqlPackage");
+    if (sqlPackage == null) return null;
+
+    sqlPackage = sqlPackage.trim().toUpperCase();
+    if (!sqlPackage.matches("([A-Z$#@][A-Z0-9$#@_.]{0,9}/)?[A-Z$#@][A-Z0-9$#@_.]{0,9}")) {
+      throw new IllegalArgumentException("Invalid SQL package, expected [LIB/]NAME: " + sqlPackage);
+    }
+    return sqlPackage;
+  }
+
+  /* jdbc when not given */
+  public String getExecBackend() {
+    String backend = (String) options.get("execBackend");
+    if (backend == null) return JdbcCommandBackend.NAME;
+
+    backend = backend.trim().toLowerCase();
+    if (!backend.equals(JdbcCommandBackend.NAME) && !backend.equals(CommandCallBackend.NAME)) {
+      throw new IllegalArgumentException("Invalid exec backend, expected " + JdbcCommandBackend.NAME + " or " +
+          CommandCallBackend.NAME + ": " + backend);
+    }
+    return backend;
+  }
+
+  public boolean isLocalClock() {
+    return (boolean) options.getOrDefault("localClock", false);
+  }
+
+  public int getJobs() {
+    String jobs = (String) options.get("jobs");
+    if (jobs == null) return 1;
+
+    try {
+      int value = Integer.parseInt(jobs);
+      if (value < 1) throw new IllegalArgumentException("Jobs must be at least 1: " + jobs);
+      return value;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number of jobs: " + jobs);
+    }
+  }
+
   
 
+  public int getMigrateAhead() {
+    String ahead = (String) options.get("migrateAhead");
+    if (ahead == null) return 0;
+
+    try {
+      int value = Integer.parseInt(ahead);
+      if (value < 0) throw new IllegalArgumentException("Migrate ahead can not be negative: " + ahead);
+      return value;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number of targets to migrate ahead: " + ahead);
+    }
+  }
+
+  /* 0 when not given, the dependency scan then uses its default */
+  public int getScanThreads() {
+    String threads = (String) options.get("scanThreads");
+    if (threads == null) return 0;
+
+    try {
+      int value = Integer.parseInt(threads);
+      if (value < 1) throw new IllegalArgumentException("Scan threads must be at least 1: " + threads);
+      return value;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid number of scan threads: " + threads);
+    }
+  }
+
+  /* Null when not given */
+  public Path getSourceMirror() {
+    String mirror = (String) options.get("sourceMirror");
+    if (mirror == null) return null;
+
+    File dir = new File(mirror);
+    if (!dir.isDirectory()) throw new IllegalArgumentException("Source mirror is not a directory: " + mirror);
+    return dir.toPath();
+  }
+
   // Print usage (call on error)
   public static String getUsage() {
     StringBuilder sb = new StringBuilder();
 
-    sb.append("Usage: compiler [-f|--file <YAML>] [--diff] [--dry-run] [-x] [-v]").append("\n");
+    sb.append("Usage: compiler [-f|--file <YAML>] [--diff] [-j|--jobs <N>] [--dry-run] [-x] [-v]").append("\n");
     sb.append("  -f, --file     YAML build file (required)").append("\n");
     sb.append("  --diff         Only build changed objects").append("\n");
+    sb.append("  -j, --jobs     Number of IBM i jobs building targets in parallel (default 1)").append("\n");
+    sb.append("  --migrate-ahead Number of targets whose sources are migrated ahead on a second job (default 0)").append("\n");
+    sb.append("  --scan-threads Number of sources read at once by the dependency scan (default 8)").append("\n");
+    sb.append("  --source-mirror Local checkout of the sources, read by the dependency scan instead of the IFS").append("\n");
+    sb.append("  --no-local-sources Scan sources from the IFS even if the YAML directory has them").append("\n");
+    sb.append("  --impact       Stream files or target keys (comma separated): print what rebuilds, build nothing").append("\n");
+    sb.append("  --json         Impact report as JSON").append("\n");
+    sb.append("  --graph        Write the dependency graph with build times and critical path (.dot or .json)").append("\n");
+    sb.append("  --sql-package  [LIB/]NAME of an SQL package keeping the catalog query plans between runs").append("\n");
+    sb.append("  --exec-backend Run CL commands over jdbc (QCMDEXC, default) or cmdcall (remote command server)").append("\n");
     sb.append("  --dry-run      Show commands without executing").append("\n");
     sb.append("  --no-migrate   Disable automatic source migration").append("\n");
+    sb.append("  --local-clock  Estimate command times from the local clock (one server time query per job)").append("\n");
     sb.append("  -x,            Debug mode").append("\n");
     sb.append("  -v,            Verbose output");
 
@@ -0,0 +1,81 @@
+package com.github.kraudy.compiler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.User;
+
+/*
+ * One IBM i job used to build targets.
+ * Every JDBC connection is served by its own QZDASOINIT job, so each BuildJob keeps its own
+ * library list, current directory and joblog. The services bound to the connection live here
+ * so a target and all of its hooks run on the same job.
+ */
+public class BuildJob implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(BuildJob.class);
+
+  private final int id;
+  private final Connection connection;
+  private final boolean ownsConnection; // Worker jobs are opened (and closed) by the compiler
+  private final CommandExecutor commandExec;
+  private final Migrator migrator;
+  private final ObjectDescriptor odes;
+  private final SourceDescriptor sourceDes;
+
+  public BuildJob(int id, Connection connection, User currentUser, CatalogIndex catalog, boolean dryRun, boolean debug,
+        boolean verbose, boolean noMigrate) {
+    this(id, connection, false, currentUser, catalog, dryRun, debug, verbose, noMigrate);
+  }
+
+  private BuildJob(int id, Connection connection, boolean ownsConnection, User currentUser, CatalogIndex catalog,
+        boolean dryRun, boolean debug, boolean verbose, boolean noMigrate) {
+    this.id = id;
+    this.connection = connection;
+    this.ownsConnection = ownsConnection;
+
+    this.commandExec = new CommandExecutor(connection, debug, verbose, dryRun);
+    this.migrator = noMigrate ? null : new Migrator(connection, debug, verbose, currentUser, commandExec,
+        catalog == null ? null : catalog.getMigrationPlan());
+    this.sourceDes = new SourceDescriptor(connection, debug, verbose, catalog);
+    this.odes = new ObjectDescriptor(connection, debug, verbose, catalog);
+  }
+
+  /* Opens a new connection, which means a new job on the server */
+  public static BuildJob open(AS400 system, String sqlPackage, int id, User currentUser, CatalogIndex catalog,
+        boolean dryRun, boolean debug, boolean verbose, boolean noMigrate) {
+    try {
+      Connection connection = Utilities.newDataSource(system, sqlPackage).getConnection();
+      connection.setAutoCommit(true);
+      return new BuildJob(id, connection, true, currentUser, catalog, dryRun, debug, verbose, noMigrate);
+    } catch (SQLException e) {
+      throw new CompilerException("Could not open build job " + id, e);
+    }
+  }
+
+  public int getId() { return this.id; }
+  public String getName() { return "job-" + this.id; }
+  public Connection getConnection() { return this.connection; }
+  public CommandExecutor getCommandExecutor() { return this.commandExec; }
+  public Migrator getMigrator() { return this.migrator; }
+  public ObjectDescriptor getObjectDescriptor() { return this.odes; }
+  public SourceDescriptor getSourceDescriptor() { return this.sourceDes; }
+
+  @Override
+  public void close() {
+    /* Prepared statements of the job, also on the primary connection which is not closed here */
+    commandExec.close();
+    if (migrator != null) migrator.close();
+    sourceDes.close();
+    odes.close();
+    if (!ownsConnection || connection == null) return;
+    try {
+      if (!connection.isClosed()) connection.close();
+    } catch (SQLException e) {
+      logger.error("Error closing build job " + getName(), e);
+    }
+  }
+}
@@ -0,0 +1,145 @@
+package com.github.kraudy.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Dispatches targets over a pool of build jobs following the child/father graph.
+ * A target is ready once all of its childs (dependencies) inside the spec are built.
+ * Ready targets are taken in spec order, so with a single job this is the plain yaml order.
+ */
+public class BuildScheduler {
+  private static final Logger logger = LoggerFactory.getLogger(BuildScheduler.class);
+
+  private final List<BuildJob> jobs;
+  private final boolean debug;
+  private final boolean verbose;
+
+  /* Builds one target on the given job. Hooks of the target must run on that same job */
+  public interface TargetBuilder {
+    void build(TargetKey key, BuildJob job) throws Exception;
+  }
+
+  /* Result of one dispatched target */
+  private static class Outcome {
+    final TargetKey key;
+    final BuildJob job;
+    final Exception error;
+
+    Outcome(TargetKey key, BuildJob job, Exception error) {
+      this.key = key;
+      this.job = job;
+      this.error = error;
+    }
+  }
+
+  public BuildScheduler(List<BuildJob> jobs, boolean debug, boolean verbose) {
+    if (jobs == null || jobs.isEmpty()) throw new IllegalArgumentException("At least one build job is required");
+    this.jobs = jobs;
+    this.debug = debug;
+    this.verbose = verbose;
+  }
+
+  /*
+   * Builds all targets. On the first failure no new target is dispatched, the running ones are
+   * allowed to finish and the failure is raised.
+   */
+  public void run(List<TargetKey> targets, TargetBuilder builder) throws Exception {
+    /* Identity maps, see TargetKey.hashCode */
+    Map<TargetKey, Integer> order = new IdentityHashMap<>();
+    for (TargetKey key : targets) order.put(key, order.size());
+
+    Map<TargetKey, Integer> pendingChilds = new IdentityHashMap<>();
+    PriorityQueue<TargetKey> ready = new PriorityQueue<>(Comparator.comparingInt(order::get));
+
+    for (TargetKey key : targets) {
+      int pending = 0;
+      for (TargetKey child : key.getChildsList()) {
+        if (order.containsKey(child)) pending++; /* Only spec targets are built here */
+      }
+      pendingChilds.put(key, pending);
+      if (pending == 0) ready.add(key);
+    }
+
+    Deque<BuildJob> idleJobs = new ArrayDeque<>(jobs);
+    ExecutorService pool = Executors.newFixedThreadPool(jobs.size());
+    CompletionService<Outcome> completion = new ExecutorCompletionService<>(pool);
+
+    int running = 0;
+    int finished = 0;
+    Exception failure = null;
+
+    try {
+      while (true) {
+        /* Dispatch ready targets to idle jobs */
+        while (failure == null && !ready.isEmpty() && !idleJobs.isEmpty()) {
+          TargetKey key = ready.poll();
+          BuildJob job = idleJobs.poll();
+          if (verbose) logger.info("Dispatching " + key.asString() + " to " + job.getName());
+
+          completion.submit(() -> {
+            try {
+              builder.build(key, job);
+              return new Outcome(key, job, null);
+            } catch (Exception e) {
+              return new Outcome(key, job, e);
+            }
+          });
+          running++;
+        }
+
+        if (running == 0) break;
+
+        Outcome outcome = completion.take().get();
+        running--;
+        idleJobs.add(outcome.job);
+
+        if (outcome.error != null) {
+          if (failure == null) {
+            failure = outcome.error;
+            if (running > 0) logger.error("Target " + outcome.key.asString() + " failed on " + outcome.job.getName() +
+                ". Waiting for " + running + " running targets");
+          } else {
+            logger.error("Target " + outcome.key.asString() + " also failed on " + outcome.job.getName());
+          }
+          continue;
+        }
+
+        finished++;
+
+        /* Release fathers whose childs are all built */
+        for (TargetKey father : outcome.key.getFathersList()) {
+          Integer pending = pendingChilds.get(father);
+          if (pending == null) continue;
+          pendingChilds.put(father, pending - 1);
+          if (pending - 1 == 0) ready.add(father);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+
+    if (failure != null) throw failure;
+
+    if (finished != targets.size()) {
+      List<String> blocked = new ArrayList<>();
+      for (TargetKey key : targets) {
+        if (pendingChilds.get(key) > 0) blocked.add(key.asString());
+      }
+      throw new CompilerException("Dependency cycle, targets could not be scheduled: " + String.join(", ", blocked));
+    }
+  }
+}
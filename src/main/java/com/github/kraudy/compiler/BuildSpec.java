@@ -7,6 +7,7 @@ import com.github.kraudy.compiler.CompilationPattern.ParamCmd;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +40,25 @@ public class BuildSpec {
   public void setTargetsList(Set<TargetKey> targetsSet) { this.targetsList.addAll(targetsSet);}
   public List<TargetKey> getTargetsList() { return this.targetsList;}
 
+  /* Sets the targets (and the targets list) in the given order. Used to apply the dependency order */
+  public void reorderTargets(List<TargetKey> order) {
+    if (order.size() != this.targets.size()) throw new IllegalArgumentException("Target order does not match spec targets");
+
+    Map<TargetKey, TargetSpec> specs = new IdentityHashMap<>();
+    for (Map.Entry<TargetKey, TargetSpec> entry : this.targets.entrySet()) {
+      specs.put(entry.getKey(), entry.getValue());
+    }
+
+    this.targets.clear();
+    for (TargetKey key : order) {
+      if (!specs.containsKey(key)) throw new IllegalArgumentException("Target not in spec: " + key.asString());
+      this.targets.put(key, specs.get(key));
+    }
+
+    this.targetsList.clear();
+    this.targetsList.addAll(order);
+  }
+
   public TargetKey getTargetKey(TargetKey key){
     if (!contains(key)) return null;
     int index = targetsList.indexOf(key);
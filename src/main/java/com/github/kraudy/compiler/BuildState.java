@@ -0,0 +1,343 @@
+package com.github.kraudy.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.IFSFile;
+import com.ibm.as400.access.IFSFileInputStream;
+
+/*
+ * Local build state stored next to the spec.
+ * For every target built successfully it keeps the hash of its source stream file and of the
+ * copybooks it includes, the command resolved from the spec and the fingerprints of its childs. With that, a diff build can tell if a
+ * target is up to date without asking the server, and it also catches param only changes.
+ * Objects changed or deleted on the server by other means are not seen by the state.
+ */
+public class BuildState {
+  private static final Logger logger = LoggerFactory.getLogger(BuildState.class);
+
+  public static final String STATE_FILE = ".mc-build-state.json";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  public enum Decision { UP_TO_DATE, CHANGED, UNKNOWN }
+
+  /* Persisted data of one target */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class Entry {
+    @JsonProperty("source")
+    public String source;       // SHA-256 of the source stream file
+
+    @JsonProperty("command")
+    public String command;      // Compilation command resolved from the spec
+
+    @JsonProperty("childs")
+    public Map<String, String> childs = new TreeMap<>(); // Child id -> child fingerprint
+
+    @JsonProperty("includes")
+    public Map<String, String> includes = new TreeMap<>(); // Included stream file -> SHA-256
+
+    @JsonProperty("fingerprint")
+    public String fingerprint;  // Hash of all the above
+
+    @JsonProperty("duration")
+    public Long duration;       // Milliseconds of the last build, not part of the fingerprint
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class StateFile {
+    @JsonProperty("version")
+    public int version = 1;
+
+    @JsonProperty("targets")
+    public Map<String, Entry> targets = new TreeMap<>();
+  }
+
+  /* What is known of a target in this run before building it */
+  private static class Snapshot {
+    final String id;
+    final String source;
+    final String command;
+    final Map<String, String> includes;
+
+    Snapshot(String id, String source, String command, Map<String, String> includes) {
+      this.id = id;
+      this.source = source;
+      this.command = command;
+      this.includes = includes;
+    }
+  }
+
+  private final AS400 system;
+  private final File stateFile;
+  private final boolean debug;
+  private final boolean verbose;
+  private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  private final Map<String, Entry> previous = new ConcurrentHashMap<>();   // Loaded from disk
+  private final Map<String, Entry> current = new ConcurrentHashMap<>();    // Built or confirmed in this run
+  private final Map<TargetKey, Snapshot> snapshots = Collections.synchronizedMap(new IdentityHashMap<>());
+  private Map<TargetKey, Map<String, String>> includes = Collections.emptyMap(); // From the dependency scan
+
+  public BuildState(AS400 system, File stateFile, boolean debug, boolean verbose) {
+    this.system = system;
+    this.stateFile = stateFile;
+    this.debug = debug;
+    this.verbose = verbose;
+  }
+
+  /* State file of the spec. Null if the spec directory is not reachable from here */
+  public static File stateFileOf(BuildSpec spec) {
+    if (spec.getBaseDirectory() == null) return null;
+    File dir = new File(spec.getBaseDirectory());
+    if (!dir.isDirectory()) return null;
+    return new File(dir, STATE_FILE);
+  }
+
+  public void load() {
+    if (!stateFile.exists()) return;
+    try {
+      StateFile state = mapper.readValue(stateFile, StateFile.class);
+      if (state.targets != null) previous.putAll(state.targets);
+      if (verbose) logger.info("Loaded build state of " + previous.size() + " targets from " + stateFile);
+    } catch (IOException e) {
+      /* A broken state only means a full timestamp based decision */
+      logger.warn("Could not read build state " + stateFile + ", ignoring it", e);
+    }
+  }
+
+  /* Previous entries are kept, only targets of this run are updated */
+  public void save() {
+    StateFile state = new StateFile();
+    state.targets.putAll(previous);
+    state.targets.putAll(current);
+
+    try {
+      Path target = stateFile.toPath();
+      Path temp = Files.createTempFile(target.getParent(), STATE_FILE, ".tmp");
+      mapper.writeValue(temp.toFile(), state);
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      if (verbose) logger.info("Saved build state of " + current.size() + " targets to " + stateFile);
+    } catch (IOException e) {
+      logger.warn("Could not write build state " + stateFile, e);
+    }
+  }
+
+  /* Include hashes of the targets, found by the dependency scan. Set before prepare() */
+  public BuildState setIncludes(Map<TargetKey, Map<String, String>> includes) {
+    this.includes = includes;
+    return this;
+  }
+
+  /*
+   * Takes the source hash and spec command of every target before anything is built or resolved
+   * (the key string changes when curlib is resolved).
+   */
+  public void prepare(BuildSpec spec) {
+    for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : spec.targets.entrySet()) {
+      TargetKey key = entry.getKey();
+      snapshots.put(key, new Snapshot(key.asString(), sourceHash(spec, key, entry.getValue()),
+          specCommand(spec, key, entry.getValue()), new TreeMap<>(includes.getOrDefault(key, Collections.emptyMap()))));
+    }
+  }
+
+  /* Compares the target against the stored state. Childs must have been decided or built first */
+  public Decision check(TargetKey key) {
+    Snapshot snapshot = snapshots.get(key);
+    if (snapshot == null || snapshot.source == null) return Decision.UNKNOWN;
+
+    Entry stored = previous.get(snapshot.id);
+    if (stored == null) return Decision.UNKNOWN;
+
+    Map<String, String> childs = childFingerprints(key);
+    if (childs == null) return Decision.UNKNOWN;
+
+    if (!snapshot.source.equals(stored.source)) {
+      if (verbose) logger.info("Source changed: " + snapshot.id);
+      return Decision.CHANGED;
+    }
+    if (!snapshot.includes.equals(stored.includes == null ? Collections.emptyMap() : stored.includes)) {
+      if (verbose) logger.info("Includes changed: " + snapshot.id);
+      return Decision.CHANGED;
+    }
+    if (!snapshot.command.equals(stored.command)) {
+      if (verbose) logger.info("Command changed: " + snapshot.id + "\n  was: " + stored.command + "\n  now: " + snapshot.command);
+      return Decision.CHANGED;
+    }
+    if (!childs.equals(stored.childs)) {
+      if (verbose) logger.info("Childs changed: " + snapshot.id);
+      return Decision.CHANGED;
+    }
+
+    /* Confirmed, fathers can rely on it */
+    current.put(snapshot.id, stored);
+    return Decision.UP_TO_DATE;
+  }
+
+  /* Records a target found up to date in this run */
+  public void record(TargetKey key) {
+    record(key, null);
+  }
+
+  /* Records a target built in this run, with its build time. Without one the last known is kept */
+  public void record(TargetKey key, Long durationMillis) {
+    Snapshot snapshot = snapshots.get(key);
+    if (snapshot == null || snapshot.source == null) return;
+
+    Map<String, String> childs = childFingerprints(key);
+    if (childs == null) {
+      /* A child has no known state, the father can not be trusted later */
+      previous.remove(snapshot.id);
+      current.remove(snapshot.id);
+      return;
+    }
+
+    Entry entry = new Entry();
+    entry.source = snapshot.source;
+    entry.command = snapshot.command;
+    entry.childs.putAll(childs);
+    entry.includes.putAll(snapshot.includes);
+    entry.fingerprint = fingerprint(snapshot.id, entry);
+    entry.duration = durationMillis;
+    if (entry.duration == null) {
+      Entry last = previous.get(snapshot.id);
+      if (last != null) entry.duration = last.duration;
+    }
+
+    current.put(snapshot.id, entry);
+  }
+
+  /* A target that was built or failed without a known state must not be skipped next time */
+  public void forget(TargetKey key) {
+    Snapshot snapshot = snapshots.get(key);
+    if (snapshot == null) return;
+    previous.remove(snapshot.id);
+    current.remove(snapshot.id);
+  }
+
+  /* Child id -> fingerprint in this run. Null if any spec child is not known */
+  private Map<String, String> childFingerprints(TargetKey key) {
+    Map<String, String> childs = new TreeMap<>();
+    for (TargetKey child : key.getChildsList()) {
+      Snapshot childSnapshot = snapshots.get(child);
+      if (childSnapshot == null) continue; // Not a spec target
+      Entry childEntry = current.get(childSnapshot.id);
+      if (childEntry == null) return null;
+      childs.put(childSnapshot.id, childEntry.fingerprint);
+    }
+    return childs;
+  }
+
+  private static String fingerprint(String id, Entry entry) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(id).append('\n').append(entry.source).append('\n').append(entry.command).append('\n');
+    for (Map.Entry<String, String> child : entry.childs.entrySet()) {
+      sb.append(child.getKey()).append('=').append(child.getValue()).append('\n');
+    }
+    /* Only when present, fingerprints of targets without includes stay as they were */
+    for (Map.Entry<String, String> include : entry.includes.entrySet()) {
+      sb.append("include ").append(include.getKey()).append('=').append(include.getValue()).append('\n');
+    }
+    return toHex(newDigest().digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /* Command of the target from the spec alone, without server side info */
+  private static String specCommand(BuildSpec spec, TargetKey key, BuildSpec.TargetSpec targetSpec) {
+    TargetKey specKey = new TargetKey(key.asString());
+    specKey.putAll(spec.defaults);
+    specKey.putAll(targetSpec.params);
+    return specKey.getCommandStringWithoutSummary();
+  }
+
+  /* SHA-256 of the source stream file. Null for member sources or unreadable files */
+  private String sourceHash(BuildSpec spec, TargetKey key, BuildSpec.TargetSpec targetSpec) {
+    String streamFile = key.containsStreamFile() ? key.getStreamFile() : null;
+    if (streamFile == null && targetSpec.params.containsKey(CompilationPattern.ParamCmd.SRCSTMF)) {
+      streamFile = targetSpec.params.get(CompilationPattern.ParamCmd.SRCSTMF);
+    }
+    if (streamFile == null) return null;
+
+    String path = SourceDescriptor.absoluteStreamFile(spec.getBaseDirectory(), streamFile);
+    if (path == null) return null;
+
+    try {
+      Path local = Paths.get(path);
+      if (Files.isRegularFile(local)) {
+        try (InputStream in = Files.newInputStream(local)) {
+          return hash(in);
+        }
+      }
+
+      if (system == null) return null;
+      IFSFile ifsFile = new IFSFile(system, path);
+      if (!ifsFile.isFile()) return null;
+      try (InputStream in = new IFSFileInputStream(ifsFile)) {
+        return hash(in);
+      }
+    } catch (Exception e) {
+      if (verbose) logger.info("Could not hash source " + path + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  public static String hash(InputStream in) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      digest.update(buffer, 0, read);
+    }
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new CompilerException("SHA-256 not available", e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  /* Last known build time of the target in milliseconds, null if never measured */
+  public Long getDuration(TargetKey key) {
+    Snapshot snapshot = snapshots.get(key);
+    if (snapshot == null) return null;
+    Entry entry = current.get(snapshot.id);
+    if (entry == null || entry.duration == null) entry = previous.get(snapshot.id);
+    return entry == null ? null : entry.duration;
+  }
+
+  public List<String> getRecordedTargets() {
+    return new ArrayList<>(current.keySet());
+  }
+}
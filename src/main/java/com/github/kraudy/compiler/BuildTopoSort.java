@@ -1,13 +1,24 @@
 package com.github.kraudy.compiler;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.PriorityQueue;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Dependency order of the spec targets.
+ * Childs (dependencies) come before their fathers. Between targets that don't depend on each other
+ * the yaml order is kept, so a spec that is already in a valid order is left untouched.
+ * Only edges between spec targets are considered.
+ */
 public class BuildTopoSort {
+  private static final Logger logger = LoggerFactory.getLogger(BuildTopoSort.class);
+
   private final boolean debug;
   private final boolean verbose;
 
@@ -15,46 +26,152 @@ public class BuildTopoSort {
     this.debug = debug;
     this.verbose = verbose;
   }
-  
+
+  /* Build order: every target comes after all of its childs */
   public List<TargetKey> topologicalSort(BuildSpec globalSpec) {
-    // Compute in-degrees
-    Map<TargetKey, Integer> inDegree = new HashMap<>();
-    for (TargetKey target : globalSpec.targets.keySet()) {
-      inDegree.put(target, 0);
-    }
-    for (TargetKey target : globalSpec.targets.keySet()) {
-      for (TargetKey child : target.getChildsList()) {  // children = dependencies
-        inDegree.put(child, inDegree.getOrDefault(child, 0) + 1);
-      }
-    }
+    List<TargetKey> targets = new ArrayList<>(globalSpec.targets.keySet());
+    Map<TargetKey, Integer> index = indexOf(targets);
+    Map<TargetKey, Integer> pending = pendingChilds(targets, index);
 
-    // Queue for nodes with no incoming edges (ready to build)
-    Queue<TargetKey> queue = new LinkedList<>();
-    for (Map.Entry<TargetKey, Integer> entry : inDegree.entrySet()) {
-      if (entry.getValue() == 0) {
-        queue.add(entry.getKey());
-      }
+    /* Ready targets are taken in yaml order */
+    PriorityQueue<TargetKey> queue = new PriorityQueue<>(Comparator.comparingInt(index::get));
+    for (TargetKey target : targets) {
+      if (pending.get(target) == 0) queue.add(target);
     }
 
     List<TargetKey> order = new ArrayList<>();
     while (!queue.isEmpty()) {
       TargetKey target = queue.poll();
       order.add(target);
+      queue.addAll(release(target, pending));
+    }
+
+    if (order.size() != targets.size()) throw cycleException(targets, pending);
+
+    return order;  // Build in this order
+  }
 
+  /*
+   * Wavefronts of the graph. Level 0 has the targets without childs, level N the targets whose
+   * childs are all in lower levels. Targets of the same level can be built at the same time.
+   */
+  public List<List<TargetKey>> levels(BuildSpec globalSpec) {
+    List<TargetKey> targets = new ArrayList<>(globalSpec.targets.keySet());
+    Map<TargetKey, Integer> index = indexOf(targets);
+    Map<TargetKey, Integer> pending = pendingChilds(targets, index);
+
+    List<TargetKey> current = new ArrayList<>();
+    for (TargetKey target : targets) {
+      if (pending.get(target) == 0) current.add(target);
+    }
+
+    List<List<TargetKey>> levels = new ArrayList<>();
+    int placed = 0;
+    while (!current.isEmpty()) {
+      levels.add(current);
+      placed += current.size();
+
+      List<TargetKey> next = new ArrayList<>();
+      for (TargetKey target : current) {
+        next.addAll(release(target, pending));
+      }
+      next.sort(Comparator.comparingInt(index::get));
+      current = next;
+    }
+
+    if (placed != targets.size()) throw cycleException(targets, pending);
+
+    if (verbose) logger.info(showLevels(levels));
+
+    return levels;
+  }
+
+  public static String showLevels(List<List<TargetKey>> levels) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("\nBuild levels: ").append(levels.size()).append("\n");
+    for (int i = 0; i < levels.size(); i++) {
+      sb.append("Level ").append(i).append(" (").append(levels.get(i).size()).append("): ");
+      for (TargetKey target : levels.get(i)) {
+        sb.append(target.asString()).append(" ");
+      }
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+
+  /* Identity maps, see TargetKey.hashCode */
+  private Map<TargetKey, Integer> indexOf(List<TargetKey> targets) {
+    Map<TargetKey, Integer> index = new IdentityHashMap<>();
+    for (TargetKey target : targets) index.put(target, index.size());
+    return index;
+  }
+
+  /* Number of childs inside the spec not yet placed */
+  private Map<TargetKey, Integer> pendingChilds(List<TargetKey> targets, Map<TargetKey, Integer> index) {
+    Map<TargetKey, Integer> pending = new IdentityHashMap<>();
+    for (TargetKey target : targets) {
+      int count = 0;
       for (TargetKey child : target.getChildsList()) {
-        int newDegree = inDegree.get(child) - 1;
-        inDegree.put(child, newDegree);
-        if (newDegree == 0) {
-          queue.add(child);
+        if (index.containsKey(child)) count++;
+      }
+      pending.put(target, count);
+    }
+    return pending;
+  }
+
+  /* Marks target as placed and returns the fathers that became ready */
+  private List<TargetKey> release(TargetKey target, Map<TargetKey, Integer> pending) {
+    List<TargetKey> ready = new ArrayList<>();
+    for (TargetKey father : target.getFathersList()) {
+      Integer count = pending.get(father);
+      if (count == null) continue;
+      pending.put(father, count - 1);
+      if (count - 1 == 0) ready.add(father);
+    }
+    return ready;
+  }
+
+  /*
+   * Every target left with pending childs has at least one child also left, so walking those
+   * childs from any of them must come back to an already visited target.
+   */
+  private CompilerException cycleException(List<TargetKey> targets, Map<TargetKey, Integer> pending) {
+    TargetKey current = null;
+    for (TargetKey target : targets) {
+      if (pending.get(target) > 0) {
+        current = target;
+        break;
+      }
+    }
+
+    List<TargetKey> path = new ArrayList<>();
+    Map<TargetKey, Integer> position = new IdentityHashMap<>();
+    while (current != null && !position.containsKey(current)) {
+      position.put(current, path.size());
+      path.add(current);
+
+      TargetKey next = null;
+      for (TargetKey child : current.getChildsList()) {
+        Integer count = pending.get(child);
+        if (count != null && count > 0) {
+          next = child;
+          break;
         }
       }
+      current = next;
     }
 
-    if (order.size() != globalSpec.targets.size()) {
-      throw new RuntimeException("Cycle detected in dependency graph!");
+    StringBuilder sb = new StringBuilder("Dependency cycle detected: ");
+    if (current == null) {
+      sb.append("could not isolate the cycle");
+    } else {
+      for (TargetKey target : path.subList(position.get(current), path.size())) {
+        sb.append(target.asString()).append(" -> ");
+      }
+      sb.append(current.asString());
     }
 
-    return order;  // Build in this order
+    return new CompilerException(sb.toString());
   }
 
 }
@@ -0,0 +1,86 @@
+package com.github.kraudy.compiler;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/*
+ * In-memory index of catalog data prefetched for the spec targets.
+ * Keys are compared by identity (see TargetKey.hashCode).
+ * It is filled before the build starts and shared (read only) by all build jobs.
+ * A target not in the index is looked up live by its descriptor.
+ */
+public class CatalogIndex {
+  private final Map<TargetKey, Boolean> exists = Collections.synchronizedMap(new IdentityHashMap<>());
+  private final Map<TargetKey, Map<String, String>> objectInfo = Collections.synchronizedMap(new IdentityHashMap<>());
+  /* Diff build timestamps. A key present with a null value was resolved and has no timestamp */
+  private final Map<TargetKey, Timestamp> lastBuild = Collections.synchronizedMap(new IdentityHashMap<>());
+  private final Map<TargetKey, Timestamp> lastEdit = Collections.synchronizedMap(new IdentityHashMap<>());
+  private final MigrationPlan migrationPlan = new MigrationPlan(); // Source PFs and members for migration
+
+  /* Null if the target was not prefetched */
+  public Boolean exists(TargetKey key) {
+    return this.exists.get(key);
+  }
+
+  public void setExists(TargetKey key, boolean exists) {
+    this.exists.put(key, exists);
+  }
+
+  /* Catalog row with the compilation info of the object. Null if not prefetched, empty if no row was found */
+  public Map<String, String> objectInfo(TargetKey key) {
+    return this.objectInfo.get(key);
+  }
+
+  public void setObjectInfo(TargetKey key, Map<String, String> row) {
+    this.objectInfo.put(key, row);
+  }
+
+  public boolean hasLastBuild(TargetKey key) {
+    return this.lastBuild.containsKey(key);
+  }
+
+  public Timestamp lastBuild(TargetKey key) {
+    return this.lastBuild.get(key);
+  }
+
+  public void setLastBuild(TargetKey key, Timestamp timestamp) {
+    this.lastBuild.put(key, timestamp);
+  }
+
+  public boolean hasLastEdit(TargetKey key) {
+    return this.lastEdit.containsKey(key);
+  }
+
+  public Timestamp lastEdit(TargetKey key) {
+    return this.lastEdit.get(key);
+  }
+
+  public void setLastEdit(TargetKey key, Timestamp timestamp) {
+    this.lastEdit.put(key, timestamp);
+  }
+
+  public MigrationPlan getMigrationPlan() {
+    return this.migrationPlan;
+  }
+
+  public int size() {
+    return this.exists.size();
+  }
+
+  /* Current row as column label -> trimmed value. Null values are stored as empty strings */
+  public static Map<String, String> toRow(ResultSet rs) throws SQLException {
+    ResultSetMetaData meta = rs.getMetaData();
+    Map<String, String> row = new HashMap<>();
+    for (int i = 1; i <= meta.getColumnCount(); i++) {
+      String value = rs.getString(i);
+      row.put(meta.getColumnLabel(i).toUpperCase(), value == null ? "" : value.trim());
+    }
+    return row;
+  }
+}
@@ -0,0 +1,61 @@
+package com.github.kraudy.compiler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Prepared statements of one connection, keyed by their SQL text.
+ * Names and types are bound to parameter markers instead of being built into the text, so a query
+ * has the same text for every target: it is prepared on its first use and reused for the rest of
+ * the run. With an SQL package on the data source (see Utilities.newDataSource) the server also
+ * keeps the access plans between runs.
+ * A connection belongs to one build job, statements are never shared across connections.
+ */
+public class CatalogStatements {
+  private final Connection connection;
+  private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+  public CatalogStatements(Connection connection) {
+    this.connection = connection;
+  }
+
+  /* Runs a query with its parameters. Callers close the result set, the statement stays open */
+  public synchronized ResultSet query(String sql, Object... params) throws SQLException {
+    return statement(sql, params).executeQuery();
+  }
+
+  /* Runs a statement with its parameters, e.g. a CALL */
+  public synchronized void execute(String sql, Object... params) throws SQLException {
+    statement(sql, params).execute();
+  }
+
+  private PreparedStatement statement(String sql, Object... params) throws SQLException {
+    PreparedStatement stmt = statements.get(sql);
+    if (stmt == null || stmt.isClosed()) {
+      stmt = connection.prepareStatement(sql);
+      statements.put(sql, stmt);
+    }
+    stmt.clearParameters();
+    for (int i = 0; i < params.length; i++) {
+      if (params[i] instanceof String) stmt.setString(i + 1, (String) params[i]);
+      else stmt.setObject(i + 1, params[i]);
+    }
+    return stmt;
+  }
+
+  /* Statements are also closed with their connection, this frees them before */
+  public synchronized void close() {
+    for (PreparedStatement stmt : statements.values()) {
+      try {
+        stmt.close();
+      } catch (SQLException ignored) {
+        /* Nothing left to do with it */
+      }
+    }
+    statements.clear();
+  }
+}
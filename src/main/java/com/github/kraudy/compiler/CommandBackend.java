@@ -0,0 +1,22 @@
+package com.github.kraudy.compiler;
+
+import java.sql.Timestamp;
+
+/*
+ * How the CL commands of a build job reach the server.
+ * Commands come as built by CommandObject and TargetKey, with their quotes doubled for the SQL
+ * literal of QCMDEXC (see Utilities.validateParamValue). Every command run is registered with the
+ * joblog collector of the job, with its messages if the backend got them back with the call.
+ */
+public interface CommandBackend extends AutoCloseable {
+
+  /* Shown in logs, also the --exec-backend value */
+  String getName();
+
+  /* Runs the command, throws if it failed. Since is the earliest server time of its messages */
+  void run(String command, Timestamp since, JoblogCollector joblog) throws Exception;
+
+  @Override
+  default void close() {
+  }
+}
@@ -0,0 +1,70 @@
+package com.github.kraudy.compiler;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.CommandCall;
+
+/*
+ * Commands run through the remote command server (jt400 CommandCall). The messages of each command
+ * come back with the call, so the joblog is never queried for them.
+ * The command server is a job of its own (QZRCSRVS), apart from the JDBC job that runs the catalog
+ * queries. Commands changing the library list or current directory also run on the JDBC job, so
+ * both jobs see the same objects.
+ */
+public class CommandCallBackend implements CommandBackend {
+  public static final String NAME = "cmdcall";
+
+  /* Commands whose effect the catalog queries of the JDBC job depend on */
+  private static final List<String> jobEnvironmentCommands = Arrays.asList(
+    "CHGLIBL", "ADDLIBLE", "RMVLIBLE", "CHGCURLIB", "CHGCURDIR", "CD"
+  );
+
+  private final AS400 system;         // Own copy, one command server job per build job
+  private final Connection connection;
+  private final CommandCall commandCall;
+
+  public CommandCallBackend(AS400 system, Connection connection) {
+    this.system = new AS400(system);
+    this.connection = connection;
+    this.commandCall = new CommandCall(this.system);
+    this.commandCall.setThreadSafe(false);  // Compile commands are not thread safe, run them on the server job
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public void run(String command, Timestamp since, JoblogCollector joblog) throws Exception {
+    /* Same text QCMDEXC gets once the SQL literal is parsed */
+    boolean success = commandCall.run(command.replace("''", "'"));
+    joblog.complete(command, since, commandCall.getMessageList());
+    if (!success) throw new CompilerException("Command ended with an escape message");
+
+    if (changesJobEnvironment(command)) {
+      try (Statement stmt = connection.createStatement()) {
+        stmt.execute("CALL QSYS2.QCMDEXC('" + command + "')");
+      }
+    }
+  }
+
+  static boolean changesJobEnvironment(String command) {
+    String trimmed = command.trim();
+    int end = 0;
+    while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end)) && trimmed.charAt(end) != '(') end++;
+    String name = trimmed.substring(0, end).toUpperCase();
+    int slash = name.lastIndexOf('/');
+    return jobEnvironmentCommands.contains(slash < 0 ? name : name.substring(slash + 1));
+  }
+
+  @Override
+  public void close() {
+    system.disconnectAllServices();
+  }
+}
@@ -5,7 +5,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -27,15 +26,46 @@ public class CommandExecutor {
   private final boolean verbose;
   private final boolean dryRun;
   private final StringBuilder CmdExecutionChain = new StringBuilder();
+  private final JoblogCollector joblog;
+  private final CatalogStatements statements;  // Repeated queries, prepared once per run
+  private ServerClock clock;          // If set, command time is estimated locally
+  private CommandBackend backend;     // Transport of the CL commands
+  private int commandCount = 0;
+  private long commandMillis = 0;     // Spent running commands, to compare backends
 
   public CommandExecutor(Connection connection, boolean debug, boolean verbose, boolean dryRun){
     this.connection = connection;
     this.debug = debug;
     this.verbose = verbose;
     this.dryRun = dryRun;
+    this.statements = new CatalogStatements(connection);
+    this.joblog = new JoblogCollector(statements);
+    this.backend = new JdbcCommandBackend(connection);
 
   }
  
+  /*
+   * Estimate command times from the local clock instead of one CURRENT_TIMESTAMP round trip per
+   * command. Joblog messages are then read by ordinal position after the last one seen, the time
+   * filter only trims older messages and is widened by the clock uncertainty.
+   */
+  public CommandExecutor useLocalClock() {
+    this.clock = ServerClock.measure(connection);
+    this.joblog.mark();
+
+    if (verbose) logger.info("Server clock offset: " + clock.getOffsetMillis() + " ms (+/- " + clock.getUncertaintyMillis() + " ms)");
+    return this;
+  }
+ 
+  /* Runs the CL commands through another backend, e.g. the remote command server */
+  public CommandExecutor useBackend(CommandBackend backend) {
+    this.backend.close();
+    this.backend = backend;
+
+    if (verbose) logger.info("Command backend: " + backend.getName());
+    return this;
+  }
+
   public void executeCommand(List<CommandObject> commandList) throws Exception, SQLException{
     for(CommandObject command: commandList){
       executeCommand(command);
@@ -114,17 +144,20 @@ public class CommandExecutor {
       return;
     }
 
-    try (Statement cmdStmt = connection.createStatement()) {
-      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + commandString + "')");
-    } catch (SQLException e) {
+    long start = System.currentTimeMillis();
+    try {
+      backend.run(commandString, messagesSince(commandTime), this.joblog);
+    } catch (Exception e) {
       logger.error("Command failed: " + commandString);
 
-      String joblog = buildJoblogMessagesString(commandTime);
+      String joblog = this.joblog.collect();
       throw new CompilerException("Command execution failed", e, commandString, commandTime, joblog);  // No target here
+    } finally {
+      commandCount++;
+      commandMillis += System.currentTimeMillis() - start;
     }
 
     logger.info("Command successful: " + commandString);
-    if(verbose) logger.info(buildJoblogMessagesString(commandTime));
   }
 
   /* Executes sql statements */
@@ -141,23 +174,25 @@ public class CommandExecutor {
       return;
     }
 
+    this.joblog.begin(statement, messagesSince(commandTime));
+
     try (Statement cmdStmt = connection.createStatement()) {
       cmdStmt.execute(statement);
     } catch (SQLException e) {
       logger.error("DB2 statement failed: " + statement);
 
-      String joblog = buildJoblogMessagesString(commandTime);
+      String joblog = this.joblog.collect();
       throw new CompilerException("DB2 statement execution failed", e, statement, commandTime, joblog);  // No target here
     }
 
     logger.info("DB2 statement successful: " + statement);
-    if(verbose) logger.info(buildJoblogMessagesString(commandTime));
   }
 
   public Timestamp getCurrentTime(){
+    if (clock != null) return clock.now();
+
     Timestamp currentTime = null;
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsTime = stmt.executeQuery("SELECT CURRENT_TIMESTAMP AS Command_Time FROM sysibm.sysdummy1")) {
+    try (ResultSet rsTime = statements.query("SELECT CURRENT_TIMESTAMP AS Command_Time FROM sysibm.sysdummy1")) {
       if (rsTime.next()) {
         currentTime = rsTime.getTimestamp("Command_Time");
       }
@@ -189,45 +224,33 @@ public class CommandExecutor {
     executeCommand(dlt);
   }
 
-  private String buildJoblogMessagesString(Timestamp commandTime) {
-    StringBuilder messages = new StringBuilder();
-    messages.append("\nJoblog info\n");
-
-    try (Statement stmt = connection.createStatement();
-         ResultSet rsMessages = stmt.executeQuery(
-             "SELECT MESSAGE_TIMESTAMP, MESSAGE_ID, SEVERITY, MESSAGE_TEXT " +
-             "FROM TABLE(QSYS2.JOBLOG_INFO('*')) " +
-             "WHERE FROM_USER = USER " +
-             "AND MESSAGE_TIMESTAMP > '" + commandTime + "' " +
-             "AND MESSAGE_ID NOT IN ('SQL0443', 'CPC0904', 'CPF2407') " +
-             "ORDER BY MESSAGE_TIMESTAMP ASC"
-         )) {
-
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        boolean hasMessages = false;
-
-        while (rsMessages.next()) {
-            hasMessages = true;
-            Timestamp messageTime = rsMessages.getTimestamp("MESSAGE_TIMESTAMP");
-            String messageId = rsMessages.getString("MESSAGE_ID").trim();
-            String severity = rsMessages.getString("SEVERITY").trim();
-            String message = rsMessages.getString("MESSAGE_TEXT").trim();
-
-            String formattedTime = sdf.format(messageTime);
-            messages.append(String.format("%-20s | %-10s | %-4s | %s%n",
-                    formattedTime, messageId, severity, message));
-        }
+  /* Estimated times may be slightly ahead of the server */
+  private Timestamp messagesSince(Timestamp commandTime) {
+    return (clock == null) ? commandTime : clock.lowerBound(commandTime);
+  }
 
-        if (!hasMessages) {
-            messages.append("No relevant joblog messages found.\n");
-        }
+  /* 
+   * Joblog messages of the commands run since the last call, read in one query. 
+   * Callers collect once per target instead of once per command.
+   */
+  public String collectJoblog() {
+    return this.joblog.collect();
+  }
 
-    } catch (SQLException e) {
-      throw new CompilerException("Error retrieving joblog", e);
-    }
+  /* Forgets the commands run since the last call, their joblog is not needed */
+  public void discardJoblog() {
+    this.joblog.discard();
+  }
 
-    return messages.toString();
-}
+  /* Commands run and time spent on them, e.g. "12 commands in 3400 ms over jdbc" */
+  public String getCommandStats() {
+    return commandCount + " commands in " + commandMillis + " ms over " + backend.getName();
+  }
+
+  public void close() {
+    backend.close();
+    statements.close();
+  }
 
   public String getExecutionChain() {
     return CmdExecutionChain.toString();
@@ -236,32 +259,32 @@ public class CommandExecutor {
   private String showCompilationSpool(Timestamp compilationTime) throws SQLException{
     StringBuilder spool = new StringBuilder();
 
+    compilationTime = messagesSince(compilationTime);
+
     /* Is there a spool file? */
-    try(Statement stmt = connection.createStatement();
-      ResultSet rsCheckSpool = stmt.executeQuery(
+    try(ResultSet rsCheckSpool = statements.query(
       "Select SPOOLED_FILE_NAME, SPOOLED_FILE_NUMBER, QUALIFIED_JOB_NAME " +
       "From Table ( " +
           "QSYS2.SPOOLED_FILE_INFO( " +
               "USER_NAME => USER , " +
-              "STARTING_TIMESTAMP => '" + compilationTime + "' " +
+              "STARTING_TIMESTAMP => ? " +
               //"JOB_NAME => (VALUES QSYS2.JOB_NAME) " +
           ") " +
         ") " +
-        "LIMIT 1 "
-      )){
+        "LIMIT 1 ",
+      compilationTime)){
         if (!rsCheckSpool.next()) {          
           return spool.append("No spool found for compilation command").toString();
         }
     }
 
     /* Get compilation spool */
-    try(Statement stmt = connection.createStatement();
-      ResultSet rsCompilationSpool = stmt.executeQuery(
+    try(ResultSet rsCompilationSpool = statements.query(
         "Select d.SPOOLED_DATA " +
         "From Table ( " +
             "QSYS2.SPOOLED_FILE_INFO( " +
                 "USER_NAME => USER, " +
-                "STARTING_TIMESTAMP => '" + compilationTime + "' " +
+                "STARTING_TIMESTAMP => ? " +
                 //"JOB_NAME => (VALUES QSYS2.JOB_NAME)" +
             ") " +
         ") As s " +
@@ -271,8 +294,8 @@ public class CommandExecutor {
                 "SPOOLED_FILE_NAME => s.SPOOLED_FILE_NAME, " +
                 "SPOOLED_FILE_NUMBER => s.SPOOLED_FILE_NUMBER " +
             ") " +
-        ") As d On 1=1" 
-      )){
+        ") As d On 1=1",
+      compilationTime)){
         while (rsCompilationSpool.next()) {
           spool.append(rsCompilationSpool.getString("SPOOLED_DATA").trim()).append("\n");
         }
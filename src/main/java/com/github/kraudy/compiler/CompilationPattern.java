@@ -314,6 +314,9 @@ public class CompilationPattern {
     // CLOSQLCSR
     ENDACTGRP, ENDMOD, CALLER,
 
+    // CHGLIBL
+    CRTDFT,
+
     // CRTDTAARA
     DEC,
 
@@ -1,28 +1,37 @@
 package com.github.kraudy.compiler;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.kraudy.compiler.CompilationPattern.CompCmd;
 import com.github.kraudy.compiler.CompilationPattern.ObjectType;
 import com.github.kraudy.compiler.CompilationPattern.ParamCmd;
 import com.github.kraudy.compiler.CompilationPattern.SysCmd;
 import com.ibm.as400.access.AS400;
-import com.ibm.as400.access.IFSFile;
-import com.ibm.as400.access.IFSFileInputStream;
 
 /*
  * Inffer object compilation 
@@ -31,83 +40,35 @@ import com.ibm.as400.access.IFSFileInputStream;
  */
 public class DependencyAwareness {
   private static final Logger logger = LoggerFactory.getLogger(DependencyAwareness.class);
-
-  // Broad regex for BNDDIR('NAME') – works for H-spec and CTL-OPT
-  private static final Pattern BNDDIR_PATTERN = Pattern.compile(
-      "\\bBNDDIR\\s*\\(\\s*'([^']+)'\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-  private static final Pattern DTAARA_PATTERN = Pattern.compile(
-    "\\bDTAARA\\s*\\(\\s*'([^']+)'\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-    private static final Pattern EXTNAME_PATTERN = Pattern.compile(
-    "\\bEXTNAME\\s*\\(\\s*['\"]?([A-Z0-9$#@_]{1,10})['\"]?\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-  /* Fixed-format F-spec: strict column logic
-   * - Exactly 5 characters (usually blanks) before the F (column 6)
-   * - F/f in column 6
-   * - Capture up to 10 characters for the file name (columns 7-16)
-   */
-  private static final Pattern FIXED_F_SPEC = Pattern.compile(
-      "^.{5}[fF]\\s*([A-Z0-9$#@_]{1,10})\\b", Pattern.CASE_INSENSITIVE);
-
-  // Pattern for free-format DCL-F (captures the file name, possibly qualified)
-  private static final Pattern FREE_DCL_F = Pattern.compile(
-      "DCL-F\\s+([A-Z0-9$#@_./]+?)\\s+", Pattern.CASE_INSENSITIVE);
-
-  // Pattern for embedded SQL table references (FROM, JOIN, INTO, UPDATE, DELETE FROM, INSERT INTO)
-  private static final Pattern SQL_TABLE = Pattern.compile(
-    "(FROM|JOIN|INTO|UPDATE|DELETE FROM|INSERT INTO)\\s+([\"']?[\\w$#@_./]+[\"']?)",
-    Pattern.CASE_INSENSITIVE);
-
-  // Improved: captures table + optional implicit alias, stops before comma or explicit join parts
-  private static final Pattern SQL_FROM_JOIN_PATTERN = Pattern.compile(
-      "\\b(FROM|JOIN)\\s+([\"']?[A-Z0-9$#@_./]+[\"']?)(\\s+[A-Z0-9$#@_]+)?"
-      + "(?:\\s+(?:INNER|LEFT|RIGHT|FULL)?\\s*(?:OUTER)?\\s*JOIN|\\s+ON|\\s+AS\\s+[A-Z0-9$#@_]+)?",
-      Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-
-  // New: for additional comma-separated tables (quoted + optional implicit alias)
-  private static final Pattern SQL_COMMA_TABLE_PATTERN = Pattern.compile(
-      "\\s*,\\s*([\"']?[A-Z0-9$#@_./]+[\"']?)(\\s+[A-Z0-9$#@_]+)?",
-      Pattern.CASE_INSENSITIVE);
-
-  // Pattern for REF(filename) in DDS (for PF)
-  private static final Pattern DDS_REF_PATTERN = Pattern.compile(
-      "\\bREF\\s*\\(\\s*([A-Z0-9$#@_]{1,10})\\s*\\)", Pattern.CASE_INSENSITIVE);
-  
-  // Pattern for PFILE(basepf) in DDS (for LF)
-  private static final Pattern DDS_PFILE_PATTERN = Pattern.compile(
-      "\\bPFILE\\s*\\(\\s*([A-Z0-9$#@_]{1,10})\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-  /* Pattern for REFFLD(filename) in DDS (for DSPF, PRTF) */
-  private static final Pattern DDS_REFFLD_PATTERN = Pattern.compile(
-    "REFFLD\\s*\\(\\s*([A-Z0-9$#@_]{1,10}(?:/[A-Z0-9$#@_]{1,10})?)"
-    + "(?:\\s+(?:(?:\\*LIBL|[A-Z0-9$#@_]{1,10})/)?([A-Z0-9$#@_]{1,10}))?\\s*\\)",
-    Pattern.CASE_INSENSITIVE);
-
-  /* Pattern for Extpgm(pgm) in  */
-  private static final Pattern EXTPGM_PATTERN = Pattern.compile(
-    "\\bEXTPGM\\s*\\(\\s*'([^']+)'\\s*\\)", Pattern.CASE_INSENSITIVE);
-
-   // Pattern 1: CALL PGM(ORD100) or CALL PGM('MYLIB/ORD100') 
-  private static final Pattern CALL_PGM_PATTERN = Pattern.compile(
-    "\\bCALL\\s+PGM\\s*\\(\\s*['\"]?([^'\"\\)]+)['\"]?\\s*\\)",Pattern.CASE_INSENSITIVE);
-
-  // Pattern 2: OPM-style CALL ORD100C or CALL 'ORD100C' (optionally followed by PARM)
-  private static final Pattern CALL_DIRECT_PGM_PATTERN = Pattern.compile(
-      "\\bCALL\\s+(['\"]?)([A-Z0-9$#@_]{1,10})\\1(?:\\s+PARM|\\s|$)",Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
+  public static final int DEFAULT_SCAN_THREADS = 8;
 
   private final AS400 system;
   private final boolean debug;
   private final boolean verbose;
   private final Map<String, TargetKey> keyLookup = new HashMap<>();
+  private DependencyGraph graph;  // Edges found by the scans, linked to the targets once all are done
 
   private final ConcurrentHashMap<TargetKey, List<String>> targetLogs = new ConcurrentHashMap<>();
   private final AtomicInteger processed = new AtomicInteger();
   private int totalTargets = 0;
+  private int scanThreads = DEFAULT_SCAN_THREADS;
+  private ExecutorService scanExecutor;   // Bounded, IFS reads block on the host server
+  private Path sourceMirror;             // Local checkout read before the IFS
+  private boolean localSources = true;   // Read the base directory from this filesystem when present
+  private SourceCache sources;
+  private DependencyIndex index;          // Scans of the previous run, only changed sources are scanned
+  private IncludeResolver includes;       // Copybooks of the scanned sources
+  /* Target scans merged with their includes, shared by both scan phases */
+  private final Map<TargetKey, ScanResult> targetScans = Collections.synchronizedMap(new IdentityHashMap<>());
+  /* Target -> include stream file -> content hash, inputs of the target besides its own source */
+  private final Map<TargetKey, Map<String, String>> includeHashes = Collections.synchronizedMap(new IdentityHashMap<>());
+  private final AtomicReference<Throwable> failure = new AtomicReference<>(); // First failed scan, the rest is skipped
 
   private final Map<String, String> fileOverrideMap = new HashMap<>();  // overriddenName -> actualToFile
 
   private final ConcurrentHashMap<String, TargetKey> exportedProcToModule = new ConcurrentHashMap<>();
+  /* Caller -> external procedures it calls, linked once all the exports are known */
+  private final Map<TargetKey, Set<String>> procedureCalls = Collections.synchronizedMap(new IdentityHashMap<>());
 
   public DependencyAwareness(AS400 system, boolean debug, boolean verbose) {
     this.system = system;
@@ -115,7 +76,45 @@ public class DependencyAwareness {
     this.verbose = verbose;
   }
 
+  /* Concurrent source reads. 0 or less uses the default */
+  public DependencyAwareness setScanThreads(int scanThreads) {
+    this.scanThreads = scanThreads > 0 ? scanThreads : DEFAULT_SCAN_THREADS;
+    return this;
+  }
+
+  /* Local copy of the spec base directory, files found there are not read from the IFS */
+  public DependencyAwareness setSourceMirror(Path sourceMirror) {
+    this.sourceMirror = sourceMirror;
+    return this;
+  }
+
+  /* False always reads sources from the IFS, e.g. when the local checkout may be behind it */
+  public DependencyAwareness setLocalSources(boolean localSources) {
+    this.localSources = localSources;
+    return this;
+  }
+
+  /* Include stream files and their content hashes of every target that includes something */
+  public Map<TargetKey, Map<String, String>> getIncludeHashes() {
+    return this.includeHashes;
+  }
+
   public void detectDependencies(BuildSpec globalSpec) throws Exception{
+    failure.set(null);
+    processed.set(0);
+    scanExecutor = Utilities.newIoExecutor(scanThreads, "mc-scan-");
+    if (verbose) logger.info("Scanning sources on " + scanThreads + 
+        (Utilities.hasVirtualThreads() ? " virtual" : "") + " threads");
+    try {
+      detect(globalSpec);
+    } finally {
+      scanExecutor.shutdownNow();
+      scanExecutor = null;
+      if (sources != null) sources.clear();
+    }
+  }
+
+  private void detect(BuildSpec globalSpec) throws Exception{
 
     if (verbose) logger.info("Detecting source object dependencies");
     /* This let us map name string to object name. TODO: There has to be a better way of doing this */
@@ -123,6 +122,10 @@ public class DependencyAwareness {
     this.totalTargets = globalSpec.targets.size();
 
     keyLookup.clear();
+    procedureCalls.clear();
+    targetScans.clear();
+    includeHashes.clear();
+    graph = new DependencyGraph(globalSpec.targets.keySet());
     for (TargetKey k : globalSpec.targets.keySet()) {
       keyLookup.put(k.asMapKey(), k);
     }
@@ -134,6 +137,12 @@ public class DependencyAwareness {
     String baseDir = globalSpec.getBaseDirectory();
     if (baseDir == null) throw new RuntimeException("Base directory not set in BuildSpec");
 
+    /* Every source is fetched once, modules are read again by the second phase */
+    sources = new SourceCache(baseDir, sourceProviders(baseDir));
+    index = new DependencyIndex(DependencyIndex.indexFileOf(globalSpec), verbose);
+    index.load();
+    includes = new IncludeResolver(baseDir, localRoots(baseDir), sources);
+
     /* Set source stream file for every target */
     for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : globalSpec.targets.entrySet()) {
       TargetKey target = entry.getKey();
@@ -159,16 +168,10 @@ public class DependencyAwareness {
       /* If not stream file,  */
       if (!target.containsStreamFile()) continue;
 
-      String fullPath = baseDir + "/" + target.getStreamFile();
-
-      IFSFile sourceFile = new IFSFile(system, fullPath);
-      
-      if (!sourceFile.exists()) throw new RuntimeException("Source file not found: " + fullPath);
-
-      moduleFutures.add(collectExportedProceduresAsync(target, sourceFile));  // will call collectExportedProcedures
+      moduleFutures.add(collectExportedProceduresAsync(target));  // will call collectExportedProcedures
 
     }
-    CompletableFuture.allOf(moduleFutures.toArray(new CompletableFuture[0])).join();
+    awaitScans(moduleFutures);
     /* Show modules logs */
     showLogs(globalSpec);
 
@@ -186,24 +189,127 @@ public class DependencyAwareness {
         continue;
       }
 
-      String fullPath =  baseDir + "/" + target.getStreamFile();
-
-      IFSFile sourceFile = new IFSFile(system, fullPath);
-      
-      if (!sourceFile.exists()) throw new RuntimeException("Source file not found: " + fullPath);
-
-      CompletableFuture<Void> future = processTargetAsync(target, sourceFile);
+      CompletableFuture<Void> future = processTargetAsync(target);
       futures.add(future);
 
     }
 
     // Wait for all
-    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    awaitScans(futures);
+
+    /* Srvpgm modules and callers of exported procedures, in spec order */
+    linkProcedureCalls(globalSpec, linkServicePrograms(globalSpec));
+
+    /* One deterministic merge, whatever order the scans finished in */
+    graph.apply();
+    if (verbose) logger.info("Dependency edges found: " + graph.edgeCount());
+    if (verbose) logger.info("Sources read: " + sources.describeReads());
+    if (verbose) logger.info("Sources scanned: " + index.count(DependencyIndex.Origin.SCANNED) + 
+        ", unchanged: " + index.count(DependencyIndex.Origin.STAMP) + " by stamp, " + 
+        index.count(DependencyIndex.Origin.HASH) + " by content");
+    index.save();
 
     showLogs(globalSpec);
 
   }
 
+  /*
+   * Mirror first, then the base directory when it is on this filesystem (the YAML was read from it),
+   * then the IFS. Without a system, e.g. in tests, only local sources are read.
+   */
+  private List<SourceProvider> sourceProviders(String baseDir) {
+    List<SourceProvider> providers = new ArrayList<>();
+    if (sourceMirror != null) providers.add(new LocalSourceProvider("mirror", sourceMirror));
+    if (localBase(baseDir) != null) providers.add(new LocalSourceProvider("local", localBase(baseDir)));
+    if (system != null) providers.add(new IfsSourceProvider(system, baseDir));
+    return providers;
+  }
+
+  /* Local copies of the base directory, where member includes are looked for */
+  private List<Path> localRoots(String baseDir) {
+    List<Path> roots = new ArrayList<>();
+    if (sourceMirror != null) roots.add(sourceMirror);
+    if (localBase(baseDir) != null) roots.add(localBase(baseDir));
+    return roots;
+  }
+
+  private Path localBase(String baseDir) {
+    if (!localSources) return null;
+    Path localBase = Paths.get(baseDir);
+    return Files.isDirectory(localBase) ? localBase : null;
+  }
+
+  /*
+   * Scan of the target source merged with everything it includes, directly or not. Every source is
+   * scanned once per run through the index, with the dialect of the including target. The content
+   * hashes of the includes are kept as inputs of the target. An include that can not be found or
+   * read is left out, the compiler will tell.
+   */
+  private ScanResult scanTarget(TargetKey target, SourceScanner.Dialect dialect, List<String> logs) throws Exception {
+    ScanResult done = targetScans.get(target);
+    if (done != null) return done;
+
+    ScanResult own = index.scan(target.getStreamFile(), dialect, sources);
+    if (own.getIncludes().isEmpty()) {
+      targetScans.put(target, own);
+      return own;
+    }
+
+    ScanResult merged = new ScanResult();
+    merged.addAll(own);
+    Map<String, String> hashes = new TreeMap<>();
+    Set<String> visited = new HashSet<>();
+    visited.add(target.getStreamFile());
+
+    Deque<Map.Entry<String, ScanResult>> pending = new ArrayDeque<>();
+    pending.push(new AbstractMap.SimpleEntry<>(target.getStreamFile(), own));
+    while (!pending.isEmpty()) {
+      Map.Entry<String, ScanResult> source = pending.pop();
+      for (String include : source.getValue().getIncludes()) {
+        String streamFile = includes.resolve(include, source.getKey());
+        if (streamFile == null) {
+          logger.warn("Include not found, ignored: " + include + " (in " + source.getKey() + "). Its changes are not seen by --diff");
+          continue;
+        }
+        if (!visited.add(streamFile)) continue;
+
+        ScanResult included;
+        try {
+          included = index.scan(streamFile, dialect, sources);
+        } catch (Exception e) {
+          logger.warn("Include could not be read, ignored: " + streamFile + " (" + e.getMessage() + "). Its changes are not seen by --diff");
+          continue;
+        }
+        String hash = index.hashOf(streamFile, dialect);
+        hashes.put(streamFile, hash == null ? "" : hash);
+        merged.addAll(included);
+        if (verbose) logs.add("INCLUDE: " + target.asString() + " includes " + streamFile + " (" + include + ")");
+        pending.push(new AbstractMap.SimpleEntry<>(streamFile, included));
+      }
+    }
+
+    if (!hashes.isEmpty()) includeHashes.put(target, hashes);
+    targetScans.put(target, merged);
+    return merged;
+  }
+
+  /* Waits for the scans. On the first failure the pending ones are cancelled and the failure is thrown */
+  private void awaitScans(List<CompletableFuture<Void>> futures) throws CompilerException {
+    try {
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    } catch (CompletionException e) {
+      for (CompletableFuture<Void> future : futures) future.cancel(true);
+    }
+    Throwable cause = failure.get();
+    if (cause != null) throw new CompilerException("Dependency scan failed: " + cause.getMessage(), cause);
+  }
+
+  /* Records the first failure, later scans see it and are skipped */
+  private void fail(Exception e) {
+    failure.compareAndSet(null, e);
+    throw new CompletionException(e);
+  }
+
   private void showLogs(BuildSpec globalSpec){
     // Print logs in original order
     for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : globalSpec.targets.entrySet()) {
@@ -220,47 +326,19 @@ public class DependencyAwareness {
     targetLogs.clear();
   }
 
-  private CompletableFuture<Void> collectExportedProceduresAsync(TargetKey target, IFSFile sourceFile) {
+  private CompletableFuture<Void> collectExportedProceduresAsync(TargetKey target) {
   return CompletableFuture.runAsync(() -> {
+    if (failure.get() != null) return;
     List<String> logs = new ArrayList<>();
-    Set<String> exportedProcs = new HashSet<>();
+    Set<String> exportedProcs = new LinkedHashSet<>();
 
     try{ 
       if (verbose) logs.add("Scannig sources for exports: " + target.asString());
 
-      String sourceCode;
-      try (InputStream stream = new IFSFileInputStream(sourceFile)) {
-        sourceCode = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
-      }
-
       logs.add("Dependencies of " + target.asString());
 
-      // Pattern for free-format: dcl-proc ProcName export;  (EXPORT can appear after name or params)
-      // We capture the word immediately after dcl-proc as the procedure name
-      Pattern exportProcPattern = Pattern.compile(
-          "\\bdcl-proc\\s+([A-Z0-9_]+)\\b.*?\\bexport\\b",
-          Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-
-      Matcher matcher = exportProcPattern.matcher(sourceCode);
-
-      while (matcher.find()) {
-        String procName = matcher.group(1).toUpperCase();
-        if (procName.isEmpty()) continue;
-        exportedProcs.add(procName);
-      }
-
-      // NEW: fixed-format pattern for P-spec procedures with EXPORT
-      Pattern fixedExportProcPattern = Pattern.compile(
-          "^\\s*P\\s*([A-Z0-9]+)\\s+B\\b.*\\bEXPORT\\b",
-          Pattern.CASE_INSENSITIVE | Pattern.MULTILINE);
-
-      Matcher fixedMatcher = fixedExportProcPattern.matcher(sourceCode);
-
-      while (fixedMatcher.find()) {
-        String procName = fixedMatcher.group(1).toUpperCase();
-        if (procName.isEmpty()) continue;
-        exportedProcs.add(procName);
-      }
+      SourceScanner.Dialect dialect = SourceScanner.dialectOf(target.getCompilationCommand());
+      if (dialect != null) exportedProcs.addAll(scanTarget(target, dialect, logs).getExports());
 
       if (exportedProcs.isEmpty()){
         logs.add("No Exported procedures found in " + target.asString());
@@ -275,147 +353,86 @@ public class DependencyAwareness {
 
     } catch (Exception e) {
       logs.add("ERROR processing exports " + target.asString() + ": " + e.getMessage());
+      fail(e);
     } finally {
       targetLogs.put(target, logs);  // Store for later ordered printing
     }
-    }
-    );
+    }, scanExecutor);
   }
 
-  private CompletableFuture<Void> processTargetAsync(TargetKey target, IFSFile sourceFile) {
+  private CompletableFuture<Void> processTargetAsync(TargetKey target) {
   return CompletableFuture.runAsync(() -> {
+    if (failure.get() != null) return;
     List<String> logs = new ArrayList<>();
     try {
       if (verbose) logs.add("Scannig sources: " + target.asString());
 
-      String sourceCode;
-      try (InputStream stream = new IFSFileInputStream(sourceFile)) {
-        sourceCode = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
-      }
-
       logs.add("Dependencies of " + target.asString());
 
-      //TODO: Improve this.
-      /* Get srvpgm module dependencies */
-      switch (target.getCompilationCommand()) {
-        /* Get srvpgm modules */
-        case CRTSRVPGM:
-          List<String> modulesList = target.getModulesNameList();
-          if (modulesList.isEmpty()) break;
-
-          for (String mod : modulesList) {
-            TargetKey modDep = keyLookup.getOrDefault(mod + "." + ObjectType.MODULE.name(), null);
-            if (modDep == null) continue;
-            if (!modDep.isModule()) continue;
-
-              /* Add module dependency to SrvPgm */
-            target.addChild(modDep);
-            /* Add SrvPgm dependency to module */
-            modDep.addFather(target);
-            if (verbose) logs.add("Dependency: " + target.asString() + " depends on " + modDep.asString());
-          }
-          break;
-      
-        case CRTBNDRPG:
-        case CRTSQLRPGI:
-        case CRTRPGMOD:
-          /*  Scan source for BndDir */
-          getBndDirDependencies(target, sourceCode, logs);
-          break;
-          /* At this point, we already have the chain module -> srvpgm -> [bnddir] -> pgm */
-      }
+      /* One pass over the source and its includes feeds every extractor, unchanged sources reuse the stored scan */
+      SourceScanner.Dialect dialect = SourceScanner.dialectOf(target.getCompilationCommand());
+      ScanResult scan = (dialect == null) ? new ScanResult() : scanTarget(target, dialect, logs);
 
-      /* Get extpgm */
       switch (target.getCompilationCommand()) {
+        /* Srvpgm modules are linked after the scans, with or without binder source */
         case CRTBNDRPG:
         case CRTSQLRPGI:
         case CRTRPGMOD:
-          /* Collect unique external program names referenced via EXTPGM */
-          getExtPgmDependencies(target, sourceCode, logs);
-          break;
-      }
-
-      /* Get dtaara and extname dependencies */
-      switch (target.getCompilationCommand()) {
-        case CRTBNDRPG:
-        case CRTSQLRPGI:
-        case CRTRPGMOD:
-        case CRTRPGPGM:
-          /* Collect dtaara referenced via DTAARA */
-          getDtaAraDependencies(target, sourceCode, logs);
-
-          /* Collect EXTNAME */
-          getExtNameDependencies(target, sourceCode, logs);
-          break;
-      }
-
-      /* Get f spec files dependencies */
-      switch (target.getCompilationCommand()) {
-        case CRTBNDRPG:
-        case CRTSQLRPGI:
-        case CRTRPGMOD:
-          getFixedFormatFilesDependencies(target, sourceCode, logs);
-
-          getFreeFormatFileDependencies(target, sourceCode, logs);    
+          /* At this point, we already have the chain module -> srvpgm -> [bnddir] -> pgm */
+          addDependencies(target, scan.getBndDirs(), ObjectType.BNDDIR.name(), TargetKey::isBndDir, "BNDDIR", logs);
+          addDependencies(target, scan.getExtPgms(), ObjectType.PGM.name(), TargetKey::isProgram, "EXTPGM", logs);
+          addDependencies(target, scan.getDtaAras(), ObjectType.DTAARA.name(), TargetKey::isDtaara, "DTAARA", logs);
+          addDependencies(target, scan.getExtNames(), ParamCmd.FILE.name(), TargetKey::isFile, "EXTNAME", logs);
+          addFileDependencies(target, scan.getFiles(), logs);
+          /* SQLRPGLE embedded dependencies */
+          addFileDependencies(target, scan.getSqlTables(), logs);
+          /* Bound calls are linked after the scans, the exporting modules are known then */
+          if (!scan.getProcedureCalls().isEmpty()) procedureCalls.put(target, scan.getProcedureCalls());
           break;
 
         case CRTRPGPGM:
-          getFixedFormatFilesDependencies(target, sourceCode, logs);
+          addDependencies(target, scan.getDtaAras(), ObjectType.DTAARA.name(), TargetKey::isDtaara, "DTAARA", logs);
+          addDependencies(target, scan.getExtNames(), ParamCmd.FILE.name(), TargetKey::isFile, "EXTNAME", logs);
+          addFileDependencies(target, scan.getFiles(), logs);
           break;
-      }
-
-      /* Get SQLRPGLE embedded dependencies */
-      switch (target.getCompilationCommand()) {
-        case CRTSQLRPGI:
-          getEmbeddedSqlDependencies(target, sourceCode, logs);          
-          break;
-      }
 
-      /* Get PF and LF dependencies */
-      switch (target.getCompilationCommand()) {
+        /* Get PF and LF dependencies */
         case CRTLF:
-          getLfPFILEDependencies(target, sourceCode, logs);
+          addDependencies(target, scan.getPfiles(), ParamCmd.FILE.name(), TargetKey::isFile, "PFILE", logs);
           break;
       
         case CRTPF:
-          getPfREFDependencies(target, sourceCode, logs);
+          addDependencies(target, scan.getRefFiles(), ParamCmd.FILE.name(), TargetKey::isFile, "REF", logs);
           break;
 
         case CRTDSPF:
         case CRTPRTF:
-          geDdsREFFLDDependencies(target, sourceCode, logs);
+          addDependencies(target, scan.getRefFldFiles(), ParamCmd.FILE.name(), TargetKey::isFile, "REFFLD", logs);
           break;
-      }
 
-      /* Get CLP, CLLE dependencies */
-      switch (target.getCompilationCommand()) {
+        /* Get CLP, CLLE dependencies */
         case CRTBNDCL:      
         case CRTCLPGM:
-          getClCallDependencies(target, sourceCode, logs);
+          addDependencies(target, scan.getCalls(), ObjectType.PGM.name(), TargetKey::isProgram, "CL CALL", logs);
           break;
-      }
 
-      /* Get SQL dependencies */
-      switch (target.getCompilationCommand()) {
+        /* Get SQL dependencies */
         case RUNSQLSTM:
-          // Existing embedded if needed
-          getEmbeddedSqlDependencies(target, sourceCode, logs);  // Keep for procedures/functions
-          // New DDL detection
-          getSqlDdlTableDependencies(target, sourceCode, logs);
+          addFileDependencies(target, scan.getSqlTables(), logs);
           break;
       }
 
     } catch (Exception e) {
       logs.add("ERROR processing " + target.asString() + ": " + e.getMessage());
+      fail(e);
     } finally {
-      if (target.getChildsCount() == 0) logs.add(target.asString() + ": No dependencies found");
+      if (graph.childCount(target) == 0) logs.add(target.asString() + ": No dependencies found");
       targetLogs.put(target, logs);  // Store for later ordered printing
       int count = processed.incrementAndGet();
       double percent = count * 100.0 / totalTargets;
       logger.info("Processed {} of {} targets ({}%)", count, totalTargets, String.format("%.1f", percent));
     }
-    }
-    );
+    }, scanExecutor);
   }
 
   /* This only works if you have the spec */
@@ -444,323 +461,92 @@ public class DependencyAwareness {
   }
   }
 
-  private void getBndDirDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> bndDirNames = new HashSet<>();
-    Matcher m = BNDDIR_PATTERN.matcher(sourceCode);
-
-    /* Get multiple bnddir */
-    while (m.find()) {  // ← changed from if(!find()) to while
-      String bndDirName = m.group(1).toUpperCase();
-      if (bndDirName.isEmpty()) continue;
-      bndDirNames.add(bndDirName);
-    }
-
-    for (String bndDirName : bndDirNames) {
-      TargetKey bndDirDep = keyLookup.getOrDefault(bndDirName + "." + ObjectType.BNDDIR.name(), null);
-      if (bndDirDep == null || !bndDirDep.isBndDir()) {
-        if (verbose) logs.add("Referenced BNDDIR not a build target, ignored: " + bndDirName + " (in " + target.asString() + ")");
-        continue;
-      }
-
-      target.addChild(bndDirDep);
-      bndDirDep.addFather(target);
-      if (verbose) logs.add("BNDDIR dependency: " + target.asString() + " uses BNDDIR('" + bndDirName + "') ");
-    }
-  }
-
-  private void getExtNameDependencies(TargetKey target, String sourceCode, List<String> logs) {
-    Set<String> extNameFiles = new HashSet<>();
-
-    Matcher matcher = EXTNAME_PATTERN.matcher(sourceCode);
-    while (matcher.find()) {
-      String fileName = matcher.group(1).trim().toUpperCase();
-      if (fileName.isEmpty()) continue;
-      extNameFiles.add(fileName);
-    }
-
-    for (String fileName : extNameFiles) {
-      TargetKey fileKey = keyLookup.getOrDefault(fileName + "." + ParamCmd.FILE.name(), null);
-      if (fileKey == null || !fileKey.isFile()) {
-        if (verbose) logs.add("Referenced EXTNAME file not a build target, ignored: " + fileName + " (in " + target.asString() + ")");
+  /* Add dependencies for each referenced object of the given type that is also a build target */
+  private void addDependencies(TargetKey target, Set<String> names, String type, Predicate<TargetKey> isType,
+        String kind, List<String> logs) {
+    for (String name : names) {
+      TargetKey depKey = keyLookup.getOrDefault(name + "." + type, null);
+      if (depKey == null || !isType.test(depKey)) {
+        if (verbose) logs.add("Referenced " + kind + " not a build target, ignored: " + name + " (in " + target.asString() + ")");
         continue;
       }
-      if (verbose) logs.add("EXTNAME dependency: " + target.asString() + " uses record format from file " + fileKey.asString() + " (EXTNAME(" + fileName + "))");
-      target.addChild(fileKey);
-      fileKey.addFather(target);
+      if (verbose) logs.add(kind + " dependency: " + target.asString() + " depends on " + depKey.asString() + " (" + kind + " " + name + ")");
+      /* Dependencies are child of Target */
+      graph.addEdge(target, depKey);
     }
   }
 
-  private void getDtaAraDependencies(TargetKey target, String sourceCode, List<String> logs) {
-    Set<String> dtaAraNames = new HashSet<>();
-
-    Matcher matcher = DTAARA_PATTERN.matcher(sourceCode);
-    while (matcher.find()) {
-      String name = matcher.group(1).trim().toUpperCase();
-      if (name.isEmpty()) continue;
-      dtaAraNames.add(name);
-    }
-
-    for (String name : dtaAraNames) {
-      TargetKey dtaKey = keyLookup.getOrDefault(name + "." + ObjectType.DTAARA.name(), null);
-
-      if (dtaKey == null || !dtaKey.isDtaara()) {
-        if (verbose) logs.add("Referenced DTAARA not a build target, ignored: " + name + " (in " + target.asString() + ")");
-        continue;
-      }
-      if (verbose) logs.add("DTAARA dependency: " + target.asString() + " uses DTAARA('" + name + "')");
-      /* Dtaara are child of Target */
-      target.addChild(dtaKey);
-      /* Target is father of dtaara */
-      dtaKey.addFather(target);
-    }
-  }
-
-  private void getClCallDependencies(TargetKey target, String sourceCode, List<String> logs) {
-    Set<String> calledPgms = new HashSet<>();
-
-    Matcher m = CALL_PGM_PATTERN.matcher(sourceCode);
-    while (m.find()) {
-      String full = m.group(1).trim().toUpperCase();
-      // Strip library if qualified (MYLIB/PGM -> PGM)
-      String pgm = full.replaceAll("^.*[\\/]", "");
-      if (pgm.isEmpty()) continue;
-      if (!pgm.matches("[A-Z0-9$#@_]{1,10}")) continue;
-      calledPgms.add(pgm);
-    }
-
-    m = CALL_DIRECT_PGM_PATTERN.matcher(sourceCode);
-    while (m.find()) {
-      String pgm = m.group(2).toUpperCase();
-      if (pgm.isEmpty()) continue;
-      calledPgms.add(pgm);
-    }
-
-    for (String pgmName : calledPgms) {
-      TargetKey pgmKey = keyLookup.getOrDefault(pgmName + "." + ObjectType.PGM.name(), null);
-      if (pgmKey == null || !pgmKey.isProgram()) {
-        if (verbose) logs.add("Referenced CALL CL program not a build target, ignored: " + pgmName + " (in " + target.asString() + ")");
-        continue;
-      }
-      if (verbose) logs.add("CL CALL dependency: " + target.asString() + " calls program " + pgmKey.asString() + " (CALL " + pgmName + ")");
-      target.addChild(pgmKey);
-      pgmKey.addFather(target);
-    }
-  }
-
-  private void getExtPgmDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> extPgmNames = new HashSet<>();
-
-    Matcher extpgmMatcher = EXTPGM_PATTERN.matcher(sourceCode);
-    while (extpgmMatcher.find()) {
-      String pgmName = extpgmMatcher.group(1).trim().toUpperCase();
-      if (pgmName.isEmpty()) continue;
-      extPgmNames.add(pgmName);
-    }
-
-    /* Add dependencies for each referenced *PGM that is also a build target */
-    for (String pgmName : extPgmNames) {
-      TargetKey pgmKey = keyLookup.getOrDefault(pgmName + "." + ObjectType.PGM.name(), null);
-      if (pgmKey == null || !pgmKey.isProgram()) { 
-        if (verbose) logs.add("Referenced EXTPGM program not a build target, ignored: " + pgmName + " (in " + target.asString() + ")");
-        continue;
-      }
-      if (verbose) logs.add("EXTPGM dependency: " + target.asString() + " calls program " + pgmKey.asString() + " (EXTPGM('" + pgmName + "'))");
-      /* Files are child of Target */
-      target.addChild(pgmKey);
-      /* Target is father of files */
-      pgmKey.addFather(target);
-    }
-  }
-
-  private void getLfPFILEDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> basePfNames = new HashSet<>();
-
-    try (java.util.Scanner scanner = new java.util.Scanner(sourceCode)) {
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        Matcher pfileMatcher = DDS_PFILE_PATTERN.matcher(line);
-        while (pfileMatcher.find()) {
-          String basePfName = pfileMatcher.group(1).trim().toUpperCase();
-          if (!basePfName.isEmpty()) {
-            basePfNames.add(basePfName);
-          }
-        }
-      }
-    }
+  /*
+   * Links every service program to the modules of its MODULE param. The key params are only set
+   * when the target is built, so the list is read from the spec.
+   * Returns module -> service programs binding it.
+   */
+  private Map<TargetKey, List<TargetKey>> linkServicePrograms(BuildSpec globalSpec) {
+    Map<TargetKey, List<TargetKey>> binders = new IdentityHashMap<>();
+    for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : globalSpec.targets.entrySet()) {
+      TargetKey target = entry.getKey();
+      if (target.getCompilationCommand() != CompCmd.CRTSRVPGM) continue;
 
-    for (String basePfName : basePfNames) {
-      TargetKey basePfKey = keyLookup.getOrDefault(basePfName + "." + ParamCmd.FILE.name(), null);
-      if (basePfKey == null || !basePfKey.isFile()) {
-        if (verbose) logs.add("Base PFILE not a build target: " + basePfName + " (in " + target.asString() + ")");
-        continue;
-      }
-      if (verbose) logs.add("PFILE dependency: " + target.asString() + " depends on base PF " + basePfKey.asString() + " (PFILE(" + basePfName + "))");
-      /* Files are child of Target */
-      target.addChild(basePfKey);
-      /* Target is father of files */
-      basePfKey.addFather(target);
-    }
-  }
+      TargetKey specKey = new TargetKey(target.asString());
+      specKey.putAll(globalSpec.defaults);
+      specKey.putAll(entry.getValue().params);
 
-  private void getPfREFDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> refFileNames = new HashSet<>();
-
-    try (java.util.Scanner scanner = new java.util.Scanner(sourceCode)) {
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        Matcher refMatcher = DDS_REF_PATTERN.matcher(line);
-        while (refMatcher.find()) {
-          String refFileName = refMatcher.group(1).trim().toUpperCase();
-          if (refFileName.isEmpty()) continue;
-          refFileNames.add(refFileName);
-        }
-      }
-    }
+      List<String> logs = targetLogs.computeIfAbsent(target, k -> new ArrayList<>());
+      for (String mod : specKey.getModulesNameList()) {
+        TargetKey modDep = keyLookup.getOrDefault(mod + "." + ObjectType.MODULE.name(), null);
+        if (modDep == null || !modDep.isModule()) continue;
 
-    for (String refFileName : refFileNames) {
-      TargetKey refFileKey = keyLookup.getOrDefault(refFileName + "." + ParamCmd.FILE.name(), null);
-      if (refFileKey == null || !refFileKey.isFile()) {
-        if (verbose) logs.add("Referenced REF file not a build target: " + refFileName + " (in " + target.asString() + ")");
-        continue;
+        /* Add module dependency to SrvPgm */
+        graph.addEdge(target, modDep);
+        binders.computeIfAbsent(modDep, k -> new ArrayList<>()).add(target);
+        if (verbose) logs.add("Dependency: " + target.asString() + " depends on " + modDep.asString());
       }
-      if (verbose) logs.add("REF dependency: " + target.asString() + " references file " + refFileKey.asString() + " (REF(" + refFileName + "))");
-      /* Files are child of Target */
-      target.addChild(refFileKey);
-      /* Target is father of files */
-      refFileKey.addFather(target);
     }
+    return binders;
   }
 
-  private void geDdsREFFLDDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> reffldFilesNames = new HashSet<>();
-
-    try (java.util.Scanner scanner = new java.util.Scanner(sourceCode)) {
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        Matcher reffldMatcher = DDS_REFFLD_PATTERN.matcher(line);
-        while (reffldMatcher.find()) {
-          String refFileName = reffldMatcher.group(2);
-          if (refFileName != null && !refFileName.trim().isEmpty()) {
-            reffldFilesNames.add(refFileName.trim().toUpperCase());
+  /*
+   * Links the callers of exported procedures to the exporting module and to the service programs
+   * that bind it. A caller module gets the edge to the exporting module, and the service programs
+   * binding the caller get the edges to the service programs of the callee.
+   * Runs on one thread in spec order; an edge that would close a cycle (procedures calling each
+   * other across service programs) is left out.
+   */
+  private void linkProcedureCalls(BuildSpec globalSpec, Map<TargetKey, List<TargetKey>> binders) {
+    for (TargetKey caller : globalSpec.targets.keySet()) {
+      Set<String> calls = procedureCalls.get(caller);
+      if (calls == null) continue;
+      List<String> logs = targetLogs.computeIfAbsent(caller, k -> new ArrayList<>());
+
+      for (String proc : calls) {
+        TargetKey module = exportedProcToModule.get(proc);
+        if (module == null || module == caller) continue;
+        List<TargetKey> calleeBinders = binders.getOrDefault(module, Collections.emptyList());
+
+        if (caller.isModule()) {
+          addCallDependency(caller, module, proc, logs);
+          for (TargetKey callerBinder : binders.getOrDefault(caller, Collections.emptyList())) {
+            for (TargetKey calleeBinder : calleeBinders) {
+              if (callerBinder != calleeBinder) addCallDependency(callerBinder, calleeBinder, proc, logs);
+            }
           }
+          continue;
         }
-      }
-    }
 
-    for (String refFileName : reffldFilesNames) {
-      TargetKey refFileKey = keyLookup.getOrDefault(refFileName + "." + ParamCmd.FILE.name(), null);
-      if (refFileKey == null || !refFileKey.isFile()) {
-        if (verbose) logs.add("Referenced REFFLD file not a build target: " + refFileName + " (in " + target.asString() + ")");
-        continue;
+        /* Programs bind the service program, or the module itself if no service program has it */
+        if (calleeBinders.isEmpty()) addCallDependency(caller, module, proc, logs);
+        for (TargetKey calleeBinder : calleeBinders) addCallDependency(caller, calleeBinder, proc, logs);
       }
-      if (verbose) logs.add("REFFLD dependency: " + target.asString() + " references file " + refFileKey.asString() + " (REFFLD(... " + refFileName + "))");
-      /* Files are child of Target */
-      target.addChild(refFileKey);
-      /* Target is father of files */
-      refFileKey.addFather(target);
     }
   }
 
-  /* 1. Fixed-format F-specs */
-  private void getFixedFormatFilesDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> depFileNames = new HashSet<>();
-
-    /* 1. Fixed-format F-specs */
-    try (java.util.Scanner scanner = new java.util.Scanner(sourceCode)) {
-      while (scanner.hasNextLine()) {
-        String line = scanner.nextLine();
-        Matcher fixedMatcher = FIXED_F_SPEC.matcher(line);
-        if (!fixedMatcher.find())  continue;
-        String fileName = fixedMatcher.group(1).trim().toUpperCase();
-        fileName = fileName.replaceAll("[\\t\\n]", ""); // Remove /t /n
-        if (fileName.isEmpty()) continue;
-        // Skip non-files
-        //if (fileName.matches("(?i)SFL.*|CTL.*|KEY.*|INFO.*|INDDS|INFDS|RENAME|SFILE|RRN.*|OPT.*")) {
-        //  continue;
-        //}
-        depFileNames.add(fileName);
-      }
+  private void addCallDependency(TargetKey father, TargetKey child, String proc, List<String> logs) {
+    if (graph.reaches(child, father)) {
+      if (verbose) logs.add("CALL dependency ignored, it would close a cycle: " + father.asString() + " on " + child.asString() + " (CALL " + proc + ")");
+      return;
     }
-
-    addFileDependencies(target, depFileNames, logs);
-  }
-
-  /* 2. Free-format DCL-F */
-  private void getFreeFormatFileDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> depFileNames = new HashSet<>();
-
-    Matcher freeMatcher = FREE_DCL_F.matcher(sourceCode);
-    while (freeMatcher.find()) {
-      String rawName = freeMatcher.group(1).trim().toUpperCase();
-      if (rawName.isEmpty()) continue;
-
-      // Strip library if qualified (handles MYLIB/MYFILE or rare MYLIB.MYFILE)
-      String fileName = rawName.replaceAll("^.*[\\/.]", "");
-      if (fileName.isEmpty()) continue;
-      depFileNames.add(fileName);
-    }
-
-    addFileDependencies(target, depFileNames, logs);
-  }
-
-  /* 3. Embedded SQL table references */
-  private void getEmbeddedSqlDependencies(TargetKey target, String sourceCode, List<String> logs){
-    Set<String> depFileNames = new HashSet<>();
-
-    Matcher sqlMatcher = SQL_TABLE.matcher(sourceCode);
-    while (sqlMatcher.find()) {
-      String rawName = sqlMatcher.group(2).trim().toUpperCase();
-      rawName = rawName.replaceAll("^[\"']|[\"']$", "");
-      if (rawName.isEmpty()) continue;
-
-      String tableName = rawName.replaceAll("^.*[\\/.]", "");
-      if (tableName.isEmpty()) continue;
-      depFileNames.add(tableName);
-
-    }
-
-    addFileDependencies(target, depFileNames, logs);
-  }
-
-  private void getSqlDdlTableDependencies(TargetKey target, String sourceCode, List<String> logs) {
-    Set<String> tableNames = new HashSet<>();
-
-    Matcher fromMatcher = SQL_FROM_JOIN_PATTERN.matcher(sourceCode);
-    while (fromMatcher.find()) {
-      String rawTable = fromMatcher.group(2).trim().toUpperCase();
-      rawTable = rawTable.replaceAll("^[\"']|[\"']$", "");  // Strip quotes
-      String tableName = rawTable.replaceAll("^.*[\\/.]", "");  // Strip schema/lib
-      if (!tableName.isEmpty() && tableName.matches("[A-Z0-9$#@_]{1,10}")) {
-          tableNames.add(tableName);
-      }
-
-      // Chain comma-separated tables from current position
-      int pos = fromMatcher.end();
-      Matcher commaMatcher = SQL_COMMA_TABLE_PATTERN.matcher(sourceCode);
-      commaMatcher.region(pos, sourceCode.length());
-      while (commaMatcher.find()) {
-        String rawCommaTable = commaMatcher.group(1).trim().toUpperCase();
-        rawCommaTable = rawCommaTable.replaceAll("^[\"']|[\"']$", "");
-        String commaTableName = rawCommaTable.replaceAll("^.*[\\/.]", "");
-        if (!commaTableName.isEmpty() && commaTableName.matches("[A-Z0-9$#@_]{1,10}")) {
-            tableNames.add(commaTableName);
-        }
-        pos = commaMatcher.end();
-        commaMatcher.region(pos, sourceCode.length());
-      }
-    }
-
-    // Add as file deps
-    for (String tableName : tableNames) {
-      TargetKey tableKey = keyLookup.getOrDefault(tableName + "." + ParamCmd.FILE.name(), null);
-      // Or if SQL tables: tableName + ".TABLE.SQL" or ".PF.DDS"
-      if (tableKey == null || !tableKey.isFile()) {
-        if (verbose) logs.add("Referenced SQL table not a build target, ignored: " + tableName + " (in " + target.asString() + ")");
-        continue;
-      }
-      if (verbose) logs.add("SQL TABLE dependency: " + target.asString() + " references table " + tableKey.asString() + " (table " + tableName + ")");
-      target.addChild(tableKey);
-      tableKey.addFather(target);
+    if (graph.addEdge(father, child) && verbose) {
+      logs.add("CALL dependency: " + father.asString() + " depends on " + child.asString() + " (CALL " + proc + ")");
     }
   }
 
@@ -779,9 +565,7 @@ public class DependencyAwareness {
       }
       if (verbose) logs.add("FILE dependency: " + target.asString() + " depends on file " + fileKey.asString() + " (referenced as " + depFileName + ")");
       /* Files are child of Target */
-      target.addChild(fileKey);
-      /* Target is father of files */
-      fileKey.addFather(target);
+      graph.addEdge(target, fileKey);
     }
   }
 
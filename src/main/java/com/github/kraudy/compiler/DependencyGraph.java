@@ -0,0 +1,99 @@
+package com.github.kraudy.compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Dependency edges found while scanning, collected from many threads at once.
+ * Targets are numbered by their spec position and every target has its own concurrent set of
+ * childs, so inserting an edge only touches that set and duplicates are dropped in O(1).
+ * Nothing is written to the targets until apply(), which links them in spec order. The resulting
+ * childs and fathers lists are the same whatever order the scans finished in.
+ */
+public class DependencyGraph {
+  private final List<TargetKey> targets;
+  private final Map<TargetKey, Integer> index = new IdentityHashMap<>(); // Read only after construction
+  private final List<Set<Integer>> childs;
+  private final AtomicInteger edges = new AtomicInteger();
+
+  public DependencyGraph(Collection<TargetKey> targets) {
+    this.targets = new ArrayList<>(targets);
+    this.childs = new ArrayList<>(this.targets.size());
+    for (TargetKey target : this.targets) {
+      index.put(target, index.size());
+      childs.add(ConcurrentHashMap.newKeySet());
+    }
+  }
+
+  /* Father depends on child. False if the edge is not between two spec targets or was already there */
+  public boolean addEdge(TargetKey father, TargetKey child) {
+    Integer from = index.get(father);
+    Integer to = index.get(child);
+    if (from == null || to == null || from.equals(to)) return false;
+    if (!childs.get(from).add(to)) return false;
+    edges.incrementAndGet();
+    return true;
+  }
+
+  public int childCount(TargetKey target) {
+    Integer position = index.get(target);
+    return position == null ? 0 : childs.get(position).size();
+  }
+
+  public int edgeCount() {
+    return edges.get();
+  }
+
+  /* True if from depends on to, directly or through other targets */
+  public boolean reaches(TargetKey from, TargetKey to) {
+    Integer start = index.get(from);
+    Integer goal = index.get(to);
+    if (start == null || goal == null) return false;
+
+    boolean[] seen = new boolean[targets.size()];
+    Deque<Integer> pending = new ArrayDeque<>();
+    pending.push(start);
+    seen[start] = true;
+    while (!pending.isEmpty()) {
+      int position = pending.pop();
+      if (position == goal) return true;
+      for (Integer child : childs.get(position)) {
+        if (seen[child]) continue;
+        seen[child] = true;
+        pending.push(child);
+      }
+    }
+    return false;
+  }
+
+  /* Child positions of a target, ascending */
+  private int[] childsOf(int position) {
+    Set<Integer> set = childs.get(position);
+    int[] result = new int[set.size()];
+    int i = 0;
+    for (Integer child : set) result[i++] = child;
+    Arrays.sort(result);
+    return result;
+  }
+
+  /* Links the targets. Call once all scans are done */
+  public void apply() {
+    for (int father = 0; father < targets.size(); father++) {
+      TargetKey fatherKey = targets.get(father);
+      for (int child : childsOf(father)) {
+        TargetKey childKey = targets.get(child);
+        fatherKey.addChild(childKey);
+        childKey.addFather(fatherKey);
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.github.kraudy.compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Scan results of the sources, stored next to the spec between runs.
+ * Entries are keyed by stream file and dialect, a copybook included by RPG and SQLRPG targets keeps
+ * both scans. Every entry keeps the hash of its content, a cheap change stamp (size and modification time
+ * from where it was read) and what the SourceScanner found in it. A source whose stamp or content
+ * hash did not change is not scanned again, and with a matching stamp it is not even read.
+ * Only object names are stored, the edges are resolved against the spec on every run, so adding a
+ * target or an override still links the right objects.
+ */
+public class DependencyIndex {
+  private static final Logger logger = LoggerFactory.getLogger(DependencyIndex.class);
+
+  public static final String INDEX_FILE = ".mc-deps-index.json";
+
+  /* Persisted scan of one stream file */
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class Entry {
+    @JsonProperty("dialect")
+    public SourceScanner.Dialect dialect;
+
+    @JsonProperty("stamp")
+    public String stamp;        // Provider, size and modification time. Null if not known
+
+    @JsonProperty("hash")
+    public String hash;         // SHA-256 of the source text
+
+    @JsonProperty("scan")
+    public ScanResult scan;
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class IndexFile {
+    @JsonProperty("version")
+    public int version = SourceScanner.VERSION;
+
+    @JsonProperty("sources")
+    public Map<String, Entry> sources = new TreeMap<>();
+  }
+
+  /* Where a scan came from in this run */
+  public enum Origin { STAMP, HASH, SCANNED }
+
+  private final File indexFile;
+  private final boolean verbose;
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private final Map<String, Entry> previous = new ConcurrentHashMap<>();   // Loaded from disk, by key()
+  private final Map<String, Entry> current = new ConcurrentHashMap<>();    // Used in this run, by key()
+  private final Map<Origin, AtomicInteger> origins = new ConcurrentHashMap<>();
+
+  public DependencyIndex(File indexFile, boolean verbose) {
+    this.indexFile = indexFile;
+    this.verbose = verbose;
+    for (Origin origin : Origin.values()) origins.put(origin, new AtomicInteger());
+  }
+
+  /* Index file of the spec. Null if the spec directory is not reachable from here */
+  public static File indexFileOf(BuildSpec spec) {
+    if (spec.getBaseDirectory() == null) return null;
+    File dir = new File(spec.getBaseDirectory());
+    if (!dir.isDirectory()) return null;
+    return new File(dir, INDEX_FILE);
+  }
+
+  public void load() {
+    if (indexFile == null || !indexFile.exists()) return;
+    try {
+      IndexFile index = mapper.readValue(indexFile, IndexFile.class);
+      if (index.version != SourceScanner.VERSION) {
+        if (verbose) logger.info("Dependency index " + indexFile + " is from another scanner version, rescanning all sources");
+        return;
+      }
+      if (index.sources != null) previous.putAll(index.sources);
+      if (verbose) logger.info("Loaded dependency index of " + previous.size() + " sources from " + indexFile);
+    } catch (IOException e) {
+      /* A broken index only means a full scan */
+      logger.warn("Could not read dependency index " + indexFile + ", ignoring it", e);
+    }
+  }
+
+  /* Only the sources of this run are kept */
+  public void save() {
+    if (indexFile == null) return;
+    IndexFile index = new IndexFile();
+    index.sources.putAll(current);
+
+    try {
+      Path target = indexFile.toPath();
+      Path temp = Files.createTempFile(target.getParent(), INDEX_FILE, ".tmp");
+      mapper.writeValue(temp.toFile(), index);
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+      if (verbose) logger.info("Saved dependency index of " + current.size() + " sources to " + indexFile);
+    } catch (IOException e) {
+      logger.warn("Could not write dependency index " + indexFile, e);
+    }
+  }
+
+  /*
+   * Scan of a stream file. The stamp is checked first, then the content hash; the source is read and
+   * scanned only when both changed.
+   */
+  public ScanResult scan(String streamFile, SourceScanner.Dialect dialect, SourceCache sources) throws Exception {
+    String key = key(streamFile, dialect);
+
+    /* Already used in this run, e.g. a module scanned for its exports */
+    Entry used = current.get(key);
+    if (used != null) return used.scan;
+
+    Entry stored = previous.get(key);
+    if (stored != null && stored.scan == null) stored = null;
+
+    String stamp = sources.stamp(streamFile);
+    if (stored != null && stamp != null && stamp.equals(stored.stamp)) {
+      return use(key, stored, Origin.STAMP);
+    }
+
+    String text = sources.read(streamFile);
+    String hash = BuildState.hash(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+
+    Entry entry = new Entry();
+    entry.dialect = dialect;
+    entry.stamp = stamp;
+    entry.hash = hash;
+
+    if (stored != null && hash.equals(stored.hash)) {
+      entry.scan = stored.scan;
+      return use(key, entry, Origin.HASH);
+    }
+
+    entry.scan = SourceScanner.scan(text, dialect);
+    return use(key, entry, Origin.SCANNED);
+  }
+
+  private static String key(String streamFile, SourceScanner.Dialect dialect) {
+    return streamFile + "|" + dialect;
+  }
+
+  private ScanResult use(String key, Entry entry, Origin origin) {
+    current.put(key, entry);
+    origins.get(origin).incrementAndGet();
+    return entry.scan;
+  }
+
+  /* Content hash of a stream file scanned in this run with the dialect. Null if it was not */
+  public String hashOf(String streamFile, SourceScanner.Dialect dialect) {
+    Entry used = current.get(key(streamFile, dialect));
+    return used == null ? null : used.hash;
+  }
+
+  public int count(Origin origin) {
+    return origins.get(origin).get();
+  }
+}
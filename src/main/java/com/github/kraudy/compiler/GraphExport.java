@@ -0,0 +1,154 @@
+package com.github.kraudy.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/*
+ * Dependency graph of the spec as DOT or JSON, with the build time of every target and its
+ * critical path: the chain of dependencies with the longest total build time. With unlimited jobs
+ * a build can not take less than that path, so its targets are the first ones worth speeding up.
+ * Targets without a known build time count as zero.
+ */
+public class GraphExport {
+  private final List<TargetKey> targets;                              // Build order, childs first
+  private final Map<TargetKey, Integer> index = new IdentityHashMap<>();
+  private final Long[] durations;                                     // Milliseconds, null if not known
+  private final long[] finish;                                        // Earliest finish with unlimited jobs
+  private final int[] slowestChild;                                   // Child that finishes last, -1 if none
+  private final boolean[] critical;
+  private final List<TargetKey> criticalPath = new ArrayList<>();     // Build order
+  private long criticalMillis = 0;
+  private long serialMillis = 0;
+
+  public GraphExport(List<TargetKey> buildOrder, Map<TargetKey, Long> durationsByTarget) {
+    this.targets = new ArrayList<>(buildOrder);
+    int size = targets.size();
+    this.durations = new Long[size];
+    this.finish = new long[size];
+    this.slowestChild = new int[size];
+    this.critical = new boolean[size];
+
+    for (TargetKey target : targets) index.put(target, index.size());
+
+    /* Childs come first in build order, so their finish is known when the father is reached */
+    int last = -1;
+    for (int i = 0; i < size; i++) {
+      durations[i] = durationsByTarget.get(targets.get(i));
+      long own = durations[i] == null ? 0 : durations[i];
+      serialMillis += own;
+
+      long start = 0;
+      slowestChild[i] = -1;
+      for (TargetKey child : targets.get(i).getChildsList()) {
+        Integer position = index.get(child);
+        if (position == null || position >= i) continue;
+        if (slowestChild[i] < 0 || finish[position] > start) {
+          start = finish[position];
+          slowestChild[i] = position;
+        }
+      }
+      finish[i] = start + own;
+      if (last < 0 || finish[i] > finish[last]) last = i;
+    }
+
+    if (last < 0) return;
+    criticalMillis = finish[last];
+    for (int i = last; i >= 0; i = slowestChild[i]) {
+      critical[i] = true;
+      criticalPath.add(0, targets.get(i));
+    }
+  }
+
+  public List<TargetKey> getCriticalPath() {
+    return this.criticalPath;
+  }
+
+  public long getCriticalMillis() {
+    return this.criticalMillis;
+  }
+
+  public long getSerialMillis() {
+    return this.serialMillis;
+  }
+
+  /* Edges go from a target to what it depends on. The critical path is red */
+  public String toDot() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("digraph build {\n");
+    sb.append("  rankdir=BT;\n");
+    sb.append("  label=\"critical path ").append(criticalMillis).append(" ms, serial ").append(serialMillis).append(" ms\";\n");
+    sb.append("  node [shape=box];\n");
+    for (int i = 0; i < targets.size(); i++) {
+      sb.append("  \"").append(targets.get(i).asString()).append("\" [label=\"").append(targets.get(i).asString())
+        .append("\\n").append(durations[i] == null ? "?" : durations[i] + " ms").append("\"");
+      if (critical[i]) sb.append(", color=red, penwidth=2");
+      sb.append("];\n");
+    }
+    for (int i = 0; i < targets.size(); i++) {
+      for (TargetKey child : targets.get(i).getChildsList()) {
+        Integer position = index.get(child);
+        if (position == null) continue;
+        sb.append("  \"").append(targets.get(i).asString()).append("\" -> \"").append(child.asString()).append("\"");
+        if (slowestChild[i] == position && critical[i]) sb.append(" [color=red, penwidth=2]");
+        sb.append(";\n");
+      }
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  public String toJson() {
+    List<Map<String, Object>> nodes = new ArrayList<>();
+    List<Map<String, Object>> edges = new ArrayList<>();
+    for (int i = 0; i < targets.size(); i++) {
+      Map<String, Object> node = new LinkedHashMap<>();
+      node.put("id", targets.get(i).asString());
+      node.put("durationMillis", durations[i]);
+      node.put("finishMillis", finish[i]);
+      node.put("critical", critical[i]);
+      nodes.add(node);
+
+      for (TargetKey child : targets.get(i).getChildsList()) {
+        Integer position = index.get(child);
+        if (position == null) continue;
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("from", targets.get(i).asString());
+        edge.put("to", child.asString());
+        edge.put("critical", critical[i] && slowestChild[i] == position);
+        edges.add(edge);
+      }
+    }
+
+    List<String> path = new ArrayList<>();
+    for (TargetKey target : criticalPath) path.add(target.asString());
+
+    Map<String, Object> graph = new LinkedHashMap<>();
+    graph.put("criticalPathMillis", criticalMillis);
+    graph.put("serialMillis", serialMillis);
+    graph.put("criticalPath", path);
+    graph.put("nodes", nodes);
+    graph.put("edges", edges);
+    try {
+      return new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(graph);
+    } catch (JsonProcessingException e) {
+      throw new CompilerException("Could not write dependency graph", e);
+    }
+  }
+
+  /* DOT or JSON by the file extension */
+  public void write(File file) throws IOException {
+    String content = file.getName().toLowerCase().endsWith(".json") ? toJson() : toDot();
+    Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+  }
+}
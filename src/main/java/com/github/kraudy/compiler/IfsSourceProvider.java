@@ -0,0 +1,97 @@
+package com.github.kraudy.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.ExtendedIOException;
+import com.ibm.as400.access.IFSFile;
+import com.ibm.as400.access.IFSFileInputStream;
+
+/*
+ * Reads sources from the IFS, in chunks, over the AS400 file server connection.
+ * A missing file is found by the open itself, no separate existence check is done.
+ * Stamps come from one listing per directory instead of a request per file. Listings are looked up
+ * by SourceDescriptor.pathKey, so root file system names match in any case and QOpenSys ones don't.
+ */
+public class IfsSourceProvider implements SourceProvider {
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final AS400 system;
+  private final String baseDir;
+  /* Directory key -> file path key -> file with the attributes of one listing */
+  private final Map<String, Map<String, IFSFile>> listings = new ConcurrentHashMap<>();
+
+  public IfsSourceProvider(AS400 system, String baseDir) {
+    this.system = system;
+    this.baseDir = baseDir;
+  }
+
+  @Override
+  public String getName() {
+    return "IFS";
+  }
+
+  @Override
+  public String read(String streamFile) throws Exception {
+    try (InputStream stream = new IFSFileInputStream(new IFSFile(system, path(streamFile)))) {
+      return new String(readChunks(stream), StandardCharsets.UTF_8);
+    } catch (FileNotFoundException e) {
+      return null;
+    } catch (ExtendedIOException e) {
+      int rc = e.getReturnCode();
+      if (rc == ExtendedIOException.FILE_NOT_FOUND || rc == ExtendedIOException.PATH_NOT_FOUND) return null;
+      throw e;
+    }
+  }
+
+  @Override
+  public String stamp(String streamFile) throws Exception {
+    String path = path(streamFile);
+    int slash = path.lastIndexOf('/');
+    String dir = slash == 0 ? "/" : path.substring(0, slash);
+
+    String dirKey = SourceDescriptor.pathKey(dir);
+    Map<String, IFSFile> files = listings.get(dirKey);
+    if (files == null) {
+      files = list(dir);
+      listings.putIfAbsent(dirKey, files);
+    }
+
+    IFSFile file = files.get(SourceDescriptor.pathKey(path));
+    if (file == null) return null;
+    return file.length() + ":" + file.lastModified();
+  }
+
+  /* The listed files keep the attributes returned by the listing */
+  private Map<String, IFSFile> list(String dir) throws Exception {
+    Map<String, IFSFile> files = new HashMap<>();
+    IFSFile[] listed = new IFSFile(system, dir).listFiles();
+    if (listed == null) return files;
+    String prefix = dir.endsWith("/") ? dir : dir + "/";
+    for (IFSFile file : listed) {
+      if (file.isFile()) files.put(SourceDescriptor.pathKey(prefix + file.getName()), file);
+    }
+    return files;
+  }
+
+  private String path(String streamFile) {
+    return streamFile.startsWith("/") ? streamFile : baseDir + "/" + streamFile;
+  }
+
+  static byte[] readChunks(InputStream stream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(CHUNK_SIZE);
+    byte[] chunk = new byte[CHUNK_SIZE];
+    int read;
+    while ((read = stream.read(chunk)) != -1) {
+      out.write(chunk, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,185 @@
+package com.github.kraudy.compiler;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/*
+ * What rebuilds if some targets change: the changed targets plus every target depending on them,
+ * directly or not, in build order.
+ * The fathers of every target are copied once into arrays indexed by build position, and the walk
+ * marks targets in a bitset, so each target and edge is visited at most once per query.
+ */
+public class ImpactAnalysis {
+  private final List<TargetKey> targets;                                    // Build order, childs first
+  private final Map<TargetKey, Integer> index = new IdentityHashMap<>();
+  private final int[][] fathers;                                            // Reverse adjacency
+  private Map<TargetKey, Map<String, String>> includes = Collections.emptyMap(); // Target -> included stream files
+
+  /* Own change check of a target, its childs are not looked at */
+  public interface ChangeCheck {
+    boolean changed(TargetKey key) throws Exception;
+  }
+
+  public ImpactAnalysis(List<TargetKey> buildOrder) {
+    this.targets = new ArrayList<>(buildOrder);
+    for (TargetKey target : this.targets) index.put(target, index.size());
+
+    this.fathers = new int[this.targets.size()][];
+    for (int i = 0; i < this.targets.size(); i++) {
+      List<TargetKey> list = this.targets.get(i).getFathersList();
+      int[] positions = new int[list.size()];
+      int count = 0;
+      for (TargetKey father : list) {
+        Integer position = index.get(father);
+        if (position != null) positions[count++] = position;
+      }
+      this.fathers[i] = count == positions.length ? positions : Arrays.copyOf(positions, count);
+    }
+  }
+
+  /* Copybooks found by the dependency scan, a changed copybook names every target including it */
+  public ImpactAnalysis setIncludes(Map<TargetKey, Map<String, String>> includes) {
+    this.includes = includes;
+    return this;
+  }
+
+  /* Build positions of the changed targets and everything above them */
+  public BitSet reach(Collection<TargetKey> changed) {
+    BitSet seen = new BitSet(targets.size());
+    int[] pending = new int[targets.size()];
+    int top = 0;
+    for (TargetKey target : changed) {
+      Integer position = index.get(target);
+      if (position == null || seen.get(position)) continue;
+      seen.set(position);
+      pending[top++] = position;
+    }
+    while (top > 0) {
+      for (int father : fathers[pending[--top]]) {
+        if (seen.get(father)) continue;
+        seen.set(father);
+        pending[top++] = father;
+      }
+    }
+    return seen;
+  }
+
+  /*
+   * Build positions of everything that must be rebuilt, deciding the changes on the way.
+   * One pass in build order: a target reached by a changed child is dirty without asking the check,
+   * any other target is checked once and, if changed, marks its fathers. Childs come first, so every
+   * target is decided before its fathers and the check runs only for targets with all childs clean.
+   */
+  public BitSet propagate(ChangeCheck check) throws Exception {
+    BitSet dirty = new BitSet(targets.size());
+    for (int i = 0; i < targets.size(); i++) {
+      if (!dirty.get(i) && !check.changed(targets.get(i))) continue;
+      dirty.set(i);
+      for (int father : fathers[i]) dirty.set(father);
+    }
+    return dirty;
+  }
+
+  /* Targets of the given positions, in build order */
+  public List<TargetKey> targetsOf(BitSet positions) {
+    List<TargetKey> result = new ArrayList<>(positions.cardinality());
+    for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+      result.add(targets.get(i));
+    }
+    return result;
+  }
+
+  /* Targets to rebuild, in build order */
+  public List<TargetKey> rebuildSet(Collection<TargetKey> changed) {
+    return targetsOf(reach(changed));
+  }
+
+  /*
+   * Targets named by a change: a target key (lib.name.type.source) or a stream file, relative to
+   * the spec directory, relative to the working directory or absolute. A stream file names the
+   * target it is the source of and every target including it.
+   */
+  public List<TargetKey> resolve(String change, String baseDirectory) {
+    List<TargetKey> matched = new ArrayList<>();
+    String key = change.trim().toUpperCase();
+    for (TargetKey target : targets) {
+      if (target.asString().toUpperCase().equals(key)) matched.add(target);
+    }
+    if (!matched.isEmpty()) return matched;
+
+    Path base = Paths.get(baseDirectory == null ? "" : baseDirectory).toAbsolutePath();
+    Path fromBase = base.resolve(change.trim()).normalize();
+    Path fromWorkDir = Paths.get(change.trim()).toAbsolutePath().normalize();
+    for (TargetKey target : targets) {
+      if (target.containsStreamFile() && matches(base, target.getStreamFile(), fromBase, fromWorkDir)) {
+        matched.add(target);
+        continue;
+      }
+      for (String include : includes.getOrDefault(target, Collections.emptyMap()).keySet()) {
+        if (!matches(base, include, fromBase, fromWorkDir)) continue;
+        matched.add(target);
+        break;
+      }
+    }
+    return matched;
+  }
+
+  private static boolean matches(Path base, String streamFile, Path fromBase, Path fromWorkDir) {
+    Path source = base.resolve(streamFile).normalize();
+    return source.equals(fromBase) || source.equals(fromWorkDir);
+  }
+
+  /* Text or JSON report of the rebuild set of the given changes */
+  public String report(List<String> changes, String baseDirectory, boolean json) {
+    List<TargetKey> changed = new ArrayList<>();
+    List<String> unmatched = new ArrayList<>();
+    for (String change : changes) {
+      List<TargetKey> matched = resolve(change, baseDirectory);
+      if (matched.isEmpty()) unmatched.add(change);
+      for (TargetKey target : matched) if (!changed.contains(target)) changed.add(target);
+    }
+    List<TargetKey> rebuild = rebuildSet(changed);
+
+    if (json) {
+      Map<String, Object> result = new LinkedHashMap<>();
+      result.put("changed", names(changed));
+      result.put("unmatched", unmatched);
+      result.put("rebuild", names(rebuild));
+      try {
+        return new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(result);
+      } catch (JsonProcessingException e) {
+        throw new CompilerException("Could not write impact report", e);
+      }
+    }
+
+    StringBuilder sb = new StringBuilder();
+    for (String change : unmatched) sb.append("Not a target or target source: ").append(change).append("\n");
+    sb.append("Rebuild set of ").append(changed.size()).append(" changed targets: ").append(rebuild.size()).append(" targets\n");
+    int position = 1;
+    for (TargetKey target : rebuild) {
+      sb.append(String.format("%4d ", position++)).append(target.asString());
+      if (changed.contains(target)) sb.append(" (changed)");
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+
+  private static List<String> names(List<TargetKey> keys) {
+    List<String> names = new ArrayList<>(keys.size());
+    for (TargetKey key : keys) names.add(key.asString());
+    return names;
+  }
+}
@@ -0,0 +1,148 @@
+package com.github.kraudy.compiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Finds the sources named by /COPY, /INCLUDE and SQL or CL INCLUDE, as stored by the SourceScanner.
+ * Stream files are looked up next to the including source first, then from the spec directory.
+ * Members (FILE,MEMBER or MEMBER) are matched to stream files of the local checkout: FILE/MEMBER.ext,
+ * the usual layout of a source file kept in a repo, or any MEMBER.ext when no file is given or found.
+ * Names are compared in upper case. A stream file missing in the case it is written in is looked up in
+ * the checkout by SourceDescriptor.pathKey, the way the IFS finds it: any case on the root file system,
+ * the exact one on QOpenSys. The checkout is listed once, on the first lookup that needs it.
+ * Resolutions are cached per including directory, so a copybook used everywhere is looked up once.
+ */
+public class IncludeResolver {
+  private final String baseDir;                   // Spec directory on the IFS, relative stream files are below it
+  private final List<Path> roots;                 // Local copies of the spec directory, in lookup order
+  private final SourceCache sources;
+  private volatile Map<String, String> members;   // FILE,MEMBER and ,MEMBER -> relative stream file
+  private volatile Map<String, String> paths;     // Path key -> relative stream file
+  private final Map<String, Optional<String>> resolved = new ConcurrentHashMap<>(); // Directory|include -> stream file
+
+  public IncludeResolver(String baseDir, List<Path> roots, SourceCache sources) {
+    this.baseDir = baseDir;
+    this.roots = new ArrayList<>(roots);
+    this.sources = sources;
+  }
+
+  /* Stream file of an include, relative to the spec directory unless absolute. Null if not found */
+  public String resolve(String include, String includingFile) {
+    String dir = directoryOf(includingFile);
+    return resolved.computeIfAbsent(dir + "|" + include, k -> Optional.ofNullable(find(include, dir))).orElse(null);
+  }
+
+  private String find(String include, String dir) {
+    int comma = include.indexOf(',');
+    if (comma >= 0) return member(include.substring(0, comma), include.substring(comma + 1));
+
+    /* A plain name is a member, unless there is a stream file by that name */
+    if (isMemberName(include)) {
+      String member = member(null, include);
+      if (member != null) return member;
+    }
+
+    String sibling = existing(join(dir, include));
+    if (sibling != null) return sibling;
+    return existing(join("", include));
+  }
+
+  private String member(String file, String member) {
+    listCheckout();
+    Map<String, String> index = members;
+    String found = file == null ? null : index.get(file + "," + member);
+    return found != null ? found : index.get("," + member);
+  }
+
+  /* The stream file as written if a source provider has it, else as named in the checkout. Null if not found */
+  private String existing(String streamFile) {
+    if (sources.stamp(streamFile) != null) return streamFile;
+    listCheckout();
+    return paths.get(pathKey(streamFile));
+  }
+
+  private String pathKey(String streamFile) {
+    return SourceDescriptor.pathKey(streamFile.startsWith("/") ? streamFile : baseDir + "/" + streamFile);
+  }
+
+  private void listCheckout() {
+    if (paths != null) return;
+    synchronized (this) {
+      if (paths == null) listFiles();
+    }
+  }
+
+  /*
+   * Stream files of the checkout by parent directory and name without extension, and by path key.
+   * First one wins
+   */
+  private void listFiles() {
+    Map<String, String> index = new HashMap<>();
+    Map<String, String> keys = new HashMap<>();
+    for (Path root : roots) {
+      if (!Files.isDirectory(root)) continue;
+      List<Path> files;
+      try (Stream<Path> paths = Files.walk(root)) {
+        files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      } catch (IOException e) {
+        continue;  // Members are then not resolved from this root
+      }
+      for (Path file : files) {
+        Path relative = root.relativize(file);
+        if (relative.toString().startsWith(".")) continue;  // .git and friends
+        String name = file.getFileName().toString();
+        int dot = name.indexOf('.');
+        String member = (dot > 0 ? name.substring(0, dot) : name).toUpperCase();
+        String parent = relative.getParent() == null ? "" : relative.getParent().getFileName().toString().toUpperCase();
+        String path = relative.toString().replace('\\', '/');
+        index.putIfAbsent(parent + "," + member, path);
+        index.putIfAbsent("," + member, path);
+        keys.putIfAbsent(pathKey(path), path);
+      }
+    }
+    members = index;
+    paths = keys;
+  }
+
+  private static boolean isMemberName(String name) {
+    if (name.isEmpty() || name.length() > 10) return false;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (!((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '$' || c == '#' || c == '@' || c == '_')) return false;
+    }
+    return true;
+  }
+
+  private static String directoryOf(String streamFile) {
+    int slash = streamFile.lastIndexOf('/');
+    return slash < 0 ? "" : streamFile.substring(0, slash);
+  }
+
+  /* Path of a file from a directory, ./ and ../ segments resolved. Absolute paths are kept */
+  static String join(String dir, String path) {
+    String full = path.startsWith("/") || dir.isEmpty() ? path : dir + "/" + path;
+    List<String> segments = new ArrayList<>();
+    for (String segment : full.split("/")) {
+      if (segment.isEmpty() || segment.equals(".")) continue;
+      if (segment.equals("..")) {
+        if (!segments.isEmpty() && !segments.get(segments.size() - 1).equals("..")) {
+          segments.remove(segments.size() - 1);
+          continue;
+        }
+        if (full.startsWith("/")) continue;
+      }
+      segments.add(segment);
+    }
+    return (full.startsWith("/") ? "/" : "") + String.join("/", segments);
+  }
+}
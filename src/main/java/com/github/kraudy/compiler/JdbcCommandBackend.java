@@ -0,0 +1,34 @@
+package com.github.kraudy.compiler;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/*
+ * Commands run as CALL QSYS2.QCMDEXC on the JDBC connection, in the same job as the catalog
+ * queries. Messages are left in the joblog and read when the collector is collected.
+ */
+public class JdbcCommandBackend implements CommandBackend {
+  public static final String NAME = "jdbc";
+
+  private final Connection connection;
+
+  public JdbcCommandBackend(Connection connection) {
+    this.connection = connection;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public void run(String command, Timestamp since, JoblogCollector joblog) throws Exception {
+    joblog.begin(command, since);
+
+    /* Not prepared: no two commands are alike and their quotes are already doubled for this literal */
+    try (Statement cmdStmt = connection.createStatement()) {
+      cmdStmt.execute("CALL QSYS2.QCMDEXC('" + command + "')");
+    }
+  }
+}
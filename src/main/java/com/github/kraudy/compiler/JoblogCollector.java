@@ -0,0 +1,172 @@
+package com.github.kraudy.compiler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import com.ibm.as400.access.AS400Message;
+
+/*
+ * Joblog messages of the commands run on one job.
+ * Commands are registered as they run and the joblog is read once, when collected, in a single
+ * query ordered by message position. Each message is attributed to the last command started
+ * before it. The position of the last message read is kept so the next collection starts there.
+ * Commands whose messages came back with the call are kept as they are and never queried.
+ * Queries go through the prepared statements of the job, the position and time are parameters.
+ */
+public class JoblogCollector {
+  private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+  private static final int FETCH_SIZE = 500;
+
+  static final String MARKER_QUERY =
+    "SELECT COALESCE(MAX(ORDINAL_POSITION), 0) As MARKER FROM TABLE(QSYS2.JOBLOG_INFO('*'))";
+
+  /* Parameters: marker, marker again, time of the first command. No position filter if the marker is negative */
+  static final String MESSAGES_QUERY =
+    "SELECT ORDINAL_POSITION, MESSAGE_TIMESTAMP, MESSAGE_ID, SEVERITY, MESSAGE_TEXT " +
+    "FROM TABLE(QSYS2.JOBLOG_INFO('*')) " +
+    "WHERE FROM_USER = USER " +
+    "AND (? < 0 OR ORDINAL_POSITION > ?) " +
+    "AND MESSAGE_TIMESTAMP >= ? " +
+    "AND MESSAGE_ID NOT IN ('SQL0443', 'CPC0904', 'CPF2407') " +
+    "ORDER BY ORDINAL_POSITION ASC";
+
+  /* Command run since the last collection */
+  private static class PendingCommand {
+    final String command;
+    final Timestamp since;  // Earliest server time its messages can have
+    final StringBuilder messages = new StringBuilder();
+    final boolean inline;   // Messages came back with the command, the joblog is not read for it
+    int found = 0;
+
+    PendingCommand(String command, Timestamp since, boolean inline) {
+      this.command = command;
+      this.since = since;
+      this.inline = inline;
+    }
+  }
+
+  private final CatalogStatements statements;
+  private final List<PendingCommand> pending = new ArrayList<>();
+  private long marker = -1;  // Last ORDINAL_POSITION read, -1 if unknown
+
+  public JoblogCollector(CatalogStatements statements) {
+    this.statements = statements;
+  }
+
+  /* Sets the start position at the current end of the joblog */
+  public void mark() {
+    try (ResultSet rs = statements.query(MARKER_QUERY)) {
+      if (rs.next()) this.marker = rs.getLong("MARKER");
+    } catch (SQLException e) {
+      throw new CompilerException("Error retrieving joblog position", e);
+    }
+  }
+
+  public void begin(String command, Timestamp since) {
+    pending.add(new PendingCommand(command, since, false));
+  }
+
+  /* Command whose messages came back with its call, e.g. from the remote command server */
+  public void complete(String command, Timestamp since, AS400Message[] messages) {
+    PendingCommand completed = new PendingCommand(command, since, true);
+    for (AS400Message message : messages) {
+      Calendar date = message.getDate();
+      appendMessage(completed.messages, date == null ? since : new Timestamp(date.getTimeInMillis()), message.getID(),
+          String.valueOf(message.getSeverity()), message.getText());
+      completed.found++;
+    }
+    pending.add(completed);
+  }
+
+  public boolean hasPending() {
+    return !pending.isEmpty();
+  }
+
+  /* Drops the pending commands without reading the joblog */
+  public void discard() {
+    pending.clear();
+  }
+
+  /* Reads the messages of the pending commands. Empty if nothing ran since the last collection */
+  public String collect() {
+    if (pending.isEmpty()) return "";
+
+    List<PendingCommand> commands = new ArrayList<>(pending);
+    pending.clear();
+
+    /* Only the commands without their messages need the joblog */
+    List<PendingCommand> unread = new ArrayList<>();
+    int found = 0;
+    for (PendingCommand command : commands) {
+      if (command.inline) found += command.found;
+      else unread.add(command);
+    }
+    if (!unread.isEmpty()) found += read(unread);
+
+    return format(commands, found);
+  }
+
+  /* Joblog messages from the first command on, each one given to the last command started before it */
+  private int read(List<PendingCommand> commands) {
+    int current = 0;
+    int found = 0;
+    try (ResultSet rsMessages = statements.query(MESSAGES_QUERY, marker, marker, commands.get(0).since)) {
+      rsMessages.setFetchSize(FETCH_SIZE);
+
+      while (rsMessages.next()) {
+        found++;
+        marker = Math.max(marker, rsMessages.getLong("ORDINAL_POSITION"));
+        Timestamp messageTime = rsMessages.getTimestamp("MESSAGE_TIMESTAMP");
+
+        /* Messages come in order, move to the last command started before this one */
+        while (current + 1 < commands.size() && !messageTime.before(commands.get(current + 1).since)) {
+          current++;
+        }
+
+        appendMessage(commands.get(current).messages, messageTime, rsMessages.getString("MESSAGE_ID"),
+            rsMessages.getString("SEVERITY"), rsMessages.getString("MESSAGE_TEXT"));
+      }
+    } catch (SQLException e) {
+      throw new CompilerException("Error retrieving joblog", e);
+    }
+
+    return found;
+  }
+
+  private static String format(List<PendingCommand> commands, int found) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("\nJoblog info\n");
+    if (found == 0) {
+      return sb.append("No relevant joblog messages found.\n").toString();
+    }
+    for (PendingCommand command : commands) {
+      if (command.messages.length() == 0) continue;
+      sb.append("Command: ").append(command.command).append("\n");
+      sb.append(command.messages);
+    }
+    return sb.toString();
+  }
+
+  /* Time | message id | severity | text, in fixed width columns */
+  static void appendMessage(StringBuilder sb, Timestamp time, String messageId, String severity, String text) {
+    pad(sb, TIME_FORMAT.format(time.toLocalDateTime()), 20).append(" | ");
+    pad(sb, trim(messageId), 10).append(" | ");
+    pad(sb, trim(severity), 4).append(" | ");
+    sb.append(trim(text)).append("\n");
+  }
+
+  private static StringBuilder pad(StringBuilder sb, String value, int width) {
+    sb.append(value);
+    for (int i = value.length(); i < width; i++) sb.append(' ');
+    return sb;
+  }
+
+  private static String trim(String value) {
+    return value == null ? "" : value.trim();
+  }
+}
@@ -0,0 +1,65 @@
+package com.github.kraudy.compiler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/*
+ * Reads sources from a local directory with NIO, no server round trip.
+ * Used for a local checkout of the spec base directory, which is where the YAML was read from.
+ * Only relative stream files are served, an absolute one names an IFS path.
+ * Large files are memory mapped instead of copied into a heap buffer first.
+ */
+public class LocalSourceProvider implements SourceProvider {
+  private static final long MAP_THRESHOLD = 1024 * 1024;
+
+  private final String name;
+  private final Path root;
+
+  public LocalSourceProvider(String name, Path root) {
+    this.name = name;
+    this.root = root;
+  }
+
+  @Override
+  public String getName() {
+    return this.name;
+  }
+
+  @Override
+  public String stamp(String streamFile) throws IOException {
+    if (streamFile.startsWith("/")) return null;
+
+    Path file = root.resolve(streamFile);
+    if (!Files.isRegularFile(file)) return null;
+
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    return attributes.size() + ":" + attributes.lastModifiedTime().toMillis();
+  }
+
+  @Override
+  public String read(String streamFile) throws IOException {
+    if (streamFile.startsWith("/")) return null;
+
+    Path file = root.resolve(streamFile);
+    if (!Files.isRegularFile(file)) return null;
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < MAP_THRESHOLD) {
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) { }
+        buffer.flip();
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+      }
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return StandardCharsets.UTF_8.decode(mapped).toString();
+    }
+  }
+}
@@ -1,14 +1,21 @@
 package com.github.kraudy.compiler;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.github.kraudy.compiler.CompilationPattern.ObjectType;
 import com.github.kraudy.compiler.CompilationPattern.ParamCmd;
@@ -35,10 +42,11 @@ public class MasterCompiler{
   private final Connection connection;
   private final User currentUser;
   private CommandExecutor commandExec;
-  private Migrator migrator;
-  private ObjectDescriptor odes;
-  private SourceDescriptor sourceDes;
   private DependencyAwareness depAwareness;
+  private BuildState buildState;                            // Local state for diff builds
+  private final CatalogIndex catalog = new CatalogIndex(); // Catalog data prefetched for all jobs
+  private BuildJob primaryJob;                              // Job of the main connection
+  private final List<BuildJob> workerJobs = new ArrayList<>(); // Extra jobs for parallel builds
 
   private BuildSpec globalSpec;     // global build spec
   private boolean dryRun = false;   // Compile commands without executing 
@@ -47,10 +55,22 @@ public class MasterCompiler{
   private boolean clean = false;  // Delete spec objects after compilation
   private boolean diff = false;     // Diff build flag
   private boolean noMigrate = false;  // Source migration
-
-  private boolean compilationError = false;
-  private int builtCount = 0;
-  private int skippedCount = 0;
+  private int jobs = 1;               // Number of IBM i jobs building targets
+  private boolean localClock = false; // Estimate server time instead of querying it per command
+  private int migrateAhead = 0;       // Targets prepared ahead of the build, 0 disables the pipeline
+  private MigrationPipeline pipeline;
+  private int scanThreads = 0;        // Concurrent source reads of the dependency scan, 0 uses the default
+  private Path sourceMirror;          // Local checkout of the sources read by the dependency scan
+  private boolean localSources = true; // Scan the YAML directory sources from this filesystem
+  private File graphFile;             // Dependency graph export, DOT or JSON
+  private String sqlPackage;          // [LIB/]NAME of the SQL package of the build jobs, null for none
+  private String execBackend = JdbcCommandBackend.NAME; // Transport of the CL commands
+  private final Map<TargetKey, Long> durations = Collections.synchronizedMap(new IdentityHashMap<>()); // Build millis of this run
+
+  private volatile boolean compilationError = false;
+  private final AtomicInteger builtCount = new AtomicInteger();
+  private final AtomicInteger skippedCount = new AtomicInteger();
+  private final List<TargetKey> builtTargets = Collections.synchronizedList(new ArrayList<>()); // Targets built by this run, in start order
 
   public MasterCompiler(AS400 system) throws Exception {
     this(system, new AS400JDBCDataSource(system).getConnection());
@@ -83,23 +103,72 @@ public class MasterCompiler{
     this.noMigrate = noMigrate;
   }
 
-  public void build() {
+  /* Number of IBM i jobs used to build targets in parallel */
+  public MasterCompiler setJobs(int jobs) {
+    if (jobs < 1) throw new IllegalArgumentException("Jobs must be at least 1: " + jobs);
+    this.jobs = jobs;
+    return this;
+  }
+
+  /* Measure the server clock offset once per job instead of a time query per command */
+  public MasterCompiler setLocalClock(boolean localClock) {
+    this.localClock = localClock;
+    return this;
+  }
+
+  /* Prepare the sources of the next K targets on a secondary job while the current one compiles */
+  public MasterCompiler setMigrateAhead(int migrateAhead) {
+    this.migrateAhead = migrateAhead;
+    return this;
+  }
+
+  /* Threads reading sources while detecting dependencies */
+  public MasterCompiler setScanThreads(int scanThreads) {
+    this.scanThreads = scanThreads;
+    return this;
+  }
+
+  /* Local copy of the spec base directory, the dependency scan reads it instead of the IFS */
+  public MasterCompiler setSourceMirror(Path sourceMirror) {
+    this.sourceMirror = sourceMirror;
+    return this;
+  }
 
-    /* Init command executor */
-    commandExec = new CommandExecutor(connection, debug, verbose, dryRun);
+  /* False makes the dependency scan read every source from the IFS */
+  public MasterCompiler setLocalSources(boolean localSources) {
+    this.localSources = localSources;
+    return this;
+  }
 
-    /* Init migrator */
-    if (!noMigrate) migrator = new Migrator(connection, debug, verbose, currentUser, commandExec);
+  /* Keep the prepared statements of the build jobs in an SQL package, so their access plans outlive the run */
+  public MasterCompiler setSqlPackage(String sqlPackage) {
+    this.sqlPackage = sqlPackage;
+    return this;
+  }
 
-    /* Init dependency awareness */
-    if (diff) depAwareness = new DependencyAwareness(system, debug, verbose);
+  /* CL commands over JDBC (QCMDEXC) or the remote command server (CommandCall) */
+  public MasterCompiler setExecBackend(String execBackend) {
+    this.execBackend = execBackend;
+    return this;
+  }
 
+  /* Writes the dependency graph with build times and critical path after the build */
+  public MasterCompiler setGraphFile(File graphFile) {
+    this.graphFile = graphFile;
+    return this;
+  }
 
-    /* Init source descriptor */
-    sourceDes = new SourceDescriptor(connection, debug, verbose);
+  public void build() {
 
-    /* Init object descriptor */
-    odes = new ObjectDescriptor(connection, debug, verbose);
+    /* Init primary job, it holds the command executor, migrator and descriptors of the main connection */
+    primaryJob = new BuildJob(0, connection, currentUser, catalog, dryRun, debug, verbose, noMigrate);
+    commandExec = primaryJob.getCommandExecutor();
+    setupExecutor(primaryJob);
+
+    /* Init dependency awareness. Parallel builds need the graph to know what can overlap */
+    if (diff || jobs > 1 || graphFile != null) depAwareness = new DependencyAwareness(system, debug, verbose).setScanThreads(scanThreads)
+        .setSourceMirror(sourceMirror)
+        .setLocalSources(localSources);
 
     try {
       /* Global before */
@@ -107,13 +176,53 @@ public class MasterCompiler{
         if (verbose) logger.info("Executing global before: " + globalSpec.before.size() + " commands found");
         commandExec.executeCommand(globalSpec.before);
       }
+      showJoblog(primaryJob);
 
       if(verbose) logger.info(showLibraryList());
 
-      if (diff) depAwareness.detectDependencies(globalSpec);
+      if (depAwareness != null) {
+        depAwareness.detectDependencies(globalSpec);
+
+        /* Build in dependency order, childs first */
+        BuildTopoSort topoSort = new BuildTopoSort(debug, verbose);
+        if (verbose) topoSort.levels(globalSpec);
+        globalSpec.reorderTargets(topoSort.topologicalSort(globalSpec));
+      }
+
+      /* Load catalog info of all targets up front instead of one round trip per target */
+      primaryJob.getObjectDescriptor().prefetch(globalSpec);
+
+      /* Source PFs and members needed by the migration, checked once for all targets */
+      if (!noMigrate) {
+        boolean curLibTargets = globalSpec.targets.keySet().stream().anyMatch(TargetKey::isCurLib);
+        catalog.getMigrationPlan().prefetch(connection, globalSpec, curLibTargets ? getCurLIb(connection) : null, verbose);
+      }
+
+      /* Resolve diff timestamps of all targets at once */
+      if (diff) primaryJob.getSourceDescriptor().prefetchTimestamps(globalSpec);
+
+      /* Local build state, lets the diff decide without asking the server */
+      if (diff && !dryRun) {
+        File stateFile = BuildState.stateFileOf(globalSpec);
+        if (stateFile != null) {
+          buildState = new BuildState(system, stateFile, debug, verbose);
+          buildState.load();
+          if (depAwareness != null) buildState.setIncludes(depAwareness.getIncludeHashes());
+          buildState.prepare(globalSpec);
+        } else if (verbose) {
+          logger.info("Spec directory not reachable locally, build state disabled");
+        }
+      }
+
+      /* Diff builds decide up front what to rebuild, skipped targets are never dispatched */
+      LinkedHashMap<TargetKey, BuildSpec.TargetSpec> targets = diff ? rebuildSet(globalSpec.targets) : globalSpec.targets;
 
       /* Build each target */
-      buildTargets(globalSpec.targets);
+      if (jobs > 1) {
+        buildTargetsParallel(targets);
+      } else {
+        buildTargets(targets);
+      }
 
       /* Execute global success */
       if(!globalSpec.success.isEmpty()){
@@ -154,43 +263,148 @@ public class MasterCompiler{
         if (verbose) logger.info("Cleaning built objects");
         clenBuiltObjects();
       }
+      if (pipeline != null) {
+        pipeline.close();
+        pipeline = null;
+      }
+      if (graphFile != null && depAwareness != null) writeGraph(globalSpec, buildState, durations, graphFile);
+      if (buildState != null) buildState.save();
+      showJoblog(primaryJob);
       /* Show chain of commands */
       if (verbose) logger.info("Chain of commands: {}", commandExec.getExecutionChain());
+      if (verbose) logger.info("Commands: {}", commandExec.getCommandStats());
+      primaryJob.close();
+      for (BuildJob job : workerJobs) {
+        showJoblog(job);
+        if (verbose) logger.info("Chain of commands of {}: {}", job.getName(), job.getCommandExecutor().getExecutionChain());
+        if (verbose) logger.info("Commands of {}: {}", job.getName(), job.getCommandExecutor().getCommandStats());
+        job.close();
+      }
+      workerJobs.clear();
     }
 
   }
 
   private void buildTargets(LinkedHashMap<TargetKey, BuildSpec.TargetSpec> targets) throws Exception{
+    /* Diff builds only get here the rebuild set, so nothing skipped is prepared ahead */
+    if (migrateAhead > 0 && !noMigrate && targets.size() > 1) startPipeline(targets);
+
     /* This is intended for a YAML file with multiple objects in a toposort order */
     for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : targets.entrySet()) {
-      TargetKey key = entry.getKey();
-      BuildSpec.TargetSpec targetSpec = entry.getValue();
-
-      /* Skip target if diff and no build required */
-      if (diff) {
-        sourceDes.getObjectTimestamps(key);
-        if (!key.needsRebuild()) {
-          this.skippedCount++;
-          if (verbose) logger.info("Skipping unchanged target: " + key.asString() + key.getTimestmaps());
-          continue; 
-        }
-        if (key.isChild()) {
-          /* Since child changed, fathers must be recompiled */
-          updateFathersSourceTimeStamps(key);
-        }
-        
-      }
+      buildTarget(entry.getKey(), entry.getValue(), primaryJob);
+    }
+  }
+
+  private void startPipeline(LinkedHashMap<TargetKey, BuildSpec.TargetSpec> targets) throws Exception {
+    /* Spec lookup by identity, see TargetKey.hashCode */
+    Map<TargetKey, BuildSpec.TargetSpec> specs = new IdentityHashMap<>();
+    for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : targets.entrySet()) {
+      specs.put(entry.getKey(), entry.getValue());
+    }
 
-      this.builtCount++;
-      if (verbose) logger.info("Building: " + key.asString());
+    BuildJob job = BuildJob.open(system, sqlPackage, 1, currentUser, catalog, dryRun, debug, verbose, noMigrate);
+    workerJobs.add(job);
+    setupExecutor(job);
+    setupWorkerJob(job);
+
+    if (verbose) logger.info("Preparing sources up to " + migrateAhead + " targets ahead on " + job.getName());
+
+    pipeline = new MigrationPipeline(job, new ArrayList<>(targets.keySet()),
+      key -> !specs.get(key).before.isEmpty(),  // Hooks may change what the preparation sees
+      migrateAhead,
+      (key, migrationJob) -> {
+        resolveCurLib(key, migrationJob);
+        prepareTarget(key, specs.get(key), migrationJob);
+      },
+      debug, verbose);
+  }
 
-      try{
+  /* Builds targets over a pool of jobs. A target is dispatched once its childs are built */
+  private void buildTargetsParallel(LinkedHashMap<TargetKey, BuildSpec.TargetSpec> targets) throws Exception{
+    /* Spec lookup by identity, see TargetKey.hashCode */
+    Map<TargetKey, BuildSpec.TargetSpec> specs = new IdentityHashMap<>();
+    for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : targets.entrySet()) {
+      specs.put(entry.getKey(), entry.getValue());
+    }
 
-        /* Resolve curlib */
-        if(key.isCurLib()){
-          if (verbose) logger.info("Resolving curlib");
-          key.setLibrary(getCurLIb());
-        }
+    /* No need for more jobs than targets */
+    int jobCount = Math.min(jobs, targets.size());
+
+    List<BuildJob> pool = new ArrayList<>();
+    pool.add(primaryJob);
+    for (int i = 1; i < jobCount; i++) {
+      BuildJob job = BuildJob.open(system, sqlPackage, i, currentUser, catalog, dryRun, debug, verbose, noMigrate);
+      workerJobs.add(job);
+      setupExecutor(job);
+      setupWorkerJob(job);
+      pool.add(job);
+    }
+
+    if (verbose) logger.info("Building " + targets.size() + " targets over " + pool.size() + " jobs");
+
+    new BuildScheduler(pool, debug, verbose).run(
+      new ArrayList<>(targets.keySet()),
+      (key, job) -> buildTarget(key, specs.get(key), job)
+    );
+  }
+
+  /* Command backend and clock of a job, before it runs anything */
+  private void setupExecutor(BuildJob job) {
+    CommandExecutor exec = job.getCommandExecutor();
+    if (CommandCallBackend.NAME.equals(execBackend)) exec.useBackend(new CommandCallBackend(system, job.getConnection()));
+    if (localClock) exec.useLocalClock();
+  }
+
+  /* 
+   * Worker jobs start with the user profile's environment. Replicate what the primary job has:
+   * current directory for relative stream files, global before hooks and the library list.
+   */
+  private void setupWorkerJob(BuildJob job) throws Exception {
+    CommandExecutor exec = job.getCommandExecutor();
+
+    if (globalSpec.getBaseDirectory() != null) {
+      exec.executeCommand(new CommandObject(SysCmd.CHGCURDIR)
+          .put(ParamCmd.DIR, globalSpec.getBaseDirectory()));
+    }
+
+    if (!globalSpec.before.isEmpty()) {
+      if (verbose) logger.info("Executing global before on " + job.getName() + ": " + globalSpec.before.size() + " commands found");
+      exec.executeCommand(globalSpec.before);
+    }
+
+    /* Hooks may have changed the primary library list after the before commands, mirror it */
+    exec.executeCommand(getLibraryListCommand());
+    showJoblog(job);
+  }
+
+  /* Joblog of the commands run on the job since the last call. Read once per target, not per command */
+  private void showJoblog(BuildJob job) {
+    CommandExecutor exec = job.getCommandExecutor();
+    if (!verbose) {
+      exec.discardJoblog();
+      return;
+    }
+    try {
+      String joblog = exec.collectJoblog();
+      if (!joblog.isEmpty()) logger.info(joblog);
+    } catch (CompilerException e) {
+      logger.warn("Could not read joblog of " + job.getName(), e);
+    }
+  }
+
+  private void buildTarget(TargetKey key, BuildSpec.TargetSpec targetSpec, BuildJob job) throws Exception{
+    CommandExecutor commandExec = job.getCommandExecutor();
+
+    this.builtCount.incrementAndGet();
+    this.builtTargets.add(key);
+    if (verbose) logger.info("Building: " + key.asString() + (jobs > 1 ? " on " + job.getName() : ""));
+    long started = System.currentTimeMillis();
+
+    try{
+
+      /* Source already prepared ahead by the migration pipeline */
+      if (pipeline == null || !pipeline.await(key)) {
+        resolveCurLib(key, job);
 
         /* Per target before */
         if(!targetSpec.before.isEmpty()){
@@ -198,57 +412,74 @@ public class MasterCompiler{
           commandExec.executeCommand(targetSpec.before);
         }
 
-        /* If the object exists, we try to extract its compilation params */
-        odes.getObjectInfo(key);
-
-        /* Set global defaults params per target */
-        key.putAll(globalSpec.defaults);
+        prepareTarget(key, targetSpec, job);
+      }
 
-        /* Set target specific params */
-        key.putAll(targetSpec.params);
+      /* Execute compilation command */
+      commandExec.executeCommand(key);
 
+      /* Per target success */
+      if(!targetSpec.success.isEmpty()){
+        if (verbose) logger.info("Executing target success: " + targetSpec.success.size() + " commands found");
+        commandExec.executeCommand(targetSpec.success);
+      } 
 
-        /* Migrate source file */
-        if (!noMigrate) migrator.migrateSource(key);
+      /* Per target after */
+      if(!targetSpec.after.isEmpty()){
+        if (verbose) logger.info("Executing target after: " + targetSpec.after.size() + " commands found");
+        commandExec.executeCommand(targetSpec.after);
+      } 
 
-        /* Execute compilation command */
-        commandExec.executeCommand(key);
+      long duration = System.currentTimeMillis() - started;
+      durations.put(key, duration);
+      if (buildState != null) buildState.record(key, duration);
 
-        /* Per target success */
-        if(!targetSpec.success.isEmpty()){
-          if (verbose) logger.info("Executing target success: " + targetSpec.success.size() + " commands found");
-          commandExec.executeCommand(targetSpec.success);
-        } 
+    } catch (CompilerException e){
+      compilationError = true;
+      if (buildState != null) buildState.forget(key);
+      if (verbose) logger.error("Target compilation failed: " + key.asString());
 
-        /* Per target after */
-        if(!targetSpec.after.isEmpty()){
-          if (verbose) logger.info("Executing target after: " + targetSpec.after.size() + " commands found");
-          commandExec.executeCommand(targetSpec.after);
-        } 
+      /* Per target failure */
+      if(!targetSpec.failure.isEmpty()){
+        if (verbose) logger.error("Executing target failure: " + targetSpec.failure.size() + " commands found");
+        commandExec.executeCommand(targetSpec.failure);
+      } 
 
-      } catch (CompilerException e){
-        compilationError = true;
-        if (verbose) logger.error("Target compilation failed: " + key.asString());
+      throw e; // Raise
 
-        /* Per target failure */
-        if(!targetSpec.failure.isEmpty()){
-          if (verbose) logger.error("Executing target failure: " + targetSpec.failure.size() + " commands found");
-          commandExec.executeCommand(targetSpec.failure);
-        } 
+    } catch (Exception e){
+      compilationError = true;
+      if (buildState != null) buildState.forget(key);
+      if (verbose) logger.error("Unhandled exception in Target: " + key.asString());
 
-        throw e; // Raise
+      throw e; // Raise
 
-      } catch (Exception e){
-        compilationError = true;
-        if (verbose) logger.error("Unhandled exception in Target: " + key.asString());
+    } finally {
+      showJoblog(job);
+    }
 
-        throw e; // Raise
+  }
 
-      } finally {
-        //TODO: Do something cool here.
-      }
+  private void resolveCurLib(TargetKey key, BuildJob job) throws SQLException {
+    if(key.isCurLib()){
+      if (verbose) logger.info("Resolving curlib");
+      key.setLibrary(getCurLIb(job.getConnection()));
     }
+  }
+
+  /* Everything the compilation command needs: object info, params and the migrated source */
+  private void prepareTarget(TargetKey key, BuildSpec.TargetSpec targetSpec, BuildJob job) throws Exception {
+    /* If the object exists, we try to extract its compilation params */
+    job.getObjectDescriptor().getObjectInfo(key);
 
+    /* Set global defaults params per target */
+    key.putAll(globalSpec.defaults);
+
+    /* Set target specific params */
+    key.putAll(targetSpec.params);
+
+    /* Migrate source file */
+    if (!noMigrate) job.getMigrator().migrateSource(key);
   }
 
   public boolean foundCompilationError(){
@@ -256,11 +487,17 @@ public class MasterCompiler{
   }
 
   public int getBuiltCount() {
-    return this.builtCount;
+    return this.builtCount.get();
   }
 
   public int getSkippedCount() {
-    return this.skippedCount;
+    return this.skippedCount.get();
+  }
+
+  public List<TargetKey> getBuiltTargets() {
+    synchronized (this.builtTargets) {
+      return new ArrayList<>(this.builtTargets);
+    }
   }
 
   public BuildSpec getGlobalSpec(){
@@ -277,33 +514,63 @@ public class MasterCompiler{
       if (!key.objectExists()) continue;
       try {
         commandExec.deleteObject(key);
+        if (buildState != null) buildState.forget(key);
       } catch (Exception ignored) {} // This prevents breaking the loop
     }
   }
 
-  /* Update target's fathers source edit timestamp so they can be recompiled */
-  private void updateFathersSourceTimeStamps(TargetKey childKey){
-
-    logger.info("Updating fathers source timestamp of child object (" + childKey.asString() + ")");
-
-    for(TargetKey fatherKey: childKey.getFathersList()){
-      /* if already updated, omit */
-      if (fatherKey.needsRebuild()) continue;
-      //TODO: Check lastSourceEdit and lastBuild
-      String relativePath = fatherKey.getStreamFile();
-      if (relativePath == null) {
-        //TODO: If needed, the update effect could be simultated of forced chaning las edit variable
-        logger.info("Father object (" + fatherKey.asString() + ") has not streamfile path for update");
+  /*
+   * Diff: targets to rebuild, in build order. Decided in one pass before anything is built, so it does
+   * not depend on build order or jobs: a target is checked on its own only if none of its childs is
+   * rebuilt, and every target above a changed one is rebuilt whatever its own sources say.
+   */
+  private LinkedHashMap<TargetKey, BuildSpec.TargetSpec> rebuildSet(LinkedHashMap<TargetKey, BuildSpec.TargetSpec> targets) throws Exception {
+    List<TargetKey> order = new ArrayList<>(targets.keySet());
+    Set<TargetKey> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    BitSet dirty = new ImpactAnalysis(order).propagate(key -> {
+      if (!targetChanged(key)) return false;
+      changed.add(key);
+      return true;
+    });
+
+    LinkedHashMap<TargetKey, BuildSpec.TargetSpec> rebuild = new LinkedHashMap<>();
+    int position = 0;
+    for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : targets.entrySet()) {
+      TargetKey key = entry.getKey();
+      if (!dirty.get(position++)) {
+        this.skippedCount.incrementAndGet();
         continue;
       }
-      /* use touch to update source stream file. bnddir, dtaara and dtaq have no source file*/
-      CommandObject touch = new CommandObject(SysCmd.QSH)
-            .put(ParamCmd.CMD, "/QOpenSys/pkgs/bin/touch " + globalSpec.getBaseDirectory() + relativePath);
-      
-      try {
-        commandExec.executeCommand(touch);
-      } catch (Exception ignore) {} // Omit exeption to not break for.
+      if (!changed.contains(key)) {
+        key.invalidate();
+        if (verbose) logger.info("Target " + key.asString() + " invalidated by a changed child");
+      }
+      rebuild.put(key, entry.getValue());
     }
+
+    if (verbose) logger.info("Rebuild set: " + rebuild.size() + " of " + order.size() + " targets (" + changed.size() + " changed)");
+    return rebuild;
+  }
+
+  /* Own state of a target, its childs aside: build state first, server timestamps without one */
+  private boolean targetChanged(TargetKey key) throws Exception {
+    BuildState.Decision decision = buildState == null ? BuildState.Decision.UNKNOWN : buildState.check(key);
+
+    if (decision == BuildState.Decision.UP_TO_DATE) {
+      if (verbose) logger.info("Skipping unchanged target: " + key.asString() + " (build state)");
+      return false;
+    }
+    if (decision == BuildState.Decision.CHANGED) return true;
+
+    /* No local state, compare server timestamps */
+    primaryJob.getSourceDescriptor().getObjectTimestamps(key);
+    if (key.needsRebuild()) return true;
+
+    if (verbose) logger.info("Skipping unchanged target: " + key.asString() + key.getTimestmaps());
+    /* Baseline for the next run, so it can decide from the source hash */
+    if (buildState != null) buildState.record(key);
+    return false;
   }
 
   private String showLibraryList() throws SQLException{
@@ -326,7 +593,33 @@ public class MasterCompiler{
     }
   }
 
-  private String getCurLIb() throws SQLException{
+  /* Library list of the primary job as a CHGLIBL command */
+  private CommandObject getLibraryListCommand() throws SQLException{
+    List<String> userLibs = new ArrayList<>();
+    String curlib = ValCmd.CRTDFT.toString();
+
+    try(Statement stmt = connection.createStatement();
+        ResultSet rsLibList = stmt.executeQuery(
+          "SELECT TRIM(SCHEMA_NAME) As SCHEMA_NAME, TYPE FROM QSYS2.LIBRARY_LIST_INFO " + 
+          "WHERE TYPE IN ('USER', 'CURRENT') ORDER BY ORDINAL_POSITION"
+        )){
+      while (rsLibList.next()) {
+        if ("CURRENT".equals(rsLibList.getString("TYPE").trim())) {
+          curlib = rsLibList.getString("SCHEMA_NAME");
+          continue;
+        }
+        userLibs.add(rsLibList.getString("SCHEMA_NAME"));
+      }
+    } catch (SQLException e){
+      throw new CompilerException("Error retrieving library list", e);
+    }
+
+    return new CommandObject(SysCmd.CHGLIBL)
+      .put(ParamCmd.LIBL, userLibs.isEmpty() ? ValCmd.NONE.toString() : String.join(" ", userLibs))
+      .put(ParamCmd.CURLIB, curlib);
+  }
+
+  private String getCurLIb(Connection connection) throws SQLException{
     String curlib = "";
 
     try(Statement stmt = connection.createStatement();
@@ -345,6 +638,53 @@ public class MasterCompiler{
     }
   }
 
+  /* Detects the dependencies of the spec and prints what rebuilds for the changes given to --impact */
+  private static void printImpact(ArgParser parser) throws Exception {
+    if (parser.isJson()) Utilities.quietLogs();  // Keep stdout parseable
+
+    BuildSpec spec = parser.getSpecFromYamlFile();
+    DependencyAwareness depAwareness = new DependencyAwareness(null, parser.isDebug(), parser.isVerbose())
+        .setScanThreads(parser.getScanThreads())
+        .setSourceMirror(parser.getSourceMirror());
+    depAwareness.detectDependencies(spec);
+
+    List<TargetKey> buildOrder = new BuildTopoSort(parser.isDebug(), parser.isVerbose()).topologicalSort(spec);
+
+    /* Nothing is built here, the graph carries the build times of the last diff build */
+    if (parser.getGraphFile() != null) {
+      spec.reorderTargets(buildOrder);
+      BuildState state = null;
+      File stateFile = BuildState.stateFileOf(spec);
+      if (stateFile != null) {
+        state = new BuildState(null, stateFile, parser.isDebug(), parser.isVerbose());
+        state.load();
+        state.prepare(spec);
+      }
+      writeGraph(spec, state, Collections.emptyMap(), parser.getGraphFile());
+    }
+
+    System.out.println(new ImpactAnalysis(buildOrder).setIncludes(depAwareness.getIncludeHashes()).report(parser.getImpact(), spec.getBaseDirectory(), parser.isJson()));
+  }
+
+  /* Build times of this run, the last known ones from the build state otherwise */
+  private static void writeGraph(BuildSpec spec, BuildState state, Map<TargetKey, Long> measured, File file) {
+    Map<TargetKey, Long> known = new IdentityHashMap<>();
+    for (TargetKey key : spec.targets.keySet()) {
+      Long duration = measured.get(key);
+      if (duration == null && state != null) duration = state.getDuration(key);
+      if (duration != null) known.put(key, duration);
+    }
+
+    try {
+      GraphExport graph = new GraphExport(new ArrayList<>(spec.targets.keySet()), known);
+      graph.write(file);
+      logger.info("Dependency graph written to " + file + ", critical path " + graph.getCriticalMillis() +
+          " ms of " + graph.getSerialMillis() + " ms serial");
+    } catch (Exception e) {
+      logger.warn("Could not write dependency graph " + file, e);
+    }
+  }
+
   public static void main(String... args ){
     AS400 system = null;
     MasterCompiler compiler = null;
@@ -353,9 +693,15 @@ public class MasterCompiler{
       ArgParser parser = new ArgParser(args);
       //TODO: This should be able to run locally in debug mode.
       if (args.length == 0) throw new IllegalArgumentException("Params are required");
+
+      /* Query mode, runs on the local sources without a server */
+      if (parser.getImpact() != null) {
+        printImpact(parser);
+        return;
+      }
         
       system = IBMiDotEnv.getNewSystemConnection(true); // Get system
-      connection = new AS400JDBCDataSource(system).getConnection();
+      connection = Utilities.newDataSource(system, parser.getSqlPackage()).getConnection();
 
       compiler = new MasterCompiler(
             system,
@@ -367,7 +713,15 @@ public class MasterCompiler{
             parser.Clean(),
             parser.isDiff(),
             parser.noMigrate()
-        );
+        ).setJobs(parser.getJobs())
+         .setLocalClock(parser.isLocalClock())
+         .setMigrateAhead(parser.getMigrateAhead())
+         .setScanThreads(parser.getScanThreads())
+         .setSourceMirror(parser.getSourceMirror())
+         .setLocalSources(!parser.noLocalSources())
+         .setGraphFile(parser.getGraphFile())
+         .setSqlPackage(parser.getSqlPackage())
+         .setExecBackend(parser.getExecBackend());
       compiler.build();
 
     } catch (IllegalArgumentException e) {
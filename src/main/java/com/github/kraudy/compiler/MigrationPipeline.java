@@ -0,0 +1,129 @@
+package com.github.kraudy.compiler;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Prepares the sources of the next targets while the current one compiles.
+ * Preparation (object info, params and source migration) runs on its own job, at most K targets
+ * ahead of the build. Targets marked as inline (per target before hooks) are left to the build and
+ * act as a barrier: nothing after them is prepared until they have been built, since their hooks
+ * may change what later targets see.
+ */
+public class MigrationPipeline implements AutoCloseable {
+  private static final Logger logger = LoggerFactory.getLogger(MigrationPipeline.class);
+
+  /* Work done ahead for one target */
+  public interface Stage {
+    void prepare(TargetKey key, BuildJob job) throws Exception;
+  }
+
+  private final BuildJob job;
+  private final List<TargetKey> targets;
+  private final Map<TargetKey, Integer> index = new IdentityHashMap<>();
+  private final Predicate<TargetKey> inline;
+  private final int ahead;
+  private final Stage stage;
+  private final boolean debug;
+  private final boolean verbose;
+
+  private final ExecutorService executor;
+  private final Map<TargetKey, Future<?>> scheduled = new IdentityHashMap<>(); // At most 'ahead' entries
+  private int next = 0;  // Next target to schedule
+
+  public MigrationPipeline(BuildJob job, List<TargetKey> targets, Predicate<TargetKey> inline, int ahead, Stage stage,
+        boolean debug, boolean verbose) {
+    if (ahead < 1) throw new IllegalArgumentException("Migration pipeline needs at least 1 target ahead: " + ahead);
+    this.job = job;
+    this.targets = targets;
+    this.inline = inline;
+    this.ahead = ahead;
+    this.stage = stage;
+    this.debug = debug;
+    this.verbose = verbose;
+
+    for (TargetKey target : targets) index.put(target, index.size());
+
+    this.executor = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "mc-migrate");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /*
+   * Called when a target starts building, in build order. Schedules the following targets and waits
+   * for this one. Returns false if the target was not prepared ahead and must be prepared inline.
+   */
+  public boolean await(TargetKey key) throws CompilerException {
+    Integer position = index.get(key);
+    if (position == null) return false;
+
+    fill(position);
+
+    Future<?> future = scheduled.remove(key);
+    if (future == null) return false;
+
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompilerException("Interrupted waiting for source migration", e, key);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CompilerException) throw (CompilerException) cause;
+      throw new CompilerException("Source migration failed", cause, key);
+    }
+
+    /* Keep the window full while this target compiles */
+    fill(position + 1);
+
+    return true;
+  }
+
+  private void fill(int current) {
+    while (next < targets.size() && next < current + ahead && scheduled.size() < ahead) {
+      TargetKey target = targets.get(next);
+      if (inline.test(target)) {
+        if (next >= current) return; // Barrier, wait until it is built
+        next++;
+        continue;
+      }
+      if (next < current) {
+        next++;  // Already started without the pipeline
+        continue;
+      }
+      if (verbose) logger.info("Preparing ahead on " + job.getName() + ": " + target.asString());
+      scheduled.put(target, executor.submit(() -> {
+        stage.prepare(target, job);
+        return null;
+      }));
+      next++;
+    }
+  }
+
+  /* Stops preparing. Work already running is allowed to finish so the job connection can be closed */
+  @Override
+  public void close() {
+    for (Future<?> future : scheduled.values()) future.cancel(false);
+    scheduled.clear();
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
+        logger.warn("Source migration still running on " + job.getName());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.github.kraudy.compiler;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.kraudy.compiler.CompilationPattern.CompCmd;
+
+/*
+ * Source files and members needed to migrate stream files to members.
+ * The source PFs and members of all the spec targets are queried once before the build, and
+ * every creation done in the run is recorded, so each missing source PF is created only once.
+ * A library/file pair not in the plan (e.g. a target library only known after its hooks run) is
+ * unknown and left to the live lookup of the Migrator, which then records it here.
+ * Shared by all build jobs.
+ */
+public class MigrationPlan {
+  private static final Logger logger = LoggerFactory.getLogger(MigrationPlan.class);
+
+  /* Commands whose stream file is migrated to a source member */
+  public static final Set<CompCmd> memberSourceCommands = EnumSet.of(
+    CompCmd.CRTCLPGM, CompCmd.CRTRPGPGM, CompCmd.CRTDSPF, CompCmd.CRTPF, CompCmd.CRTLF,
+    CompCmd.CRTPRTF, CompCmd.CRTMNU, CompCmd.CRTQMQRY
+  );
+
+  private static final int BATCH_SIZE = 200;
+
+  /* LIB/FILE -> members known to exist. A file present here exists as a source PF */
+  private final Map<String, Set<String>> sourcePfs = new ConcurrentHashMap<>();
+  /* LIB/FILE pairs whose existence is known, present or not */
+  private final Set<String> resolved = ConcurrentHashMap.newKeySet();
+  /* Serializes creation of the same source PF across jobs */
+  private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+  /*
+   * Queries the source PFs and members of every spec target that migrates a stream file to a member.
+   * Targets on *CURLIB are planned on the given current library.
+   */
+  public void prefetch(Connection connection, BuildSpec spec, String curLib, boolean verbose) throws SQLException {
+    Map<String, List<String>> filesByLib = new LinkedHashMap<>();
+
+    for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : spec.targets.entrySet()) {
+      TargetKey key = entry.getKey();
+      if (!memberSourceCommands.contains(key.getCompilationCommand())) continue;
+
+      /* Spec view of the target, the build key is not resolved yet */
+      TargetKey specKey = new TargetKey(key.asString());
+      specKey.putAll(spec.defaults);
+      specKey.putAll(entry.getValue().params);
+      if (!specKey.containsStreamFile()) continue;
+
+      String library = specKey.isCurLib() ? curLib : specKey.getLibrary();
+      if (library == null || library.isEmpty()) continue;
+      String file = specKey.getSourceFile();
+
+      if (resolved.contains(id(library, file))) continue;
+      List<String> files = filesByLib.computeIfAbsent(library, k -> new ArrayList<>());
+      if (!files.contains(file)) files.add(file);
+    }
+
+    int pairs = 0;
+    for (Map.Entry<String, List<String>> entry : filesByLib.entrySet()) {
+      String library = entry.getKey();
+      for (List<String> files : Utilities.batches(entry.getValue(), BATCH_SIZE)) {
+        querySourcePfs(connection, library, files);
+        queryMembers(connection, library, files);
+        for (String file : files) resolved.add(id(library, file));
+        pairs += files.size();
+      }
+    }
+
+    if (verbose && pairs > 0) logger.info("Migration plan: " + pairs + " source files checked, " +
+        sourcePfs.size() + " found");
+  }
+
+  /* SYSTABLES also lists empty source PFs, which SYSPARTITIONSTAT does not */
+  private void querySourcePfs(Connection connection, String library, List<String> files) throws SQLException {
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(
+          "SELECT SYSTEM_TABLE_NAME " +
+          "FROM QSYS2.SYSTABLES " +
+          "WHERE SYSTEM_TABLE_SCHEMA = '" + library + "' " +
+          "AND SYSTEM_TABLE_NAME IN (" + Utilities.sqlInList(files) + ") " +
+          "AND FILE_TYPE = 'S'")) {
+      while (rs.next()) {
+        sourcePfs.computeIfAbsent(id(library, rs.getString("SYSTEM_TABLE_NAME").trim()), k -> ConcurrentHashMap.newKeySet());
+      }
+    }
+  }
+
+  private void queryMembers(Connection connection, String library, List<String> files) throws SQLException {
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(
+          "SELECT SYSTEM_TABLE_NAME, " +
+            "CAST(SYSTEM_TABLE_MEMBER AS VARCHAR(10) CCSID " + MasterCompiler.INVARIANT_CCSID + ") AS Member " +
+          "FROM QSYS2.SYSPARTITIONSTAT " +
+          "WHERE SYSTEM_TABLE_SCHEMA = '" + library + "' " +
+          "AND SYSTEM_TABLE_NAME IN (" + Utilities.sqlInList(files) + ") " +
+          "AND TRIM(SOURCE_TYPE) <> ''")) {
+      while (rs.next()) {
+        sourcePfs.computeIfAbsent(id(library, rs.getString("SYSTEM_TABLE_NAME").trim()), k -> ConcurrentHashMap.newKeySet())
+          .add(rs.getString("Member").trim());
+      }
+    }
+  }
+
+  /* Null if the pair is not in the plan */
+  public Boolean sourcePfExists(String library, String file) {
+    String id = id(library, file);
+    if (sourcePfs.containsKey(id)) return true;
+    return resolved.contains(id) ? false : null;
+  }
+
+  /* Null if the pair is not in the plan */
+  public Boolean memberExists(String library, String file, String member) {
+    String id = id(library, file);
+    Set<String> members = sourcePfs.get(id);
+    if (members != null && members.contains(member)) return true;
+    return resolved.contains(id) ? false : null;
+  }
+
+  public void setSourcePfExists(String library, String file, boolean exists) {
+    String id = id(library, file);
+    if (exists) sourcePfs.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet());
+    resolved.add(id);
+  }
+
+  /* A member is only known once its source PF is */
+  public void setMemberExists(String library, String file, String member) {
+    sourcePfs.computeIfAbsent(id(library, file), k -> ConcurrentHashMap.newKeySet()).add(member);
+  }
+
+  /* Lock held while checking and creating the source PF and member */
+  public Object lockOf(String library, String file) {
+    return locks.computeIfAbsent(id(library, file), k -> new Object());
+  }
+
+  private static String id(String library, String file) {
+    return library + "/" + file;
+  }
+}
@@ -4,7 +4,6 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.ResultSet;
-import java.sql.Statement;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,13 +23,22 @@ public class Migrator {
   private final boolean verbose;
   private final User currentUser;
   private CommandExecutor commandExec;
+  private final MigrationPlan plan; // Source PFs and members known for the run. Null for live lookups only
+  private final CatalogStatements statements;
 
   public Migrator(Connection connection, boolean debug, boolean verbose, User currentUser, CommandExecutor commandExec) {
+    this(connection, debug, verbose, currentUser, commandExec, null);
+  }
+
+  public Migrator(Connection connection, boolean debug, boolean verbose, User currentUser, CommandExecutor commandExec,
+        MigrationPlan plan) {
     this.connection = connection;
     this.debug = debug;
     this.verbose = verbose;
     this.currentUser = currentUser;
     this.commandExec = commandExec;
+    this.plan = plan;
+    this.statements = new CatalogStatements(connection);
   }
 
   public void migrateSource(TargetKey key) throws Exception, SQLException{
@@ -73,8 +81,7 @@ public class Migrator {
         if (key.containsStreamFile()) {
           //TODO: Should this be migrated to QTEMP?
           if(verbose) logger.info("Migrating stream file to source member");
-          if (!sourcePfExists(key)) createSourcePf(key);
-          if (!sourceMemberExists(key)) createSourceMember(key);
+          prepareSourceMember(key);
           migrateStreamFileToMember(key);
           key.put(ParamCmd.SRCFILE, key.getQualifiedSourceFile())
             .put(ParamCmd.SRCMBR, key.getObjectName())
@@ -84,6 +91,34 @@ public class Migrator {
     }
   }
 
+  /* 
+   * Source PF and member to receive the stream file. With a plan, each pair is looked up at most
+   * once and each missing source PF is created once per run, even across jobs.
+   */
+  private void prepareSourceMember(TargetKey key) throws Exception {
+    if (plan == null) {
+      if (!sourcePfExists(key)) createSourcePf(key);
+      if (!sourceMemberExists(key)) createSourceMember(key);
+      return;
+    }
+
+    String library = key.getLibrary();
+    String file = key.getSourceFile();
+    String member = key.getSourceName();
+
+    synchronized (plan.lockOf(library, file)) {
+      Boolean pfExists = plan.sourcePfExists(library, file);
+      if (pfExists == null) pfExists = sourcePfExists(key);
+      if (!pfExists) createSourcePf(key);
+      plan.setSourcePfExists(library, file, true);
+
+      Boolean memberExists = plan.memberExists(library, file, member);
+      if (memberExists == null) memberExists = sourceMemberExists(key);
+      if (!memberExists) createSourceMember(key);
+      plan.setMemberExists(library, file, member);
+    }
+  }
+
   public void createSourcePf(TargetKey key) throws Exception {
     /* 
      * If this creation returns an error because the source pf already exits
@@ -143,16 +178,16 @@ public class Migrator {
 
   /* Validate if Source PF exists */
   public boolean sourcePfExists(TargetKey key) throws SQLException{
-    try (Statement validateStmt = connection.createStatement();
-        ResultSet validateRs = validateStmt.executeQuery(
+    try (ResultSet validateRs = statements.query(
             "With " +
             Utilities.CteLibraryList +
             "SELECT 1 AS Exist " +
             "FROM QSYS2. SYSPARTITIONSTAT " +
             "INNER JOIN Libs " +
             "ON (SYSTEM_TABLE_SCHEMA = Libs.Libraries) " +
-                "WHERE SYSTEM_TABLE_NAME = '" + key.getSourceFile() + "' " +
-                "AND TRIM(SOURCE_TYPE) <> '' LIMIT 1")) {
+                "WHERE SYSTEM_TABLE_NAME = ? " +
+                "AND TRIM(SOURCE_TYPE) <> '' LIMIT 1",
+            key.getSourceFile())) {
       if (validateRs.next()) {
         if (verbose) logger.info("Source PF " + key.getSourceFile() + " already exist in library " + key.getLibrary());
         return true;
@@ -164,17 +199,17 @@ public class Migrator {
 
   /* Validate if Source Member exists */
   public boolean sourceMemberExists(TargetKey key) throws SQLException {
-    try (Statement stmt = connection.createStatement();
-         ResultSet rs = stmt.executeQuery(
+    try (ResultSet rs = statements.query(
             "With " +
             Utilities.CteLibraryList +
             "SELECT CAST(SYSTEM_TABLE_MEMBER AS VARCHAR(10) CCSID " + MasterCompiler.INVARIANT_CCSID + ") AS Member " +
             "FROM QSYS2.SYSPARTITIONSTAT " +
             "INNER JOIN Libs " +
             "ON (SYSTEM_TABLE_SCHEMA = Libs.Libraries) " +
-            "WHERE SYSTEM_TABLE_NAME = '" + key.getSourceFile() + "' " +
-            "AND SYSTEM_TABLE_MEMBER = '" + key.getSourceName() + "' " +
-            "AND TRIM(SOURCE_TYPE) <> '' ")) { 
+            "WHERE SYSTEM_TABLE_NAME = ? " +
+            "AND SYSTEM_TABLE_MEMBER = ? " +
+            "AND TRIM(SOURCE_TYPE) <> '' ",
+            key.getSourceFile(), key.getSourceName())) {
       if (rs.next()) {
         if (verbose) logger.info("Member " + key.getSourceName() + " already exist in library " + key.getLibrary());
         return true;
@@ -183,4 +218,8 @@ public class Migrator {
     }
   }
 
+  /* Frees the prepared lookups, the connection stays open */
+  public void close() {
+    statements.close();
+  }
 }
@@ -4,6 +4,14 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,14 +24,116 @@ import com.github.kraudy.compiler.CompilationPattern.ValCmd;
 public class ObjectDescriptor {
   private static final Logger logger = LoggerFactory.getLogger(ObjectDescriptor.class);
 
+  private static final int BATCH_SIZE = 200; // Names per prefetch statement
+
+  /* PROGRAM_INFO columns used for *PGM and *SRVPGM compilation params */
+  private static final String ProgramInfoColumns = 
+    "PROGRAM_LIBRARY, " + // programLibrary
+    "PROGRAM_NAME, " + // programName
+    "COALESCE(PROGRAM_TYPE,'') As PROGRAM_TYPE, " +  // [ILE, OPM] 
+    "OBJECT_TYPE, " +   // typeOfProgram
+    "COALESCE(TEXT_DESCRIPTION, '') As TEXT, " + // textDescription
+    "PROGRAM_OWNER, " + // owner
+    "PROGRAM_ATTRIBUTE, " + // attribute
+    "USER_PROFILE As USRPRF, " +
+    "USE_ADOPTED_AUTHORITY, " +
+    "RELEASE_CREATED_ON, " +
+    "COALESCE(TARGET_RELEASE, '') As TGTRLS, " +
+    "COALESCE(ALLOW_RTVCLSRC, '') As ALWRTVSRC, " + // allowRTVCLSRC
+    "CONVERSION_REQUIRED, " +
+    "CONVERSION_DETAIL, " +
+    //-- These seem to be for ILE objects
+    "COALESCE(ACTIVATION_GROUP, '') AS ACTGRP, " + // activationGroupAttribute
+    "SHARED_ACTIVATION_GROUP, " +
+    "ALLOW_UPDATE, " +
+    "ALLOW_BOUND_SRVPGM_LIBRARY_UPDATE, " +
+    "ALL_CREATION_DATA, " +
+    "COALESCE(PROFILING_DATA, '') As PRFDTA, " +
+    "COALESCE(STORAGE_MODEL , '') As STGMDL, " +
+    "ARGUMENT_OPTIMIZATION, " +
+    "NUMBER_OF_UNRESOLVED_REFERENCES, " +
+    // Module related data
+    "COPYRIGHTS, " +
+    "COPYRIGHT_STRINGS, " +
+    // Source file related data
+    "(TRIM(SOURCE_FILE_LIBRARY) || '/' || TRIM(SOURCE_FILE)) As SRCFILE, " +
+    "SOURCE_FILE_MEMBER As SRCMBR, " +
+    "COALESCE((TRIM(SQL_SORT_SEQUENCE_LIBRARY) || '/' || TRIM(SQL_SORT_SEQUENCE)), '') As SRTSEQ, " +
+    "COALESCE(LANGUAGE_ID, '') As LANGID, " +
+    "OBSERVABLE, " + // observable
+    "COALESCE(OPTIMIZATION, '') As OPTIMIZE, " +
+    "COALESCE(LOG_COMMANDS, '' ) As LOG, " +
+    "COALESCE(FIX_DECIMAL_DATA, '') As FIXNBR, " + // fixDecimalData
+    "TERASPACE_STORAGE_ENABLED_PROGRAM, " + // teraspaceEnabled
+    //-- Sql related info
+    "SQL_RELATIONAL_DATABASE, " +
+    "COALESCE(SQL_COMMITMENT_CONTROL, '') As COMMIT, " +
+    "COALESCE(SQL_NAMING, '') As NAMING, " +
+    "SQL_DATE_FORMAT As DATFMT, " +
+    "SQL_DATE_SEPARATOR As DATSEP, " +
+    "SQL_TIME_FORMAT As TIMFMT, " +
+    "SQL_TIME_SEPARATOR As TIMSEP, " +
+    "SQL_DEFAULT_SCHEMA, " +
+    "SQL_PATH, " +
+    "SQL_DYNAMIC_USER_PROFILE As DYNUSRPRF, " +
+    "SQL_ALLOW_COPY_DATA As ALWCPYDTA, " +
+    "SQL_CLOSE_SQL_CURSOR As CLOSQLCSR, " +
+    "SQL_DELAY_PREPARE As DLYPRP, " +
+    "SQL_ALLOW_BLOCK As ALWBLK "
+  ;
+
+  /* BOUND_MODULE_INFO columns used for *MODULE compilation params */
+  private static final String ModuleInfoColumns = 
+    "BOUND_MODULE, " +
+    "MODULE_ATTRIBUTE, " +
+    "MODULE_CREATE_TIMESTAMP, " +
+    "SOURCE_CHANGE_TIMESTAMP, " +
+    "MODULE_CCSID, " +
+    "COALESCE((TRIM(SQL_SORT_SEQUENCE_LIBRARY) || '/' || TRIM(SQL_SORT_SEQUENCE)), '') As SRTSEQ, " +
+    "LANGUAGE_ID As LANGID, " +
+    "DEBUG_DATA, " +
+    "COALESCE(OPTIMIZATION_LEVEL, '') As OPTIMIZE, " +
+    "MAX_OPTIMIZATION_LEVEL, " +
+    "OBJECT_CONTROL_LEVEL, " +
+    "RELEASE_CREATED_ON, " +
+    "TARGET_RELEASE AS TGTRLS, " +
+    "CREATION_DATA, " +
+    "TERASPACE_STORAGE_ENABLED, " +
+    "STORAGE_MODEL As STGMDL, " +
+    "NUMBER_PROCEDURES, " +
+    "PROFILING_DATA As PRFDTA, " +
+    "ALLOW_RTVCLSRC As ALWRTVSRC, " +
+    "USER_MODIFIED, " +
+    "COALESCE(LIC_OPTIONS, '') As LICOPT "
+  ;
+
+  /* COMMAND_INFO columns used for *CMD compilation params */
+  private static final String CommandInfoColumns = 
+    "COMMAND_NAME, " +
+    "(TRIM(COMMAND_LIBRARY) || '/' || TRIM(COMMAND_NAME)) As CMD, " +
+    "TEXT_DESCRIPTION As TEXT, " +
+    "(TRIM(COMMAND_PROCESSING_PROGRAM_LIBRARY) || '/' || TRIM(COMMAND_PROCESSING_PROGRAM)) As PGM, " +
+    "(TRIM(SOURCE_FILE_LIBRARY) || '/' || TRIM(SOURCE_FILE)) As SRCFILE, " +
+    "SOURCE_FILE_MEMBER As SRCMBR, " +
+    "THREADSAFE As THDSAFE "
+  ;
+
   private final Connection connection;
   private final boolean debug;
   private final boolean verbose;
+  private final CatalogIndex catalog;
+  private final CatalogStatements statements; // Live lookups, prepared once per run
 
   public ObjectDescriptor(Connection connection, boolean debug, boolean verbose) {
+    this(connection, debug, verbose, new CatalogIndex());
+  }
+
+  public ObjectDescriptor(Connection connection, boolean debug, boolean verbose, CatalogIndex catalog) {
     this.connection = connection;
     this.debug = debug;
     this.verbose = verbose;
+    this.catalog = catalog;
+    this.statements = new CatalogStatements(connection);
   }
 
   public void getObjectInfo(TargetKey key) throws SQLException {
@@ -84,18 +194,237 @@ public class ObjectDescriptor {
     return;
   }
 
+  /*
+   * Loads existence and compilation info of all spec targets with one query per object type,
+   * instead of one round trip per target during the build.
+   * Targets with their own before hooks are left out, those hooks may change the library list.
+   */
+  public void prefetch(BuildSpec spec) throws SQLException {
+    Map<String, List<TargetKey>> byType = new LinkedHashMap<>();
+
+    for (Map.Entry<TargetKey, BuildSpec.TargetSpec> entry : spec.targets.entrySet()) {
+      if (!entry.getValue().before.isEmpty()) continue;
+      TargetKey key = entry.getKey();
+
+      String type;
+      switch (key.getObjectTypeEnum()) {
+        case FUNCTION:
+        case INDEX:
+        case TRIGGER:
+          type = key.getObjectTypeEnum().name();
+          break;
+        default:
+          type = key.getObjectType();
+          break;
+      }
+      byType.computeIfAbsent(type, t -> new ArrayList<>()).add(key);
+    }
+
+    /* Existence */
+    for (Map.Entry<String, List<TargetKey>> entry : byType.entrySet()) {
+      for (List<TargetKey> batch : batches(entry.getValue())) {
+        prefetchExists(entry.getKey(), batch);
+      }
+    }
+
+    /* Compilation info of the existing objects */
+    List<TargetKey> programs = new ArrayList<>();
+    List<TargetKey> srvPgms = new ArrayList<>();
+    List<TargetKey> modules = new ArrayList<>();
+    List<TargetKey> commands = new ArrayList<>();
+
+    for (List<TargetKey> keys : byType.values()) {
+      for (TargetKey key : keys) {
+        if (!catalog.exists(key)) continue;
+        switch (key.getCompilationCommand()) {
+          case CRTBNDRPG:
+          case CRTBNDCL:
+          case CRTRPGPGM:
+          case CRTCLPGM:
+          case CRTSQLRPGI:
+            programs.add(key);
+            break;
+          case CRTSRVPGM:
+            srvPgms.add(key);
+            break;
+          case CRTRPGMOD:
+          case CRTCLMOD:
+            modules.add(key);
+            break;
+          case CRTCMD:
+            commands.add(key);
+            break;
+          default:
+            break;
+        }
+      }
+    }
+
+    for (List<TargetKey> batch : batches(programs)) prefetchProgramInfo(ObjectType.PGM, batch);
+    for (List<TargetKey> batch : batches(srvPgms)) prefetchProgramInfo(ObjectType.SRVPGM, batch);
+    for (List<TargetKey> batch : batches(modules)) prefetchModuleInfo(batch);
+    for (List<TargetKey> batch : batches(commands)) prefetchCmdInfo(batch);
+
+    if (verbose) logger.info("Prefetched catalog info of " + catalog.size() + " targets");
+  }
+
+  private void prefetchExists(String type, List<TargetKey> keys) throws SQLException {
+    String names = inList(keys);
+    String query;
+
+    switch (type) {
+      case "FUNCTION":
+        query = 
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT DISTINCT TRIM(SPECIFIC_NAME) As NAME " + 
+          "FROM QSYS2.SYSFUNCS " +
+          "INNER JOIN Libs " +
+          "ON (SPECIFIC_SCHEMA = Libs.Libraries) " +
+          "WHERE SPECIFIC_NAME IN (" + names + ")";
+        break;
+
+      case "INDEX":
+        query = 
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT DISTINCT TRIM(SYSTEM_INDEX_NAME) As NAME " +
+          "FROM QSYS2.SYSINDEXES " +
+          "INNER JOIN Libs " +
+          "ON (SYSTEM_INDEX_SCHEMA = Libs.Libraries) " +
+          "WHERE SYSTEM_INDEX_NAME IN (" + names + ")";
+        break;
+
+      case "TRIGGER":
+        query = 
+          "With " + 
+          Utilities.CteLibraryList +
+          "SELECT DISTINCT TRIM(TRIGGER_NAME) As NAME " +
+          "FROM QSYS2.SYSTRIGGERS " +
+          "INNER JOIN Libs " +
+          "ON (TRIGGER_SCHEMA = Libs.Libraries) " +
+          "WHERE TRIGGER_NAME IN (" + names + ")";
+        break;
+
+      default:
+        /* One OBJECT_STATISTICS call per name, all in the same statement. This also finds procedures which are of type PGM */
+        query = 
+          "SELECT DISTINCT T.NAME " +
+          "FROM (VALUES " + Utilities.sqlValuesList(objectNames(keys)) + ") As T (NAME), " +
+          "TABLE( " +
+            "QSYS2.OBJECT_STATISTICS( " +
+              "OBJECT_SCHEMA => '" + ValCmd.LIBL.toString() + "', " +
+              "OBJTYPELIST => '" + type + "', " +
+              "OBJECT_NAME => T.NAME " +
+            ") " +
+          ") As O";
+        break;
+    }
+
+    Set<String> found = new HashSet<>();
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(query)) {
+      while (rs.next()) {
+        found.add(rs.getString("NAME").trim());
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setExists(key, found.contains(key.getObjectName()));
+    }
+  }
+
+  private void prefetchProgramInfo(ObjectType type, List<TargetKey> keys) throws SQLException {
+    Map<String, Map<String, String>> rows = new HashMap<>();
+
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " + ProgramInfoColumns +
+            "FROM QSYS2.PROGRAM_INFO " +
+            "INNER JOIN Libs " +
+            "ON (PROGRAM_LIBRARY = Libs.Libraries) " +
+            "WHERE " + 
+                "PROGRAM_NAME IN (" + inList(keys) + ") " +
+                "AND OBJECT_TYPE = '" + type.toParam() + "' "
+          )) {
+      while (rs.next()) {
+        rows.putIfAbsent(rs.getString("PROGRAM_NAME").trim(), CatalogIndex.toRow(rs));
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setObjectInfo(key, rows.getOrDefault(key.getObjectName(), Collections.emptyMap()));
+    }
+  }
+
+  private void prefetchModuleInfo(List<TargetKey> keys) throws SQLException {
+    Map<String, Map<String, String>> rows = new HashMap<>();
+
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " + ModuleInfoColumns +
+          "FROM QSYS2.BOUND_MODULE_INFO " +
+          "INNER JOIN Libs " +
+            "ON (PROGRAM_LIBRARY = Libs.Libraries AND BOUND_MODULE_LIBRARY = Libs.Libraries) " +
+          "WHERE " +
+            "BOUND_MODULE IN (" + inList(keys) + ") "
+        )) {
+      while (rs.next()) {
+        rows.putIfAbsent(rs.getString("BOUND_MODULE").trim() + "." + rs.getString("MODULE_ATTRIBUTE").trim(), CatalogIndex.toRow(rs));
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setObjectInfo(key, rows.getOrDefault(key.getObjectName() + "." + key.getSourceType(), Collections.emptyMap()));
+    }
+  }
+
+  private void prefetchCmdInfo(List<TargetKey> keys) throws SQLException {
+    Map<String, Map<String, String>> rows = new HashMap<>();
+
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(
+          "With " + 
+          Utilities.CteLibraryList +
+          "SELECT " + CommandInfoColumns +
+            "FROM QSYS2.COMMAND_INFO " +
+            "INNER JOIN Libs " +
+            "ON (COMMAND_LIBRARY = Libs.Libraries) " +
+            "WHERE " + 
+                "COMMAND_NAME IN (" + inList(keys) + ") "
+          )) {
+      while (rs.next()) {
+        rows.putIfAbsent(rs.getString("COMMAND_NAME").trim(), CatalogIndex.toRow(rs));
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setObjectInfo(key, rows.getOrDefault(key.getObjectName(), Collections.emptyMap()));
+    }
+  }
+
   public void objectExists(TargetKey key) throws SQLException {
+    Boolean prefetched = catalog.exists(key);
+    if (prefetched != null) {
+      if (verbose) logger.info((prefetched ? "Found object: " : "Object not found: ") + key.asString());
+      if (prefetched) key.setObjectExists(true);
+      return;
+    }
+
     if (key.getObjectTypeEnum() == ObjectType.FUNCTION) {
-      try (Statement stmt = connection.createStatement();
-          ResultSet rs = stmt.executeQuery(
+      try (ResultSet rs = statements.query(
             "With " +
             Utilities.CteLibraryList +
             "SELECT 1 " + 
             "FROM QSYS2.SYSFUNCS " +
             "INNER JOIN Libs " +
             "ON (SPECIFIC_SCHEMA = Libs.Libraries) " +
-            "WHERE SPECIFIC_NAME = '" + key.getObjectName() + "' " +
-            "LIMIT 1")) {
+            "WHERE SPECIFIC_NAME = ? " +
+            "LIMIT 1", key.getObjectName())) {
         if (!rs.next()) {
           if (verbose) logger.info("Function object not found: " + key.asString());
           return;  
@@ -108,16 +437,15 @@ public class ObjectDescriptor {
     }
 
     if (key.getObjectTypeEnum() == ObjectType.INDEX) {
-      try (Statement stmt = connection.createStatement();
-          ResultSet rs = stmt.executeQuery(
+      try (ResultSet rs = statements.query(
             "With " +
             Utilities.CteLibraryList +
             "SELECT 1 " +
             "FROM QSYS2.SYSINDEXES " +
             "INNER JOIN Libs " +
             "ON (SYSTEM_INDEX_SCHEMA = Libs.Libraries) " +
-            "WHERE SYSTEM_INDEX_NAME = '" + key.getObjectName() + "' " +
-            "LIMIT 1")) {
+            "WHERE SYSTEM_INDEX_NAME = ? " +
+            "LIMIT 1", key.getObjectName())) {
         if (!rs.next()) {
           if (verbose) logger.info("Function object not found: " + key.asString());
           return;  
@@ -130,16 +458,15 @@ public class ObjectDescriptor {
     }
 
     if (key.getObjectTypeEnum() == ObjectType.TRIGGER) {
-      try (Statement stmt = connection.createStatement();
-          ResultSet rs = stmt.executeQuery(
+      try (ResultSet rs = statements.query(
             "WITH " + 
             Utilities.CteLibraryList +
             " SELECT 1 " +
             " FROM QSYS2.SYSTRIGGERS " +
             " INNER JOIN Libs " +
             "   ON TRIGGER_SCHEMA = Libs.Libraries " +
-            " WHERE TRIGGER_NAME = '" + key.getObjectName() + "' " +
-            " LIMIT 1")) {
+            " WHERE TRIGGER_NAME = ? " +
+            " LIMIT 1", key.getObjectName())) {
         if (!rs.next()) {
           if (verbose) logger.info("Trigger object not found: " + key.asString());
           return;  
@@ -152,17 +479,16 @@ public class ObjectDescriptor {
     }
 
     /* This also finds procedures which are of type PGM */
-    try (Statement stmt = connection.createStatement();
-        ResultSet rs = stmt.executeQuery(
+    try (ResultSet rs = statements.query(
           "Select 1  " +
           "From TABLE( " +
             "QSYS2.OBJECT_STATISTICS( " +
               "OBJECT_SCHEMA => '" + ValCmd.LIBL.toString() + "', " +
-              "OBJTYPELIST => '" + key.getObjectType() + "', " +
-              "OBJECT_NAME => '" + key.getObjectName() + "' " +
+              "OBJTYPELIST => ?, " +
+              "OBJECT_NAME => ? " +
             ") " +
           ") " + 
-          "LIMIT 1")) {
+          "LIMIT 1", key.getObjectType(), key.getObjectName())) {
       if (!rs.next()) {
         if (verbose) logger.info("Object not found: " + key.asString());
         return;  
@@ -176,116 +502,69 @@ public class ObjectDescriptor {
 
   /* *PGM */
   private void getPgmInfo(TargetKey key) throws SQLException {
-    
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsObj = stmt.executeQuery(
-          "With " +
-          Utilities.CteLibraryList +
-          "SELECT PROGRAM_LIBRARY, " + // programLibrary
-              "PROGRAM_NAME, " + // programName
-              "COALESCE(PROGRAM_TYPE,'') As PROGRAM_TYPE, " +  // [ILE, OPM] 
-              "OBJECT_TYPE, " +   // typeOfProgram
-              "COALESCE(TEXT_DESCRIPTION, '') As TEXT, " + // textDescription
-              "PROGRAM_OWNER, " + // owner
-              "PROGRAM_ATTRIBUTE, " + // attribute
-              "USER_PROFILE As USRPRF, " +
-              "USE_ADOPTED_AUTHORITY, " +
-              "RELEASE_CREATED_ON, " +
-              "COALESCE(TARGET_RELEASE, '') As TGTRLS, " +
-              "COALESCE(ALLOW_RTVCLSRC, '') As ALWRTVSRC, " + // allowRTVCLSRC
-              "CONVERSION_REQUIRED, " +
-              "CONVERSION_DETAIL, " +
-              //-- These seem to be for ILE objects
-              "COALESCE(ACTIVATION_GROUP, '') AS ACTGRP, " + // activationGroupAttribute
-              "SHARED_ACTIVATION_GROUP, " +
-              "ALLOW_UPDATE, " +
-              "ALLOW_BOUND_SRVPGM_LIBRARY_UPDATE, " +
-              "ALL_CREATION_DATA, " +
-              "COALESCE(PROFILING_DATA, '') As PRFDTA, " +
-              "COALESCE(STORAGE_MODEL , '') As STGMDL, " +
-              "ARGUMENT_OPTIMIZATION, " +
-              "NUMBER_OF_UNRESOLVED_REFERENCES, " +
-              // Source file related data
-              "(TRIM(SOURCE_FILE_LIBRARY) || '/' || TRIM(SOURCE_FILE)) As SRCFILE, " +
-              "SOURCE_FILE_MEMBER As SRCMBR, " +
-              "COALESCE((TRIM(SQL_SORT_SEQUENCE_LIBRARY) || '/' || TRIM(SQL_SORT_SEQUENCE)), '') As SRTSEQ, " +
-              "COALESCE(LANGUAGE_ID, '') As LANGID, " +
-              "OBSERVABLE, " + // observable
-              "COALESCE(OPTIMIZATION, '') As OPTIMIZE, " +
-              "COALESCE(LOG_COMMANDS, '' ) As LOG, " +
-              "COALESCE(FIX_DECIMAL_DATA, '') As FIXNBR, " + // fixDecimalData
-              "TERASPACE_STORAGE_ENABLED_PROGRAM " + // teraspaceEnabled
-            "FROM QSYS2.PROGRAM_INFO " +
-            "INNER JOIN Libs " +
-            "ON (PROGRAM_LIBRARY = Libs.Libraries) " +
-            "WHERE " + 
-                "PROGRAM_NAME = '" + key.getObjectName() + "' " +
-                "AND OBJECT_TYPE = '" + key.getObjectType() + "' "
-          )) {
-      if (!rsObj.next()) {
-        if(verbose) logger.info(("Could not retrieve pgm object compilation info " + key.asString() ));
-        return;
-      }
-
-      if (verbose) logger.info("Found pgm object compilation info '" + key.asString());
-
-      switch (key.getCompilationCommand()) {
-        case CRTBNDRPG:
-          String fixNbr = rsObj.getString("FIXNBR").trim();
-          if (!fixNbr.isEmpty()){
-            key.put(ParamCmd.FIXNBR, fixNbr.equals("1") ? ValCmd.YES : ValCmd.NO);
-          }
-
-          String prfDta = rsObj.getString("PRFDTA").trim();
-          if (!prfDta.isEmpty()) key.put(ParamCmd.PRFDTA, prfDta);
+    Map<String, String> row = programInfo(key);
+    if (row.isEmpty()) {
+      if(verbose) logger.info(("Could not retrieve pgm object compilation info " + key.asString() ));
+      return;
+    }
 
-        case CRTBNDCL:
-          String actgrp = rsObj.getString("ACTGRP").trim();
-          if (!actgrp.isEmpty()) key.put(ParamCmd.ACTGRP, actgrp);
-          if ("QILE".equals(actgrp)) key.put(ParamCmd.DFTACTGRP, ValCmd.NO);
+    if (verbose) logger.info("Found pgm object compilation info '" + key.asString());
 
-          String stgMdl = rsObj.getString("STGMDL").trim();
-          if (!stgMdl.isEmpty()) key.put(ParamCmd.STGMDL, stgMdl);
+    switch (key.getCompilationCommand()) {
+      case CRTBNDRPG:
+        String fixNbr = col(row, "FIXNBR");
+        if (!fixNbr.isEmpty()){
+          key.put(ParamCmd.FIXNBR, fixNbr.equals("1") ? ValCmd.YES : ValCmd.NO);
+        }
 
-          String optimize = rsObj.getString("OPTIMIZE").trim();
-          if (!optimize.isEmpty())  {
-            try {
-              key.put(ParamCmd.OPTIMIZE, optimize);
-            } catch (Exception ignore) {}
-          }
+        String prfDta = col(row, "PRFDTA");
+        if (!prfDta.isEmpty()) key.put(ParamCmd.PRFDTA, prfDta);
 
-        case CRTRPGPGM:
-        case CRTCLPGM:
-          String tgtRls = rsObj.getString("TGTRLS").trim();
-          key.put(ParamCmd.TGTRLS, ValCmd.CURRENT);
-          if (!tgtRls.isEmpty()) key.put(ParamCmd.TGTRLS, tgtRls);
+      case CRTBNDCL:
+        String actgrp = col(row, "ACTGRP");
+        if (!actgrp.isEmpty()) key.put(ParamCmd.ACTGRP, actgrp);
+        if ("QILE".equals(actgrp)) key.put(ParamCmd.DFTACTGRP, ValCmd.NO);
+
+        String stgMdl = col(row, "STGMDL");
+        if (!stgMdl.isEmpty()) key.put(ParamCmd.STGMDL, stgMdl);
+
+        String optimize = col(row, "OPTIMIZE");
+        if (!optimize.isEmpty())  {
+          try {
+            key.put(ParamCmd.OPTIMIZE, optimize);
+          } catch (Exception ignore) {}
+        }
 
-          String text = rsObj.getString("TEXT").trim();
-          if (!text.isEmpty()) key.put(ParamCmd.TEXT, text);
+      case CRTRPGPGM:
+      case CRTCLPGM:
+        String tgtRls = col(row, "TGTRLS");
+        key.put(ParamCmd.TGTRLS, ValCmd.CURRENT);
+        if (!tgtRls.isEmpty()) key.put(ParamCmd.TGTRLS, tgtRls);
 
-          String usrPrf = rsObj.getString("USRPRF").trim();
-          if (!usrPrf.isEmpty()) key.put(ParamCmd.USRPRF, usrPrf);
+        String text = col(row, "TEXT");
+        if (!text.isEmpty()) key.put(ParamCmd.TEXT, text);
 
-          String srtSeq = rsObj.getString("SRTSEQ").trim();
-          if (!srtSeq.isEmpty()) key.put(ParamCmd.SRTSEQ, srtSeq);          
+        String usrPrf = col(row, "USRPRF");
+        if (!usrPrf.isEmpty()) key.put(ParamCmd.USRPRF, usrPrf);
 
-          String langId = rsObj.getString("LANGID").trim();
-          if (!langId.isEmpty()) key.put(ParamCmd.LANGID, langId);
+        String srtSeq = col(row, "SRTSEQ");
+        if (!srtSeq.isEmpty()) key.put(ParamCmd.SRTSEQ, srtSeq);          
 
-          break;
-      }
+        String langId = col(row, "LANGID");
+        if (!langId.isEmpty()) key.put(ParamCmd.LANGID, langId);
 
-      switch (key.getCompilationCommand()) {
-        case CRTBNDCL:
-        case CRTCLPGM:
-          String logCmds = rsObj.getString("LOG").trim();
-          if (!logCmds.isEmpty()) key.put(ParamCmd.LOG, logCmds.equals("1") ? ValCmd.YES : ValCmd.NO);
+        break;
+    }
 
-          String alwRtvSrc = rsObj.getString("ALWRTVSRC").trim();
-          if (!alwRtvSrc.isEmpty()) key.put(ParamCmd.ALWRTVSRC, alwRtvSrc.equals("1") ? ValCmd.YES : ValCmd.NO);
-          break;
-      }
+    switch (key.getCompilationCommand()) {
+      case CRTBNDCL:
+      case CRTCLPGM:
+        String logCmds = col(row, "LOG");
+        if (!logCmds.isEmpty()) key.put(ParamCmd.LOG, logCmds.equals("1") ? ValCmd.YES : ValCmd.NO);
 
+        String alwRtvSrc = col(row, "ALWRTVSRC");
+        if (!alwRtvSrc.isEmpty()) key.put(ParamCmd.ALWRTVSRC, alwRtvSrc.equals("1") ? ValCmd.YES : ValCmd.NO);
+        break;
     }
   }
 
@@ -295,268 +574,141 @@ public class ObjectDescriptor {
       if(verbose) logger.info("" + key.asString() + " Is not a module");
       return;
     }
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsMod = stmt.executeQuery(
-          "With " +
-          Utilities.CteLibraryList +
-          "SELECT " +
-                "MODULE_CREATE_TIMESTAMP, " +
-                "SOURCE_CHANGE_TIMESTAMP, " +
-                "MODULE_CCSID, " +
-                "COALESCE((TRIM(SQL_SORT_SEQUENCE_LIBRARY) || '/' || TRIM(SQL_SORT_SEQUENCE)), '') As SRTSEQ, " +
-                "LANGUAGE_ID As LANGID, " +
-                "DEBUG_DATA, " +
-                "COALESCE(OPTIMIZATION_LEVEL, '') As OPTIMIZE, " +
-                "MAX_OPTIMIZATION_LEVEL, " +
-                "OBJECT_CONTROL_LEVEL, " +
-                "RELEASE_CREATED_ON, " +
-                "TARGET_RELEASE AS TGTRLS, " +
-                "CREATION_DATA, " +
-                "TERASPACE_STORAGE_ENABLED, " +
-                "STORAGE_MODEL As STGMDL, " +
-                "NUMBER_PROCEDURES, " +
-                "PROFILING_DATA As PRFDTA, " +
-                "ALLOW_RTVCLSRC As ALWRTVSRC, " +
-                "USER_MODIFIED, " +
-                "COALESCE(LIC_OPTIONS, '') As LICOPT " +
-          /*  QSYS2.PROGRAM_INFO does not shows module objects */
-          "FROM QSYS2.BOUND_MODULE_INFO " +
-          "INNER JOIN Libs " +
-          /* Here we need to also use the PROGRAM_LIBRARY, otherwise, the query becomes slow */
-            "ON (PROGRAM_LIBRARY = Libs.Libraries AND BOUND_MODULE_LIBRARY = Libs.Libraries) " +
-          "WHERE " +
-            "BOUND_MODULE = '" + key.getObjectName() + "' " +
-            "AND MODULE_ATTRIBUTE = '" + key.getSourceType() + "' "
-        )) {
-      if (!rsMod.next()) {
-        if(verbose) logger.info("Could not retrieve module compilation info " + key.asString());
-        return;
-      }
 
-      if (verbose) logger.info("Found module compilation info " + key.asString());
+    Map<String, String> row = catalog.objectInfo(key);
+    if (row == null) row = fetchModuleInfo(key);
 
-      String modOptimize = rsMod.getString("OPTIMIZE").trim();
-      if (!modOptimize.isEmpty()) {
-        switch (modOptimize) {
-          case "10": key.put(ParamCmd.OPTIMIZE, ValCmd.NONE);   break;
-          case "20": key.put(ParamCmd.OPTIMIZE, ValCmd.BASIC);  break;
-          case "30": key.put(ParamCmd.OPTIMIZE, ValCmd.BASIC);  break;
-          case "40": key.put(ParamCmd.OPTIMIZE, ValCmd.FULL);   break;
-        }
+    if (row.isEmpty()) {
+      if(verbose) logger.info("Could not retrieve module compilation info " + key.asString());
+      return;
+    }
+
+    if (verbose) logger.info("Found module compilation info " + key.asString());
+
+    String modOptimize = col(row, "OPTIMIZE");
+    if (!modOptimize.isEmpty()) {
+      switch (modOptimize) {
+        case "10": key.put(ParamCmd.OPTIMIZE, ValCmd.NONE);   break;
+        case "20": key.put(ParamCmd.OPTIMIZE, ValCmd.BASIC);  break;
+        case "30": key.put(ParamCmd.OPTIMIZE, ValCmd.BASIC);  break;
+        case "40": key.put(ParamCmd.OPTIMIZE, ValCmd.FULL);   break;
       }
+    }
 
-      String srtSeq = rsMod.getString("SRTSEQ").trim();
-      if (!srtSeq.isEmpty()) key.put(ParamCmd.SRTSEQ, srtSeq); 
+    String srtSeq = col(row, "SRTSEQ");
+    if (!srtSeq.isEmpty()) key.put(ParamCmd.SRTSEQ, srtSeq); 
 
-      key.put(ParamCmd.LANGID, rsMod.getString("LANGID").trim()) 
-        .put(ParamCmd.TGTRLS, rsMod.getString("TGTRLS").trim()) 
-        .put(ParamCmd.STGMDL, rsMod.getString("STGMDL").trim()) 
-        .put(ParamCmd.PRFDTA, rsMod.getString("PRFDTA").trim()); 
+    String langId = col(row, "LANGID");
+    if (!langId.isEmpty()) key.put(ParamCmd.LANGID, langId);
 
-      switch (key.getCompilationCommand()) {
-        case CRTCLMOD:
-          key.put(ParamCmd.ALWRTVSRC, rsMod.getString("ALWRTVSRC").trim()); 
-          break;
-      }
+    String tgtRls = col(row, "TGTRLS");
+    if (!tgtRls.isEmpty()) key.put(ParamCmd.TGTRLS, tgtRls);
 
-      String licopt = rsMod.getString("LICOPT").trim();
-      if(!licopt.isEmpty()) key.put(ParamCmd.LICOPT, licopt); 
+    String stgMdl = col(row, "STGMDL");
+    if (!stgMdl.isEmpty()) key.put(ParamCmd.STGMDL, stgMdl);
+
+    String prfDta = col(row, "PRFDTA");
+    if (!prfDta.isEmpty()) key.put(ParamCmd.PRFDTA, prfDta);
+
+    switch (key.getCompilationCommand()) {
+      case CRTCLMOD:
+        String alwRtvSrc = col(row, "ALWRTVSRC");
+        if (!alwRtvSrc.isEmpty()) key.put(ParamCmd.ALWRTVSRC, alwRtvSrc); 
+        break;
     }
+
+    String licopt = col(row, "LICOPT");
+    if(!licopt.isEmpty()) key.put(ParamCmd.LICOPT, licopt); 
   }
 
   private void getCmdInfo(TargetKey key) throws SQLException {
-    
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsCmdInfo = stmt.executeQuery(
-          "With " + 
-          Utilities.CteLibraryList +
-          "SELECT " +
-            "(TRIM(COMMAND_LIBRARY) || '/' || TRIM(COMMAND_NAME)) As CMD, " +
-            "TEXT_DESCRIPTION As TEXT, " +
-            "(TRIM(COMMAND_PROCESSING_PROGRAM_LIBRARY) || '/' || TRIM(COMMAND_PROCESSING_PROGRAM)) As PGM, " +
-            "(TRIM(SOURCE_FILE_LIBRARY) || '/' || TRIM(SOURCE_FILE)) As SRCFILE, " +
-            "SOURCE_FILE_MEMBER As SRCMBR, " +
-            "THREADSAFE As THDSAFE " +
-            "FROM QSYS2.COMMAND_INFO " +
-            "INNER JOIN Libs " +
-            "ON (COMMAND_LIBRARY = Libs.Libraries) " +
-            "WHERE " + 
-                "COMMAND_NAME = '" + key.getObjectName() + "' "
-          )) {
-      if (!rsCmdInfo.next()) {
-        if(verbose) logger.info(("Could not retrieve command compilation info " + key.asString()));
-        return;
-      }
+    Map<String, String> row = catalog.objectInfo(key);
+    if (row == null) row = fetchCmdInfo(key);
 
-      if (verbose) logger.info("Found command compilation info" + key.asString());
-      
-      String cmd = rsCmdInfo.getString("CMD").trim();
-      if(!cmd.isEmpty()) key.put(ParamCmd.CMD, cmd); 
+    if (row.isEmpty()) {
+      if(verbose) logger.info(("Could not retrieve command compilation info " + key.asString()));
+      return;
+    }
 
-      String pgm = rsCmdInfo.getString("PGM").trim();
-      if(!pgm.isEmpty()) key.put(ParamCmd.PGM, pgm); 
+    if (verbose) logger.info("Found command compilation info" + key.asString());
+    
+    String cmd = col(row, "CMD");
+    if(!cmd.isEmpty()) key.put(ParamCmd.CMD, cmd); 
 
-      String srcfile = rsCmdInfo.getString("SRCFILE").trim();
-      if(!srcfile.isEmpty()) key.put(ParamCmd.SRCFILE, srcfile); 
+    String pgm = col(row, "PGM");
+    if(!pgm.isEmpty()) key.put(ParamCmd.PGM, pgm); 
 
-      String srcmbr = rsCmdInfo.getString("SRCMBR").trim();
-      if(!srcmbr.isEmpty()) key.put(ParamCmd.SRCMBR, srcmbr); 
+    String srcfile = col(row, "SRCFILE");
+    if(!srcfile.isEmpty()) key.put(ParamCmd.SRCFILE, srcfile); 
 
-      ValCmd threadsafe = ValCmd.fromString(rsCmdInfo.getString("THDSAFE").trim());
-      key.put(ParamCmd.THDSAFE, threadsafe); 
+    String srcmbr = col(row, "SRCMBR");
+    if(!srcmbr.isEmpty()) key.put(ParamCmd.SRCMBR, srcmbr); 
 
-      }
+    ValCmd threadsafe = ValCmd.fromString(col(row, "THDSAFE"));
+    key.put(ParamCmd.THDSAFE, threadsafe); 
   }
 
   private void getSqlRpgInfo(TargetKey key)throws SQLException{
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsSqlRpgInfo = stmt.executeQuery(
-          "With " +
-          Utilities.CteLibraryList +
-          "SELECT PROGRAM_LIBRARY, " + // programLibrary
-              "PROGRAM_NAME, " + // programName
-              "OBJECT_TYPE, " +   // typeOfProgram
-              "COALESCE(TEXT_DESCRIPTION, '') As TEXT, " + // textDescription
-              "PROGRAM_OWNER, " + // owner
-              "PROGRAM_ATTRIBUTE, " + // attribute
-              "USER_PROFILE As USRPRF, " +
-              "USE_ADOPTED_AUTHORITY, " +
-              "COALESCE(TARGET_RELEASE, '') As TGTRLS, " +
-              // Module related data
-              "COPYRIGHTS, " +
-              "COPYRIGHT_STRINGS, " +
-              // Source file related data
-              "(TRIM(SOURCE_FILE_LIBRARY) || '/' || TRIM(SOURCE_FILE)) As SRCFILE, " +
-              "SOURCE_FILE_MEMBER As SRCMBR, " +
-              //-- Sql related info
-              "SQL_RELATIONAL_DATABASE, " +
-              "COALESCE(SQL_COMMITMENT_CONTROL, '') As COMMIT, " +
-              "COALESCE(SQL_NAMING, '') As NAMING, " +
-              "SQL_DATE_FORMAT As DATFMT, " +
-              "SQL_DATE_SEPARATOR As DATSEP, " +
-              "SQL_TIME_FORMAT As TIMFMT, " +
-              "SQL_TIME_SEPARATOR As TIMSEP, " +
-              "(TRIM(SQL_SORT_SEQUENCE_LIBRARY) || '/' || TRIM(SQL_SORT_SEQUENCE)) As SRTSEQ, " +
-              "SQL_LANGUAGE_ID As LANGID, " +
-              "SQL_DEFAULT_SCHEMA, " +
-              "SQL_PATH, " +
-              "SQL_DYNAMIC_USER_PROFILE As DYNUSRPRF, " +
-              "SQL_ALLOW_COPY_DATA As ALWCPYDTA, " +
-              "SQL_CLOSE_SQL_CURSOR As CLOSQLCSR, " +
-              "SQL_DELAY_PREPARE As DLYPRP, " +
-              "SQL_ALLOW_BLOCK As ALWBLK " +
-            "FROM QSYS2.PROGRAM_INFO " +
-            "INNER JOIN Libs " +
-            "ON (PROGRAM_LIBRARY = Libs.Libraries) " +
-            "WHERE " + 
-                "PROGRAM_NAME = '" + key.getObjectName() + "' " +
-                "AND OBJECT_TYPE = '" + key.getObjectType() + "' "
-          )) {
-      if (!rsSqlRpgInfo.next()) {
-        if(verbose) logger.info(("Could not retrieve sql object compilation info " + key.asString() ));
-        return;
-      }
+    Map<String, String> row = programInfo(key);
+    if (row.isEmpty()) {
+      if(verbose) logger.info(("Could not retrieve sql object compilation info " + key.asString() ));
+      return;
+    }
 
-      if (verbose) logger.info("Found sql object compilation info " + key.asString());
+    if (verbose) logger.info("Found sql object compilation info " + key.asString());
 
-      key.put(ParamCmd.TEXT, rsSqlRpgInfo.getString("TEXT").trim())
-        .put(ParamCmd.USRPRF, rsSqlRpgInfo.getString("USRPRF").trim()); 
+    key.put(ParamCmd.TEXT, col(row, "TEXT"))
+      .put(ParamCmd.USRPRF, col(row, "USRPRF")); 
 
-      String tgtrls = rsSqlRpgInfo.getString("TGTRLS").trim();
-      if(!tgtrls.isEmpty()) key.put(ParamCmd.TGTRLS, tgtrls); 
+    String tgtrls = col(row, "TGTRLS");
+    if(!tgtrls.isEmpty()) key.put(ParamCmd.TGTRLS, tgtrls); 
 
-      //TODO: The service does not returns data for these filed.
+    //TODO: The service does not returns data for these filed.
 
-      //key.put(ParamCmd.COMMIT, ValCmd.fromString(rsSqlRpgInfo.getString("COMMIT"))); 
-      //key.put(ParamCmd.NAMING, ValCmd.fromString(rsSqlRpgInfo.getString("NAMING"))); 
+    //key.put(ParamCmd.COMMIT, ValCmd.fromString(col(row, "COMMIT"))); 
+    //key.put(ParamCmd.NAMING, ValCmd.fromString(col(row, "NAMING"))); 
 
-      //key.put(ParamCmd.DATFMT, ValCmd.fromString(rsSqlRpgInfo.getString("DATFMT"))); 
-      //key.put(ParamCmd.DATSEP, ValCmd.fromString(rsSqlRpgInfo.getString("DATSEP"))); 
+    //key.put(ParamCmd.DATFMT, ValCmd.fromString(col(row, "DATFMT"))); 
+    //key.put(ParamCmd.DATSEP, ValCmd.fromString(col(row, "DATSEP"))); 
 
-      //key.put(ParamCmd.TIMFMT, ValCmd.fromString(rsSqlRpgInfo.getString("TIMFMT"))); 
-      //key.put(ParamCmd.TIMSEP, ValCmd.fromString(rsSqlRpgInfo.getString("TIMSEP"))); 
+    //key.put(ParamCmd.TIMFMT, ValCmd.fromString(col(row, "TIMFMT"))); 
+    //key.put(ParamCmd.TIMSEP, ValCmd.fromString(col(row, "TIMSEP"))); 
 
-      //key.put(ParamCmd.SRTSEQ, rsSqlRpgInfo.getString("SRTSEQ").trim()); 
-      //key.put(ParamCmd.LANGID, rsSqlRpgInfo.getString("LANGID").trim()); 
+    //key.put(ParamCmd.SRTSEQ, col(row, "SRTSEQ")); 
+    //key.put(ParamCmd.LANGID, col(row, "LANGID")); 
 
-      //key.put(ParamCmd.DYNUSRPRF, ValCmd.fromString(rsSqlRpgInfo.getString("DYNUSRPRF"))); 
-      //key.put(ParamCmd.ALWCPYDTA, ValCmd.fromString(rsSqlRpgInfo.getString("ALWCPYDTA"))); 
-      //key.put(ParamCmd.CLOSQLCSR, ValCmd.fromString(rsSqlRpgInfo.getString("CLOSQLCSR"))); 
-      //key.put(ParamCmd.DLYPRP, ValCmd.fromString(rsSqlRpgInfo.getString("DLYPRP"))); 
-      //key.put(ParamCmd.ALWBLK, ValCmd.fromString(rsSqlRpgInfo.getString("ALWBLK"))); 
-    }
+    //key.put(ParamCmd.DYNUSRPRF, ValCmd.fromString(col(row, "DYNUSRPRF"))); 
+    //key.put(ParamCmd.ALWCPYDTA, ValCmd.fromString(col(row, "ALWCPYDTA"))); 
+    //key.put(ParamCmd.CLOSQLCSR, ValCmd.fromString(col(row, "CLOSQLCSR"))); 
+    //key.put(ParamCmd.DLYPRP, ValCmd.fromString(col(row, "DLYPRP"))); 
+    //key.put(ParamCmd.ALWBLK, ValCmd.fromString(col(row, "ALWBLK"))); 
   }
 
   private void getSrvpgmInfo(TargetKey key) throws SQLException {
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsSrvPgm = stmt.executeQuery(
-          "With " +
-          Utilities.CteLibraryList +
-          "SELECT PROGRAM_LIBRARY, " + // programLibrary
-              "PROGRAM_NAME, " + // programName
-              "COALESCE(PROGRAM_TYPE,'') As PROGRAM_TYPE, " +  // [ILE, OPM] 
-              "OBJECT_TYPE, " +   // typeOfProgram
-              "COALESCE(TEXT_DESCRIPTION, '') As TEXT, " + // textDescription
-              "PROGRAM_OWNER, " + // owner
-              "PROGRAM_ATTRIBUTE, " + // attribute
-              "USER_PROFILE As USRPRF, " +
-              "USE_ADOPTED_AUTHORITY, " +
-              "RELEASE_CREATED_ON, " +
-              "COALESCE(TARGET_RELEASE, '') As TGTRLS, " +
-              "COALESCE(ALLOW_RTVCLSRC, '') As ALWRTVSRC, " + // allowRTVCLSRC
-              "CONVERSION_REQUIRED, " +
-              "CONVERSION_DETAIL, " +
-              //-- These seem to be for ILE objects
-              "COALESCE(ACTIVATION_GROUP, '') AS ACTGRP, " + // activationGroupAttribute
-              "SHARED_ACTIVATION_GROUP, " +
-              "ALLOW_UPDATE, " +
-              "ALLOW_BOUND_SRVPGM_LIBRARY_UPDATE, " +
-              "ALL_CREATION_DATA, " +
-              "COALESCE(PROFILING_DATA, '') As PRFDTA, " +
-              "COALESCE(STORAGE_MODEL , '') As STGMDL, " +
-              "ARGUMENT_OPTIMIZATION, " +
-              "NUMBER_OF_UNRESOLVED_REFERENCES, " +
-              // Source file related data
-              "(TRIM(SOURCE_FILE_LIBRARY) || '/' || TRIM(SOURCE_FILE)) As SRCFILE, " +
-              "SOURCE_FILE_MEMBER As SRCMBR, " +
-              "COALESCE((TRIM(SQL_SORT_SEQUENCE_LIBRARY) || '/' || TRIM(SQL_SORT_SEQUENCE)), '') As SRTSEQ, " +
-              "COALESCE(LANGUAGE_ID, '') As LANGID, " +
-              "OBSERVABLE, " + // observable
-              "COALESCE(OPTIMIZATION, '') As OPTIMIZE, " +
-              "COALESCE(LOG_COMMANDS, '' ) As LOG, " +
-              "COALESCE(FIX_DECIMAL_DATA, '') As FIXNBR, " + // fixDecimalData
-              "TERASPACE_STORAGE_ENABLED_PROGRAM " + // teraspaceEnabled
-            "FROM QSYS2.PROGRAM_INFO " +
-            "INNER JOIN Libs " +
-            "ON (PROGRAM_LIBRARY = Libs.Libraries) " +
-            "WHERE " + 
-                "PROGRAM_NAME = '" + key.getObjectName() + "' " +
-                "AND OBJECT_TYPE = '" + key.getObjectType() + "' "
-          )) {
-      if (!rsSrvPgm.next()) {
-        if (verbose) logger.info(("Could not retrieve srvpgm object compilation info " + key.asString() ));
-        return;
-      }
+    Map<String, String> row = programInfo(key);
+    if (row.isEmpty()) {
+      if (verbose) logger.info(("Could not retrieve srvpgm object compilation info " + key.asString() ));
+      return;
+    }
 
-      if (verbose) logger.info("Found srvpgm object compilation info " + key.asString());
+    if (verbose) logger.info("Found srvpgm object compilation info " + key.asString());
 
-      String actgrp = rsSrvPgm.getString("ACTGRP").trim();
-      if (!actgrp.isEmpty()) key.put(ParamCmd.ACTGRP, actgrp);
-      if ("QILE".equals(actgrp)) key.put(ParamCmd.DFTACTGRP, ValCmd.NO);
+    String actgrp = col(row, "ACTGRP");
+    if (!actgrp.isEmpty()) key.put(ParamCmd.ACTGRP, actgrp);
+    if ("QILE".equals(actgrp)) key.put(ParamCmd.DFTACTGRP, ValCmd.NO);
 
-      String stgMdl = rsSrvPgm.getString("STGMDL").trim();
-      if (!stgMdl.isEmpty()) key.put(ParamCmd.STGMDL, stgMdl);
+    String stgMdl = col(row, "STGMDL");
+    if (!stgMdl.isEmpty()) key.put(ParamCmd.STGMDL, stgMdl);
 
-      String tgtRls = rsSrvPgm.getString("TGTRLS").trim();
-      key.put(ParamCmd.TGTRLS, ValCmd.CURRENT);
-      if (!tgtRls.isEmpty()) key.put(ParamCmd.TGTRLS, tgtRls);
+    String tgtRls = col(row, "TGTRLS");
+    key.put(ParamCmd.TGTRLS, ValCmd.CURRENT);
+    if (!tgtRls.isEmpty()) key.put(ParamCmd.TGTRLS, tgtRls);
 
-      String text = rsSrvPgm.getString("TEXT").trim();
-      if (!text.isEmpty()) key.put(ParamCmd.TEXT, text);
+    String text = col(row, "TEXT");
+    if (!text.isEmpty()) key.put(ParamCmd.TEXT, text);
 
-      String usrPrf = rsSrvPgm.getString("USRPRF").trim();
-      if (!usrPrf.isEmpty()) key.put(ParamCmd.USRPRF, usrPrf);
-    }
+    String usrPrf = col(row, "USRPRF");
+    if (!usrPrf.isEmpty()) key.put(ParamCmd.USRPRF, usrPrf);
   }
   
   private void getSqlInfo(TargetKey key) throws SQLException{
@@ -569,6 +721,82 @@ public class ObjectDescriptor {
     return;
   }
 
-  
+  /* PROGRAM_INFO row of a *PGM or *SRVPGM, prefetched or queried live */
+  private Map<String, String> programInfo(TargetKey key) throws SQLException {
+    Map<String, String> row = catalog.objectInfo(key);
+    if (row != null) return row;
+
+    try (ResultSet rs = statements.query(
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " + ProgramInfoColumns +
+            "FROM QSYS2.PROGRAM_INFO " +
+            "INNER JOIN Libs " +
+            "ON (PROGRAM_LIBRARY = Libs.Libraries) " +
+            "WHERE " + 
+                "PROGRAM_NAME = ? " +
+                "AND OBJECT_TYPE = ? ",
+          key.getObjectName(), key.getObjectType())) {
+      if (!rs.next()) return Collections.emptyMap();
+      return CatalogIndex.toRow(rs);
+    }
+  }
 
-}
\ No newline at end of file
+  private Map<String, String> fetchModuleInfo(TargetKey key) throws SQLException {
+    try (ResultSet rs = statements.query(
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " + ModuleInfoColumns +
+          /*  QSYS2.PROGRAM_INFO does not shows module objects */
+          "FROM QSYS2.BOUND_MODULE_INFO " +
+          "INNER JOIN Libs " +
+          /* Here we need to also use the PROGRAM_LIBRARY, otherwise, the query becomes slow */
+            "ON (PROGRAM_LIBRARY = Libs.Libraries AND BOUND_MODULE_LIBRARY = Libs.Libraries) " +
+          "WHERE " +
+            "BOUND_MODULE = ? " +
+            "AND MODULE_ATTRIBUTE = ? ",
+          key.getObjectName(), key.getSourceType())) {
+      if (!rs.next()) return Collections.emptyMap();
+      return CatalogIndex.toRow(rs);
+    }
+  }
+
+  private Map<String, String> fetchCmdInfo(TargetKey key) throws SQLException {
+    try (ResultSet rs = statements.query(
+          "With " + 
+          Utilities.CteLibraryList +
+          "SELECT " + CommandInfoColumns +
+            "FROM QSYS2.COMMAND_INFO " +
+            "INNER JOIN Libs " +
+            "ON (COMMAND_LIBRARY = Libs.Libraries) " +
+            "WHERE " + 
+                "COMMAND_NAME = ? ",
+          key.getObjectName())) {
+      if (!rs.next()) return Collections.emptyMap();
+      return CatalogIndex.toRow(rs);
+    }
+  }
+
+  private static String col(Map<String, String> row, String column) {
+    return row.getOrDefault(column, "");
+  }
+
+  private static String inList(List<TargetKey> keys) {
+    return Utilities.sqlInList(objectNames(keys));
+  }
+
+  private static List<String> objectNames(List<TargetKey> keys) {
+    List<String> names = new ArrayList<>();
+    for (TargetKey key : keys) names.add(key.getObjectName());
+    return names;
+  }
+
+  private static List<List<TargetKey>> batches(List<TargetKey> keys) {
+    return Utilities.batches(keys, BATCH_SIZE);
+  }
+
+  /* Frees the prepared lookups, the connection stays open */
+  public void close() {
+    statements.close();
+  }
+}
@@ -0,0 +1,73 @@
+package com.github.kraudy.compiler;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/*
+ * Object names referenced by one source, as found by the SourceScanner.
+ * Names are upper case, without library or schema. Sets keep the order of first appearance.
+ * Stored as is in the DependencyIndex, Jackson fills the sets through their getters.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ScanResult {
+  private final Set<String> bndDirs = new LinkedHashSet<>();     // BNDDIR('NAME')
+  private final Set<String> extPgms = new LinkedHashSet<>();     // EXTPGM('NAME')
+  private final Set<String> dtaAras = new LinkedHashSet<>();     // DTAARA('NAME')
+  private final Set<String> extNames = new LinkedHashSet<>();    // EXTNAME(NAME)
+  private final Set<String> files = new LinkedHashSet<>();       // Fixed F-specs and DCL-F
+  private final Set<String> sqlTables = new LinkedHashSet<>();   // FROM, JOIN, INTO, UPDATE of SQL statements
+  private final Set<String> refFiles = new LinkedHashSet<>();    // DDS REF(FILE)
+  private final Set<String> pfiles = new LinkedHashSet<>();      // DDS PFILE(FILE)
+  private final Set<String> refFldFiles = new LinkedHashSet<>(); // DDS REFFLD(FIELD FILE)
+  private final Set<String> calls = new LinkedHashSet<>();       // CL CALL PGM(NAME) and CALL NAME
+  private final Set<String> exports = new LinkedHashSet<>();     // Exported procedures
+  private final Set<String> procedureCalls = new LinkedHashSet<>(); // External procedures of the called prototypes
+  private final Set<String> includes = new LinkedHashSet<>();    // /COPY, /INCLUDE, SQL INCLUDE, CL INCLUDE as written
+  /* Kept to resolve calls across includes: prototypes of a copybook are called from the including source */
+  private final Map<String, String> prototypes = new LinkedHashMap<>(); // Bound prototype -> external procedure
+  private final Set<String> unresolvedCalls = new LinkedHashSet<>();    // Called names without a prototype in this source
+
+  public Set<String> getBndDirs() { return this.bndDirs; }
+  public Set<String> getExtPgms() { return this.extPgms; }
+  public Set<String> getDtaAras() { return this.dtaAras; }
+  public Set<String> getExtNames() { return this.extNames; }
+  public Set<String> getFiles() { return this.files; }
+  public Set<String> getSqlTables() { return this.sqlTables; }
+  public Set<String> getRefFiles() { return this.refFiles; }
+  public Set<String> getPfiles() { return this.pfiles; }
+  public Set<String> getRefFldFiles() { return this.refFldFiles; }
+  public Set<String> getCalls() { return this.calls; }
+  public Set<String> getExports() { return this.exports; }
+  public Set<String> getProcedureCalls() { return this.procedureCalls; }
+  public Set<String> getIncludes() { return this.includes; }
+  public Map<String, String> getPrototypes() { return this.prototypes; }
+  public Set<String> getUnresolvedCalls() { return this.unresolvedCalls; }
+
+  /* Adds the names of an included source. Calls are resolved again against all the prototypes seen so far */
+  public void addAll(ScanResult other) {
+    bndDirs.addAll(other.bndDirs);
+    extPgms.addAll(other.extPgms);
+    dtaAras.addAll(other.dtaAras);
+    extNames.addAll(other.extNames);
+    files.addAll(other.files);
+    sqlTables.addAll(other.sqlTables);
+    refFiles.addAll(other.refFiles);
+    pfiles.addAll(other.pfiles);
+    refFldFiles.addAll(other.refFldFiles);
+    calls.addAll(other.calls);
+    exports.addAll(other.exports);
+    procedureCalls.addAll(other.procedureCalls);
+    includes.addAll(other.includes);
+    prototypes.putAll(other.prototypes);
+    unresolvedCalls.addAll(other.unresolvedCalls);
+
+    for (String called : unresolvedCalls) {
+      String procedure = prototypes.get(called);
+      if (procedure != null) procedureCalls.add(procedure);
+    }
+  }
+}
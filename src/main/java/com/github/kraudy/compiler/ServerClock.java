@@ -0,0 +1,55 @@
+package com.github.kraudy.compiler;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/*
+ * Server time estimated from the local clock.
+ * The offset is measured once with a CURRENT_TIMESTAMP round trip; the uncertainty is half of that
+ * round trip plus the server timestamp precision. Anything filtering by time must widen its
+ * window by the uncertainty.
+ */
+public class ServerClock {
+  private final long offsetMillis;
+  private final long uncertaintyMillis;
+
+  public ServerClock(long offsetMillis, long uncertaintyMillis) {
+    this.offsetMillis = offsetMillis;
+    this.uncertaintyMillis = uncertaintyMillis;
+  }
+
+  public static ServerClock measure(Connection connection) {
+    try (Statement stmt = connection.createStatement()) {
+      long before = System.currentTimeMillis();
+      Timestamp serverTime;
+      try (ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP AS Server_Time FROM sysibm.sysdummy1")) {
+        if (!rs.next()) throw new CompilerException("Could not read server time");
+        serverTime = rs.getTimestamp("Server_Time");
+      }
+      long after = System.currentTimeMillis();
+
+      long midpoint = before + (after - before) / 2;
+      /* +1 ms for the truncation of the server timestamp */
+      return new ServerClock(serverTime.getTime() - midpoint, (after - before) / 2 + 1);
+
+    } catch (SQLException e) {
+      throw new CompilerException("Error measuring server clock offset", e);
+    }
+  }
+
+  /* Estimated current server time */
+  public Timestamp now() {
+    return new Timestamp(System.currentTimeMillis() + offsetMillis);
+  }
+
+  /* Earliest server time the estimate could stand for */
+  public Timestamp lowerBound(Timestamp estimate) {
+    return new Timestamp(estimate.getTime() - uncertaintyMillis);
+  }
+
+  public long getOffsetMillis() { return this.offsetMillis; }
+  public long getUncertaintyMillis() { return this.uncertaintyMillis; }
+}
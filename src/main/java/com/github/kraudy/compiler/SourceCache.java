@@ -0,0 +1,100 @@
+package com.github.kraudy.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Stream file sources read once per run.
+ * The first caller of a path fetches it from the first provider that has the file; concurrent
+ * and later callers wait for and share the same text.
+ * Providers are tried in order, e.g. a local checkout before the IFS.
+ */
+public class SourceCache {
+  private final String baseDir;
+  private final List<SourceProvider> providers;
+
+  private final Map<String, CompletableFuture<String>> sources = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> reads = new ConcurrentHashMap<>(); // Provider name -> files read
+
+  public SourceCache(String baseDir, List<SourceProvider> providers) {
+    this.baseDir = baseDir;
+    this.providers = new ArrayList<>(providers);
+  }
+
+  /* Source text of a target stream file */
+  public String read(String streamFile) throws CompilerException {
+    CompletableFuture<String> created = new CompletableFuture<>();
+    CompletableFuture<String> source = sources.putIfAbsent(streamFile, created);
+
+    if (source == null) {
+      /* This caller fetches it */
+      source = created;
+      try {
+        created.complete(fetch(streamFile));
+      } catch (Exception e) {
+        created.completeExceptionally(e);
+      }
+    }
+
+    try {
+      return source.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompilerException("Interrupted reading source " + streamFile, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof CompilerException) throw (CompilerException) cause;
+      throw new CompilerException("Could not read source " + streamFile + ": " + cause.getMessage(), cause);
+    }
+  }
+
+  private String fetch(String streamFile) throws Exception {
+    for (SourceProvider provider : providers) {
+      String text = provider.read(streamFile);
+      if (text == null) continue;
+      reads.computeIfAbsent(provider.getName(), k -> new AtomicInteger()).incrementAndGet();
+      return text;
+    }
+    String path = streamFile.startsWith("/") ? streamFile : baseDir + "/" + streamFile;
+    throw new CompilerException("Source file not found: " + path);
+  }
+
+  /* Change stamp from the first provider that has the file, tagged with its name. Null if not known */
+  public String stamp(String streamFile) {
+    for (SourceProvider provider : providers) {
+      try {
+        String stamp = provider.stamp(streamFile);
+        if (stamp != null) return provider.getName() + ":" + stamp;
+      } catch (Exception e) {
+        return null;  // Unknown, the source is read and hashed instead
+      }
+    }
+    return null;
+  }
+
+  /* Files read from the named provider */
+  public int getReads(String providerName) {
+    AtomicInteger count = reads.get(providerName);
+    return count == null ? 0 : count.get();
+  }
+
+  /* Reads per provider, in provider order. For logs */
+  public String describeReads() {
+    StringBuilder sb = new StringBuilder();
+    for (SourceProvider provider : providers) {
+      if (sb.length() > 0) sb.append(", ");
+      sb.append(getReads(provider.getName())).append(" from ").append(provider.getName());
+    }
+    return sb.toString();
+  }
+
+  /* Drops the cached text, the next run reads the sources again */
+  public void clear() {
+    sources.clear();
+  }
+}
@@ -4,10 +4,17 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.kraudy.compiler.CompilationPattern.ObjectType;
 import com.github.kraudy.compiler.CompilationPattern.ValCmd;
 
 public class SourceDescriptor {
@@ -16,17 +23,337 @@ public class SourceDescriptor {
   private final Connection connection;
   private final boolean debug;
   private final boolean verbose;
+  private final CatalogIndex catalog;
+  private final CatalogStatements statements; // Live lookups, prepared once per run
+
+  private static final int BATCH_SIZE = 200; // Names per prefetch statement
 
   public SourceDescriptor(Connection connection, boolean debug, boolean verbose) {
+    this(connection, debug, verbose, new CatalogIndex());
+  }
+
+  public SourceDescriptor(Connection connection, boolean debug, boolean verbose, CatalogIndex catalog) {
     this.connection = connection;
     this.debug = debug;
     this.verbose = verbose;
+    this.catalog = catalog;
+    this.statements = new CatalogStatements(connection);
+  }
+
+  /*
+   * Resolves last build and last source edit of all spec targets in a few queries, so the diff
+   * check of each target is done in memory:
+   * PROGRAM_INFO per object type, the sql catalog of each sql object type, OBJECT_STATISTICS per object type for
+   * modules and DDS files, SYSPARTITIONSTAT per source file and one IFS_OBJECT_STATISTICS statement for
+   * the directories holding the stream files.
+   */
+  public void prefetchTimestamps(BuildSpec spec) throws SQLException {
+    Map<String, List<TargetKey>> programs = new LinkedHashMap<>();   // Object type -> targets
+    Map<ObjectType, List<TargetKey>> sqlObjects = new LinkedHashMap<>(); // Sql object type -> targets
+    Map<String, List<TargetKey>> objects = new LinkedHashMap<>();    // Object type -> modules and DDS files
+    Map<String, List<TargetKey>> members = new LinkedHashMap<>();    // Source file -> targets
+    Map<String, TargetKey> streamFiles = new LinkedHashMap<>();      // Absolute stream file path -> target
+    List<TargetKey> relativeStreamFiles = new ArrayList<>();
+
+    for (TargetKey key : spec.targets.keySet()) {
+      if (key.isProgram() || key.isServiceProgram()) {
+        programs.computeIfAbsent(key.getObjectType(), t -> new ArrayList<>()).add(key);
+      } else if (key.isSql()) {
+        sqlObjects.computeIfAbsent(key.getObjectTypeEnum(), t -> new ArrayList<>()).add(key);
+      } else if (key.isModule() || key.isDds()) {
+        objects.computeIfAbsent(key.getObjectType(), t -> new ArrayList<>()).add(key);
+      }
+
+      if (key.containsStreamFile()) {
+        String path = absoluteStreamFile(spec.getBaseDirectory(), key.getStreamFile());
+        if (path == null) {
+          relativeStreamFiles.add(key); // Resolved live against the job current directory
+          continue;
+        }
+        streamFiles.put(path, key);
+        continue;
+      }
+      members.computeIfAbsent(key.getSourceFile(), f -> new ArrayList<>()).add(key);
+    }
+
+    for (Map.Entry<String, List<TargetKey>> entry : programs.entrySet()) {
+      for (List<TargetKey> batch : Utilities.batches(entry.getValue(), BATCH_SIZE)) {
+        prefetchPgmSrvPgmCreation(entry.getKey(), batch);
+      }
+    }
+
+    for (Map.Entry<ObjectType, List<TargetKey>> entry : sqlObjects.entrySet()) {
+      for (List<TargetKey> batch : Utilities.batches(entry.getValue(), BATCH_SIZE)) {
+        prefetchSqlCreation(entry.getKey(), batch);
+      }
+    }
+
+    for (Map.Entry<String, List<TargetKey>> entry : objects.entrySet()) {
+      for (List<TargetKey> batch : Utilities.batches(entry.getValue(), BATCH_SIZE)) {
+        prefetchObjectCreation(entry.getKey(), batch);
+      }
+    }
+
+    for (Map.Entry<String, List<TargetKey>> entry : members.entrySet()) {
+      for (List<TargetKey> batch : Utilities.batches(entry.getValue(), BATCH_SIZE)) {
+        prefetchSourceMemberLastChange(entry.getKey(), batch);
+      }
+    }
+
+    if (!streamFiles.isEmpty()) prefetchSourceStreamFileLastChange(streamFiles);
+
+    if (verbose) logger.info("Prefetched timestamps of " + spec.targets.size() + " targets, " + 
+        relativeStreamFiles.size() + " stream files left for live lookup");
+  }
+
+  private void prefetchPgmSrvPgmCreation(String objectType, List<TargetKey> keys) throws SQLException {
+    Map<String, Timestamp> created = new HashMap<>();
+
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " +
+              "PROGRAM_NAME, " +
+              "CREATE_TIMESTAMP " + // creationDateTime
+            "FROM QSYS2.PROGRAM_INFO " +
+            "INNER JOIN Libs " +
+            "ON (PROGRAM_LIBRARY = Libs.Libraries) " +
+            "WHERE " + 
+                "PROGRAM_NAME IN (" + Utilities.sqlInList(objectNames(keys)) + ") " +
+                "AND OBJECT_TYPE = '" + objectType + "' "
+          )) {
+      while (rs.next()) {
+        created.putIfAbsent(rs.getString("PROGRAM_NAME").trim(), rs.getTimestamp("CREATE_TIMESTAMP"));
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setLastBuild(key, created.get(key.getObjectName()));
+    }
+  }
+
+  private void prefetchSqlCreation(ObjectType type, List<TargetKey> keys) throws SQLException {
+    Map<String, Timestamp> altered = new HashMap<>();
+
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(sqlCreationQuery(type, Utilities.sqlInList(objectNames(keys))))) {
+      while (rs.next()) {
+        altered.putIfAbsent(rs.getString("NAME").trim(), rs.getTimestamp("LAST_BUILD"));
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setLastBuild(key, altered.get(key.getObjectName()));
+    }
+  }
+
+  /*
+   * Name and last (re)creation of sql objects, from the catalog of their type.
+   * Tables, views, aliases and indexes are files and share SYSFILES, routines are in SYSROUTINES by
+   * specific name (as the existence check finds them), triggers in SYSTRIGGERS and sequences in SYSSEQUENCES.
+   */
+  static String sqlCreationQuery(ObjectType type, String names) {
+    switch (type) {
+      case PROCEDURE:
+      case FUNCTION:
+        return
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " +
+              "SPECIFIC_NAME As NAME, " +
+              "LAST_ALTERED As LAST_BUILD " +
+            "FROM QSYS2.SYSROUTINES " +
+            "INNER JOIN Libs " +
+            "ON (SPECIFIC_SCHEMA = Libs.Libraries) " +
+            "WHERE " +
+                "SPECIFIC_NAME IN (" + names + ") " +
+                "AND ROUTINE_TYPE = '" + type.name() + "' ";
+
+      case TRIGGER:
+        return
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " +
+              "TRIGGER_NAME As NAME, " +
+              "CREATED As LAST_BUILD " +
+            "FROM QSYS2.SYSTRIGGERS " +
+            "INNER JOIN Libs " +
+            "ON (TRIGGER_SCHEMA = Libs.Libraries) " +
+            "WHERE " +
+                "TRIGGER_NAME IN (" + names + ") ";
+
+      case SEQUENCE:
+        return
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " +
+              "SEQUENCE_NAME As NAME, " +
+              "LAST_ALTERED_TIMESTAMP As LAST_BUILD " +
+            "FROM QSYS2.SYSSEQUENCES " +
+            "INNER JOIN Libs " +
+            "ON (SEQUENCE_SCHEMA = Libs.Libraries) " +
+            "WHERE " +
+                "SEQUENCE_NAME IN (" + names + ") ";
+
+      default:
+        /* The sql object type, not getObjectTypeName(): that one is FILE for tables and views */
+        return
+          "With " +
+          Utilities.CteLibraryList +
+          "SELECT " +
+              "TABLE_NAME As NAME, " +
+              "LAST_ALTERED_TIMESTAMP As LAST_BUILD " +
+            "FROM QSYS2.SYSFILES " +
+            "INNER JOIN Libs " +
+            "ON (TABLE_SCHEMA = Libs.Libraries) " +
+            "WHERE " +
+                "TABLE_NAME IN (" + names + ") " +
+                "AND SQL_OBJECT_TYPE = '" + type.name() + "' ";
+    }
+  }
+
+  /* Modules and DDS files have no catalog of their own, one OBJECT_STATISTICS call per name in the same statement */
+  private void prefetchObjectCreation(String objectType, List<TargetKey> keys) throws SQLException {
+    Map<String, Timestamp> created = new HashMap<>();
+
+    try (Statement stmt = connection.createStatement();
+        ResultSet rs = stmt.executeQuery(
+          "SELECT T.NAME, O.OBJCREATED " +
+          "FROM (VALUES " + Utilities.sqlValuesList(objectNames(keys)) + ") As T (NAME), " +
+          "TABLE( " +
+            "QSYS2.OBJECT_STATISTICS( " +
+              "OBJECT_SCHEMA => '" + ValCmd.LIBL.toString() + "', " +
+              "OBJTYPELIST => '" + objectType + "', " +
+              "OBJECT_NAME => T.NAME " +
+            ") " +
+          ") As O"
+          )) {
+      while (rs.next()) {
+        /* First one in the library list */
+        created.putIfAbsent(rs.getString("NAME").trim(), rs.getTimestamp("OBJCREATED"));
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setLastBuild(key, created.get(key.getObjectName()));
+    }
+  }
+
+  private void prefetchSourceMemberLastChange(String sourceFile, List<TargetKey> keys) throws SQLException {
+    Map<String, Timestamp> changed = new HashMap<>(); // Member.SourceType -> last change
+    List<String> memberNames = new ArrayList<>();
+    for (TargetKey key : keys) memberNames.add(key.getSourceName());
+
+    try (Statement stmt = connection.createStatement();
+          ResultSet rs = stmt.executeQuery(
+            "With " +
+            Utilities.CteLibraryList +
+              "SELECT TABLE_PARTITION, SOURCE_TYPE, LAST_SOURCE_UPDATE_TIMESTAMP FROM QSYS2.SYSPARTITIONSTAT " +
+              "INNER JOIN Libs " +
+              "ON (TABLE_SCHEMA = Libs.Libraries) " +
+              "WHERE TABLE_NAME = '" + sourceFile + "' " +
+              "AND TABLE_PARTITION IN (" + Utilities.sqlInList(memberNames) + ")")) {
+      while (rs.next()) {
+        String sourceType = rs.getString("SOURCE_TYPE");
+        changed.putIfAbsent(rs.getString("TABLE_PARTITION").trim() + "." + (sourceType == null ? "" : sourceType.trim()), 
+            rs.getTimestamp("LAST_SOURCE_UPDATE_TIMESTAMP"));
+      }
+    }
+
+    for (TargetKey key : keys) {
+      catalog.setLastEdit(key, changed.get(key.getSourceName() + "." + key.getSourceType()));
+    }
+  }
+
+  private void prefetchSourceStreamFileLastChange(Map<String, TargetKey> streamFiles) throws SQLException {
+    /* Only the directories holding target sources are walked, nested ones are covered by their parent */
+    List<String> directories = new ArrayList<>();
+    for (String path : streamFiles.keySet()) {
+      String dir = path.substring(0, Math.max(1, path.lastIndexOf('/')));
+      directories.add(dir);
+    }
+    directories.sort(null);
+    List<String> roots = new ArrayList<>();
+    for (String dir : directories) {
+      if (!roots.isEmpty()) {
+        String last = roots.get(roots.size() - 1);
+        if (dir.equals(last) || dir.startsWith(last.endsWith("/") ? last : last + "/")) continue;
+      }
+      roots.add(dir);
+    }
+
+    StringBuilder values = new StringBuilder();
+    for (String root : roots) {
+      if (values.length() > 0) values.append(", ");
+      values.append("('").append(root.replace("'", "''")).append("')");
+    }
+
+    Map<String, Timestamp> changed = new HashMap<>();
+    try (Statement stmt = connection.createStatement();
+          ResultSet rs = stmt.executeQuery(
+            "SELECT S.PATH_NAME, S.DATA_CHANGE_TIMESTAMP " + 
+            "FROM (VALUES " + values + ") As D (DIR), " +
+            "TABLE (QSYS2.IFS_OBJECT_STATISTICS( " +
+                    "START_PATH_NAME => D.DIR, " +
+                    "SUBTREE_DIRECTORIES => 'YES', " +
+                    "OBJECT_TYPE_LIST => '*STMF', " +
+                    "IGNORE_ERRORS => 'YES' " +
+                ") " +
+            ") As S")) {
+      while (rs.next()) {
+        changed.put(pathKey(rs.getString("PATH_NAME")), rs.getTimestamp("DATA_CHANGE_TIMESTAMP"));
+      }
+    }
+
+    /* Not found ones are left for the live lookup, the job current directory may differ from the spec directory */
+    for (Map.Entry<String, TargetKey> entry : streamFiles.entrySet()) {
+      Timestamp lastChange = changed.get(pathKey(entry.getKey()));
+      if (lastChange != null) catalog.setLastEdit(entry.getValue(), lastChange);
+    }
+  }
+
+  /*
+   * Lookup key of an IFS path. The root file system is not case sensitive, so its paths are folded
+   * to upper case. QOpenSys is: only its own name is folded, what is below it is kept as is.
+   */
+  static String pathKey(String path) {
+    String upper = path.toUpperCase();
+    if (upper.equals("/QOPENSYS") || upper.startsWith("/QOPENSYS/")) return "/QOPENSYS" + path.substring(9);
+    return upper;
+  }
+
+  /* Stream file path as seen from the spec directory. Null if it can't be resolved here */
+  public static String absoluteStreamFile(String baseDirectory, String streamFile) {
+    if (streamFile == null || streamFile.isEmpty()) return null;
+    String path = streamFile;
+    if (!path.startsWith("/")) {
+      if (baseDirectory == null || !baseDirectory.startsWith("/")) return null;
+      path = baseDirectory + (baseDirectory.endsWith("/") ? "" : "/") + path;
+    }
+
+    /* Normalize ./ and ../ segments */
+    List<String> segments = new ArrayList<>();
+    for (String segment : path.split("/")) {
+      if (segment.isEmpty() || segment.equals(".")) continue;
+      if (segment.equals("..")) {
+        if (!segments.isEmpty()) segments.remove(segments.size() - 1);
+        continue;
+      }
+      segments.add(segment);
+    }
+    return "/" + String.join("/", segments);
+  }
+
+  private static List<String> objectNames(List<TargetKey> keys) {
+    List<String> names = new ArrayList<>();
+    for (TargetKey key : keys) names.add(key.getObjectName());
+    return names;
   }
 
   /* Get Pgm and SrvPgm objects creation timestamp */
   public void getPgmSrvPgmCreation (TargetKey key) throws SQLException {
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsObjCreationInfo = stmt.executeQuery(
+    try (ResultSet rsObjCreationInfo = statements.query(
           "With " +
           Utilities.CteLibraryList +
           "SELECT " +
@@ -36,9 +363,9 @@ public class SourceDescriptor {
             "INNER JOIN Libs " +
             "ON (PROGRAM_LIBRARY = Libs.Libraries) " +
             "WHERE " + 
-                "PROGRAM_NAME = '" + key.getObjectName() + "' " +
-                "AND OBJECT_TYPE = '" + key.getObjectType() + "' "
-          )) {
+                "PROGRAM_NAME = ? " +
+                "AND OBJECT_TYPE = ? ",
+          key.getObjectName(), key.getObjectType())) {
       if (!rsObjCreationInfo.next()) {
         if (verbose) logger.info(("Could not extract object creation time '" + key.asString() ));
         return;
@@ -53,23 +380,11 @@ public class SourceDescriptor {
   }
 
   public void getModCreation (TargetKey key) throws SQLException {
-
+    getObjectCreation(key);
   }
 
   public void getSqlCreation (TargetKey key) throws SQLException {
-    try (Statement stmt = connection.createStatement();
-        ResultSet rsSql = stmt.executeQuery(
-          "With " +
-          Utilities.CteLibraryList +
-          "SELECT " +
-              "LAST_ALTERED_TIMESTAMP " +
-            "FROM QSYS2.SYSFILES " + 
-            "INNER JOIN Libs " +
-            "ON (TABLE_SCHEMA = Libs.Libraries) " +
-            "WHERE " + 
-                "TABLE_NAME = '" + key.getObjectName() + "' " +
-                "AND SQL_OBJECT_TYPE = '" + key.getObjectTypeName() + "' "
-          )) {
+    try (ResultSet rsSql = statements.query(sqlCreationQuery(key.getObjectTypeEnum(), "?"), key.getObjectName())) {
       if (!rsSql.next()) {
         if (verbose) logger.info(("Could not extract sql object creation time '" + key.asString() ));
         return;
@@ -77,20 +392,46 @@ public class SourceDescriptor {
 
       if (verbose) logger.info("Found sql object creation data '" + key.asString());
 
-      key.setLastBuild(rsSql.getTimestamp("LAST_ALTERED_TIMESTAMP"));
+      key.setLastBuild(rsSql.getTimestamp("LAST_BUILD"));
       
     }
   }
 
   public void getDdsCreation (TargetKey key) throws SQLException {
+    getObjectCreation(key);
+  }
 
+  /* Creation timestamp of objects without a catalog of their own: modules and DDS files */
+  private void getObjectCreation (TargetKey key) throws SQLException {
+    try (ResultSet rs = statements.query(
+          "SELECT OBJCREATED " +
+          "FROM TABLE( " +
+            "QSYS2.OBJECT_STATISTICS( " +
+              "OBJECT_SCHEMA => '" + ValCmd.LIBL.toString() + "', " +
+              "OBJTYPELIST => ?, " +
+              "OBJECT_NAME => ? " +
+            ") " +
+          ") " +
+          "LIMIT 1",
+          key.getObjectType(), key.getObjectName())) {
+      if (!rs.next()) {
+        if (verbose) logger.info(("Could not extract object creation time '" + key.asString() ));
+        return;
+      }
+
+      if (verbose) logger.info("Found object creation data '" + key.asString());
+
+      key.setLastBuild(rs.getTimestamp("OBJCREATED"));
+    }
   }
 
   //TODO: Check if the object exists using SYSPARTITIONSTAT
 
   public void getObjectTimestamps(TargetKey key) throws SQLException {
     /* Get object creation timestamp */
-    if (key.isProgram() || key.isServiceProgram()) {
+    if (catalog.hasLastBuild(key)) {
+      key.setLastBuild(catalog.lastBuild(key));
+    } else if (key.isProgram() || key.isServiceProgram()) {
       getPgmSrvPgmCreation(key);
     } else if (key.isModule()) {
       getModCreation(key);
@@ -101,6 +442,12 @@ public class SourceDescriptor {
     } 
     
 
+    /* Prefetched source last change */
+    if (catalog.hasLastEdit(key)) {
+      key.setLastEdit(catalog.lastEdit(key));
+      return;
+    }
+
     /* Get source stream file last change */
     if (key.containsStreamFile()){
       //TODO: Add git diff
@@ -113,16 +460,16 @@ public class SourceDescriptor {
   }
 
   public void getSourceMemberLastChange(TargetKey key) throws SQLException {
-    try (Statement stmt = connection.createStatement();
-          ResultSet rs = stmt.executeQuery(
+    try (ResultSet rs = statements.query(
             "With " +
             Utilities.CteLibraryList +
               "SELECT LAST_SOURCE_UPDATE_TIMESTAMP FROM QSYS2.SYSPARTITIONSTAT " +
               "INNER JOIN Libs " +
               "ON (TABLE_SCHEMA = Libs.Libraries) " +
-              "WHERE TABLE_NAME = '" + key.getSourceFile() + "' " +
-              "AND TABLE_PARTITION = '" + key.getSourceName() + "'" +
-              "AND SOURCE_TYPE = '" + key.getSourceType() + "'")) {
+              "WHERE TABLE_NAME = ? " +
+              "AND TABLE_PARTITION = ? " +
+              "AND SOURCE_TYPE = ?",
+            key.getSourceFile(), key.getSourceName(), key.getSourceType())) {
         if (!rs.next()) {
           if (verbose) logger.info("Could not get source member last change: " + key.getSourceName());
           key.setLastEdit(null);  // File not found
@@ -136,14 +483,14 @@ public class SourceDescriptor {
   }
 
   public void getSourceStreamFileLastChange(TargetKey key) throws SQLException {
-    try (Statement stmt = connection.createStatement();
-          ResultSet rs = stmt.executeQuery(
+    try (ResultSet rs = statements.query(
             "SELECT DATA_CHANGE_TIMESTAMP " + 
             "FROM TABLE (QSYS2.IFS_OBJECT_STATISTICS( " +
-                    "START_PATH_NAME => '" + key.getStreamFile() +  "', " +
+                    "START_PATH_NAME => ?, " +
                     "SUBTREE_DIRECTORIES => 'NO' " +
                 ") " +
-            ")")) {
+            ")",
+            key.getStreamFile())) {
         if (!rs.next()) {
             if (verbose) logger.info("Could not get source stream file last change: " + key.getStreamFile());
           key.setLastEdit(null);  // File not found
@@ -155,4 +502,9 @@ public class SourceDescriptor {
         return;
     }
   }
+
+  /* Frees the prepared lookups, the connection stays open */
+  public void close() {
+    statements.close();
+  }
 }
@@ -0,0 +1,22 @@
+package com.github.kraudy.compiler;
+
+/*
+ * Where the dependency scan reads stream file sources from.
+ * Paths are the target stream files, relative to the spec base directory unless absolute.
+ */
+public interface SourceProvider {
+
+  /* Shown in logs and used to count reads */
+  String getName();
+
+  /* Source text, null if this provider does not have the file */
+  String read(String streamFile) throws Exception;
+
+  /*
+   * Cheap change stamp of the file (e.g. size and modification time) without reading it.
+   * Null if this provider does not have the file or can not tell
+   */
+  default String stamp(String streamFile) throws Exception {
+    return null;
+  }
+}
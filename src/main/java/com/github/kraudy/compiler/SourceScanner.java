@@ -0,0 +1,630 @@
+package com.github.kraudy.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.kraudy.compiler.CompilationPattern.CompCmd;
+
+/*
+ * Single pass dependency scanner.
+ * The source is read line by line and split into tokens (words, quoted strings and punctuation)
+ * while skipping the comments of its dialect. Every token goes through one small state machine
+ * that feeds all the extractors at once, so the cost is linear in the source size and there is no
+ * regex backtracking.
+ * Fixed format RPG and DDS also get their column rules: sequence area, comment lines and the
+ * F and P specs.
+ */
+public class SourceScanner {
+
+  /* Bump when the extraction rules change, stored scans of older versions are then discarded */
+  public static final int VERSION = 3;
+
+  public enum Dialect { RPG, SQLRPG, CL, DDS, SQL }
+
+  private enum TokenType { WORD, STRING, PUNCT }
+
+  /* Keywords whose arguments are object names */
+  private static final Set<String> RPG_ARG_KEYWORDS = new HashSet<>(Arrays.asList("BNDDIR", "DTAARA", "EXTPGM", "EXTNAME", "EXTPROC"));
+  private static final Set<String> DDS_ARG_KEYWORDS = new HashSet<>(Arrays.asList("REF", "PFILE", "REFFLD"));
+
+  /* SQL words that end a FROM list or can not be an alias */
+  private static final Set<String> SQL_RESERVED = new HashSet<>(Arrays.asList(
+    "WHERE", "ON", "JOIN", "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "EXCEPTION", "GROUP", "ORDER",
+    "HAVING", "UNION", "EXCEPT", "INTERSECT", "FETCH", "LIMIT", "OFFSET", "FOR", "WITH", "SET", "VALUES",
+    "SELECT", "USING", "WHEN", "INTO", "FROM", "WINDOW", "NATURAL", "LATERAL", "RETURN", "END", "TABLE", "OF"
+  ));
+
+  private static final int MAX_NAME_LENGTH = 10;
+
+  /* SQL INCLUDE of these is the precompiler's own area, not a source */
+  private static final Set<String> SQL_INCLUDE_AREAS = new HashSet<>(Arrays.asList("SQLCA", "SQLDA"));
+
+  private final Dialect dialect;
+  private final ScanResult result = new ScanResult();
+
+  /* Line state */
+  private boolean free = false;          // **FREE source, no fixed columns
+  private boolean blockComment = false;  // Inside /* */
+
+  /* Token state */
+  private TokenType prevType;
+  private String prev = "";
+  private String prev2 = "";
+
+  private String argKeyword;             // Keyword whose arguments are being collected
+  private int argDepth;
+  private final List<String> args = new ArrayList<>();
+
+  private String procedure;              // DCL-PROC name until the end of its header
+
+  private String prototype;              // DCL-PR or fixed D PR name until the end of its header
+  private String prototypeExtProc;       // External name given by EXTPROC
+  private boolean prototypeBound = true; // False for EXTPGM and procedure pointer prototypes
+  private boolean prototypeFixed;        // D spec prototype, ended by the next spec instead of a semicolon
+  private final Map<String, String> prototypes = new LinkedHashMap<>(); // Prototype name -> external procedure
+  private final Set<String> called = new HashSet<>();  // Names called with CALLP or followed by a parenthesis
+
+  private boolean clInclude = false;     // Parameters of a CL INCLUDE command
+  private boolean clContinued = false;   // Last CL line ended with + or -, the command goes on
+  private boolean execSql = false;       // Inside EXEC SQL of an RPG source
+  private boolean expectTable = false;   // Next name is a table
+  private boolean tableList = false;     // After a FROM/JOIN table, commas add tables
+  private boolean aliasAllowed = false;  // Next plain word is the alias of the last table
+
+  private SourceScanner(Dialect dialect) {
+    this.dialect = dialect;
+  }
+
+  /* Dialect of the sources a command compiles. Null if its sources are not scanned */
+  public static Dialect dialectOf(CompCmd command) {
+    switch (command) {
+      case CRTBNDRPG:
+      case CRTRPGMOD:
+      case CRTRPGPGM:
+        return Dialect.RPG;
+      case CRTSQLRPGI:
+        return Dialect.SQLRPG;
+      case CRTBNDCL:
+      case CRTCLPGM:
+      case CRTCLMOD:
+        return Dialect.CL;
+      case CRTPF:
+      case CRTLF:
+      case CRTDSPF:
+      case CRTPRTF:
+        return Dialect.DDS;
+      case RUNSQLSTM:
+        return Dialect.SQL;
+      default:
+        return null;
+    }
+  }
+
+  public static ScanResult scan(String source, Dialect dialect) {
+    SourceScanner scanner = new SourceScanner(dialect);
+    int start = 0;
+    int lineNumber = 0;
+    int length = source.length();
+    while (start < length) {
+      int end = source.indexOf('\n', start);
+      if (end < 0) end = length;
+      int lineEnd = (end > start && source.charAt(end - 1) == '\r') ? end - 1 : end;
+      scanner.scanLine(source.substring(start, lineEnd), ++lineNumber);
+      start = end + 1;
+    }
+    scanner.endPrototype();
+    scanner.procedureCalls();
+    return scanner.result;
+  }
+
+  private boolean isRpg() {
+    return dialect == Dialect.RPG || dialect == Dialect.SQLRPG;
+  }
+
+  private boolean sqlActive() {
+    return dialect == Dialect.SQL || execSql;
+  }
+
+  private void scanLine(String line, int lineNumber) {
+    int from = 0;
+
+    if (isRpg()) {
+      if (lineNumber == 1 && line.regionMatches(true, 0, "**FREE", 0, 6)) {
+        free = true;
+        return;
+      }
+      if (!free) {
+        /* Column 7 '*' is a comment line */
+        if (line.length() > 6 && line.charAt(6) == '*') return;
+        fixedSpec(line);
+        /* Columns 1-5 are the sequence area, C+ continues embedded sql */
+        from = Math.min(5, line.length());
+        if (line.length() > 6 && Character.toUpperCase(line.charAt(5)) == 'C' && line.charAt(6) == '+') from = 7;
+      }
+      if (copyDirective(line, from)) return;
+    }
+
+    if (dialect == Dialect.CL) {
+      /* A command ends with its line unless continued */
+      if (!clContinued) clInclude = false;
+      String trimmed = line.trim();
+      clContinued = trimmed.endsWith("+") || trimmed.endsWith("-");
+    }
+
+    if (dialect == Dialect.DDS) {
+      if (line.length() > 6 && line.charAt(6) == '*') return;
+      from = Math.min(5, line.length());
+    }
+
+    tokenize(line, from);
+  }
+
+  /*
+   * /COPY and /INCLUDE: a quoted or path like argument is a stream file, FILE,MEMBER or a plain
+   * name is a member (the library is dropped, members are found by file and name).
+   */
+  private boolean copyDirective(String line, int from) {
+    String text = line.substring(from).trim();
+    String upper = text.toUpperCase();
+    String directive = upper.startsWith("/COPY") ? "/COPY" : upper.startsWith("/INCLUDE") ? "/INCLUDE" : null;
+    if (directive == null) return false;
+    if (text.length() > directive.length() && !Character.isWhitespace(text.charAt(directive.length()))) return false;
+
+    String arg = text.substring(directive.length()).trim();
+    if (arg.isEmpty()) return true;
+
+    char quote = arg.charAt(0);
+    if (quote == '\'' || quote == '"') {
+      int end = arg.indexOf(quote, 1);
+      addInclude(arg.substring(1, end < 0 ? arg.length() : end), true);
+      return true;
+    }
+
+    int end = 0;
+    while (end < arg.length() && !Character.isWhitespace(arg.charAt(end))) end++;
+    addInclude(arg.substring(0, end), false);
+    return true;
+  }
+
+  /* Stream files are kept as written, members as FILE,MEMBER or MEMBER in upper case */
+  private void addInclude(String raw, boolean streamFile) {
+    String include = raw.trim();
+    if (include.isEmpty()) return;
+
+    if (!streamFile) {
+      String upper = include.toUpperCase();
+      int comma = upper.indexOf(',');
+      if (comma >= 0) {
+        String file = upper.substring(0, comma);
+        file = file.substring(file.lastIndexOf('/') + 1);
+        result.getIncludes().add(file + "," + upper.substring(comma + 1));
+        return;
+      }
+      if (isSystemName(upper)) {
+        result.getIncludes().add(upper);
+        return;
+      }
+    }
+    result.getIncludes().add(include);
+  }
+
+  private static boolean isSystemName(String name) {
+    if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) return false;
+    for (int i = 0; i < name.length(); i++) {
+      if (!isNameChar(name.charAt(i))) return false;
+    }
+    return true;
+  }
+
+  /* Fixed format F spec (file in columns 7-16), D spec prototype and P spec with EXPORT */
+  private void fixedSpec(String line) {
+    if (line.length() < 7) return;
+    char spec = Character.toUpperCase(line.charAt(5));
+
+    /* A fixed prototype header goes on over D lines without name and declaration type */
+    if (prototype != null && prototypeFixed && !(spec == 'D' && blank(line, 6, 25))) endPrototype();
+
+    if (spec == 'D') {
+      fixedPrototype(line);
+      return;
+    }
+    if (spec != 'F' && spec != 'P') return;
+
+    int i = 6;
+    while (i < line.length() && line.charAt(i) == ' ') i++;
+    int nameStart = i;
+    while (i < line.length() && isNameChar(line.charAt(i))) i++;
+    String name = line.substring(nameStart, i).toUpperCase();
+    if (name.isEmpty() || name.length() > MAX_NAME_LENGTH && spec == 'F') return;
+
+    if (spec == 'F') {
+      result.getFiles().add(name);
+      return;
+    }
+
+    /* P name B ... EXPORT */
+    while (i < line.length() && line.charAt(i) == ' ') i++;
+    if (i >= line.length() || Character.toUpperCase(line.charAt(i)) != 'B') return;
+    if (i + 1 < line.length() && line.charAt(i + 1) != ' ') return;
+    if (containsWord(line.toUpperCase(), "EXPORT", i + 1)) result.getExports().add(name);
+  }
+
+  /* D name (columns 7-21) PR (columns 24-25) */
+  private void fixedPrototype(String line) {
+    if (line.length() < 25 || !line.substring(23, 25).equalsIgnoreCase("PR")) return;
+    String name = line.substring(6, 21).trim().toUpperCase();
+    if (name.isEmpty() || name.endsWith("...")) return;  // Long names continued on the next line are not followed
+    startPrototype(name);
+    prototypeFixed = true;
+  }
+
+  private static boolean blank(String line, int from, int to) {
+    for (int i = from; i < Math.min(to, line.length()); i++) {
+      if (line.charAt(i) != ' ') return false;
+    }
+    return true;
+  }
+
+  private void startPrototype(String name) {
+    prototype = name;
+    prototypeExtProc = null;
+    prototypeBound = true;
+    prototypeFixed = false;
+  }
+
+  /* A bound procedure prototype calls EXTPROC name or, without it, its own name */
+  private void endPrototype() {
+    if (prototype != null && prototypeBound) {
+      prototypes.put(prototype, prototypeExtProc != null ? prototypeExtProc : prototype);
+    }
+    prototype = null;
+  }
+
+  /*
+   * External procedures of the prototypes that are called. Prototypes and calls left over are kept,
+   * the other half may be in an included source.
+   */
+  private void procedureCalls() {
+    for (Map.Entry<String, String> entry : prototypes.entrySet()) {
+      if (called.contains(entry.getKey())) result.getProcedureCalls().add(entry.getValue());
+    }
+    result.getPrototypes().putAll(prototypes);
+    for (String name : called) {
+      if (!prototypes.containsKey(name) && !name.startsWith("%")) result.getUnresolvedCalls().add(name);
+    }
+  }
+
+  private void tokenize(String line, int from) {
+    int i = from;
+    int n = line.length();
+    while (i < n) {
+      if (blockComment) {
+        int end = line.indexOf("*/", i);
+        if (end < 0) return;
+        blockComment = false;
+        i = end + 2;
+        continue;
+      }
+
+      char c = line.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+        continue;
+      }
+
+      char next = (i + 1 < n) ? line.charAt(i + 1) : 0;
+      if (c == '/' && next == '*' && blockComments()) {
+        blockComment = true;
+        i += 2;
+        continue;
+      }
+      if (c == '/' && next == '/' && isRpg()) return;        // RPG free comment
+      if (c == '-' && next == '-' && sqlActive()) return;    // SQL comment
+
+      if (c == '\'' || c == '"') {
+        StringBuilder sb = new StringBuilder();
+        i++;
+        while (i < n) {
+          char s = line.charAt(i);
+          if (s == c) {
+            if (i + 1 < n && line.charAt(i + 1) == c) {  // Doubled quote
+              sb.append(c);
+              i += 2;
+              continue;
+            }
+            i++;
+            break;
+          }
+          sb.append(s);
+          i++;
+        }
+        token(TokenType.STRING, sb.toString());
+        continue;
+      }
+
+      /* CL continuation */
+      if (dialect == Dialect.CL && (c == '+' || c == '-') && (next == 0 || Character.isWhitespace(next))) {
+        i++;
+        continue;
+      }
+
+      if (isWordChar(c)) {
+        int start = i;
+        while (i < n && isWordChar(line.charAt(i))) {
+          if (line.charAt(i) == '/' && i + 1 < n && line.charAt(i + 1) == '*' && blockComments()) break;
+          i++;
+        }
+        token(TokenType.WORD, line.substring(start, i).toUpperCase());
+        continue;
+      }
+
+      token(TokenType.PUNCT, String.valueOf(c));
+      i++;
+    }
+  }
+
+  private boolean blockComments() {
+    return dialect == Dialect.CL || sqlActive();
+  }
+
+  private void token(TokenType type, String text) {
+    if (argKeyword != null) {
+      collectArg(type, text);
+    } else if (type == TokenType.PUNCT && text.equals("(") && prevType == TokenType.WORD && isArgKeyword(prev, prev2)) {
+      argKeyword = prev;
+      argDepth = 1;
+      args.clear();
+    } else {
+      if (isRpg()) rpgToken(type, text);
+      if (dialect == Dialect.CL) clToken(type, text);
+      if (sqlActive()) sqlToken(type, text);
+    }
+
+    prev2 = prev;
+    prevType = type;
+    prev = text;
+  }
+
+  private boolean isArgKeyword(String word, String before) {
+    if (isRpg()) return RPG_ARG_KEYWORDS.contains(word);
+    if (dialect == Dialect.DDS) return DDS_ARG_KEYWORDS.contains(word);
+    if (dialect == Dialect.CL) {
+      if (word.equals("SRCMBR") || word.equals("SRCSTMF")) return clInclude;
+      return word.equals("PGM") && before.equals("CALL");
+    }
+    return false;
+  }
+
+  /* Arguments at the first parenthesis level, until the keyword is closed */
+  private void collectArg(TokenType type, String text) {
+    /* Unbalanced parenthesis, give up on the keyword at the end of the statement */
+    if (type == TokenType.PUNCT && text.equals(";")) {
+      argKeyword = null;
+      return;
+    }
+    if (type == TokenType.PUNCT && text.equals("(")) {
+      argDepth++;
+      return;
+    }
+    if (type == TokenType.PUNCT && text.equals(")")) {
+      if (--argDepth > 0) return;
+      keywordArgs(argKeyword, args);
+      argKeyword = null;
+      return;
+    }
+    if (argDepth == 1 && type != TokenType.PUNCT) args.add(type == TokenType.STRING ? "'" + text : text);
+  }
+
+  /* String arguments are marked with a leading quote */
+  private void keywordArgs(String keyword, List<String> args) {
+    switch (keyword) {
+      case "BNDDIR":
+        for (String arg : args) if (isString(arg)) addName(result.getBndDirs(), arg.substring(1));
+        break;
+      case "DTAARA":
+        for (String arg : args) if (isString(arg)) addName(result.getDtaAras(), arg.substring(1));
+        break;
+      case "EXTPROC":
+        if (prototype == null) break;
+        if (args.isEmpty()) break;
+        if (isString(args.get(0))) {
+          prototypeExtProc = args.get(0).substring(1).toUpperCase();
+        } else if (args.get(0).equals("*DCLCASE")) {
+          prototypeExtProc = prototype;
+        } else if (!args.get(0).startsWith("*")) {
+          prototypeBound = false;   // Procedure pointer, resolved at run time
+        }
+        break;
+      case "EXTPGM":
+        if (prototype != null) prototypeBound = false;
+        for (String arg : args) {
+          if (isString(arg)) {
+            addName(result.getExtPgms(), arg.substring(1));
+            break;
+          }
+        }
+        break;
+      case "EXTNAME":
+        if (!args.isEmpty()) addName(result.getExtNames(), unquote(args.get(0)));
+        break;
+      case "REF":
+        if (!args.isEmpty()) addName(result.getRefFiles(), unquote(args.get(0)));
+        break;
+      case "PFILE":
+        for (String arg : args) addName(result.getPfiles(), unquote(arg));
+        break;
+      case "REFFLD":
+        /* REFFLD(FIELD [LIB/]FILE) */
+        if (args.size() > 1) addName(result.getRefFldFiles(), unquote(args.get(1)));
+        break;
+      case "PGM":
+        if (!args.isEmpty()) addName(result.getCalls(), unquote(args.get(0)));
+        break;
+      case "SRCMBR":
+        if (!args.isEmpty()) addInclude(unquote(args.get(0)), false);
+        break;
+      case "SRCSTMF":
+        if (!args.isEmpty()) addInclude(unquote(args.get(0)), true);
+        break;
+    }
+  }
+
+  private void rpgToken(TokenType type, String text) {
+    /* Free format file */
+    if (type == TokenType.WORD && prevType == TokenType.WORD && prev.equals("DCL-F")) {
+      addName(result.getFiles(), text);
+    }
+
+    /* Free format procedure, exported if EXPORT shows up before the end of its header */
+    if (type == TokenType.WORD && prevType == TokenType.WORD && prev.equals("DCL-PROC")) {
+      procedure = text;
+    } else if (procedure != null && type == TokenType.WORD && text.equals("EXPORT")) {
+      result.getExports().add(procedure);
+      procedure = null;
+    }
+
+    /* Free format prototype, its header ends at the first semicolon */
+    if (type == TokenType.WORD && prevType == TokenType.WORD && prev.equals("DCL-PR")) {
+      startPrototype(text);
+    }
+
+    /* Calls: CALLP NAME, NAME(...) */
+    if (type == TokenType.WORD && prevType == TokenType.WORD && prev.equals("CALLP")) {
+      called.add(text);
+    } else if (type == TokenType.PUNCT && text.equals("(") && prevType == TokenType.WORD) {
+      called.add(prev);
+    }
+
+    if (type == TokenType.PUNCT && text.equals(";")) {
+      procedure = null;
+      endPrototype();
+      if (execSql) endSql();
+    }
+
+    if (dialect != Dialect.SQLRPG || type != TokenType.WORD) return;
+
+    /* EXEC SQL, C/EXEC SQL in fixed format */
+    if (text.equals("SQL") && (prev.equals("EXEC") || prev.endsWith("/EXEC"))) {
+      execSql = true;
+    } else if (text.endsWith("END-EXEC")) {
+      endSql();
+    }
+  }
+
+  private void endSql() {
+    execSql = false;
+    expectTable = false;
+    tableList = false;
+    aliasAllowed = false;
+  }
+
+  private void clToken(TokenType type, String text) {
+    /* INCLUDE SRCMBR(NAME) SRCFILE(LIB/FILE) or INCLUDE SRCSTMF('path') */
+    if (type == TokenType.WORD && text.equals("INCLUDE")) clInclude = true;
+
+    /* CALL NAME, CALL PGM(NAME) is collected as keyword arguments */
+    if (!prev.equals("CALL") || prevType != TokenType.WORD) return;
+    if (type == TokenType.STRING || (type == TokenType.WORD && !text.equals("PGM"))) {
+      addName(result.getCalls(), text);
+    }
+  }
+
+  private void sqlToken(TokenType type, String text) {
+    boolean name = type == TokenType.STRING || type == TokenType.WORD;
+
+    /* EXEC SQL INCLUDE member or 'stream file' */
+    if (execSql && name && prevType == TokenType.WORD && prev.equals("INCLUDE") && prev2.equals("SQL")) {
+      if (type == TokenType.STRING) {
+        addInclude(text, true);
+      } else if (!SQL_INCLUDE_AREAS.contains(text)) {
+        addInclude(text, false);
+      }
+      return;
+    }
+
+    if (expectTable) {
+      expectTable = false;
+      if (name && !(type == TokenType.WORD && SQL_RESERVED.contains(text))) {
+        addName(result.getSqlTables(), text);
+        aliasAllowed = tableList;
+        return;
+      }
+      tableList = false;
+    }
+
+    if (type == TokenType.WORD && (text.equals("FROM") || text.equals("JOIN"))) {
+      expectTable = true;
+      tableList = true;
+      return;
+    }
+    if (type == TokenType.WORD && (text.equals("INTO") || text.equals("UPDATE"))) {
+      expectTable = true;
+      tableList = false;
+      return;
+    }
+
+    if (!tableList) return;
+
+    /* FROM A X, B AS Y, C */
+    if (type == TokenType.PUNCT && text.equals(",")) {
+      expectTable = true;
+      aliasAllowed = false;
+      return;
+    }
+    if (type == TokenType.WORD && text.equals("AS")) return;
+    if (aliasAllowed && type == TokenType.WORD && !SQL_RESERVED.contains(text)) {
+      aliasAllowed = false;
+      return;
+    }
+    tableList = false;
+    aliasAllowed = false;
+  }
+
+  /* Adds the object part of a possibly qualified name, if it is a valid system name */
+  private static void addName(Set<String> names, String raw) {
+    String name = raw.trim().toUpperCase();
+    int qualifier = Math.max(name.lastIndexOf('/'), name.lastIndexOf('.'));
+    if (qualifier >= 0) name = name.substring(qualifier + 1);
+    if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) return;
+    for (int i = 0; i < name.length(); i++) {
+      if (!isNameChar(name.charAt(i))) return;
+    }
+    names.add(name);
+  }
+
+  private static boolean isString(String arg) {
+    return arg.startsWith("'");
+  }
+
+  private static String unquote(String arg) {
+    return isString(arg) ? arg.substring(1) : arg;
+  }
+
+  private static boolean isNameChar(char c) {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') ||
+        c == '$' || c == '#' || c == '@' || c == '_';
+  }
+
+  private static boolean isWordChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '$' || c == '#' || c == '@' || c == '_' ||
+        c == '.' || c == '/' || c == '-' || c == '*' || c == '&' || c == '%';
+  }
+
+  /* Word match with boundaries, from the given position */
+  private static boolean containsWord(String text, String word, int from) {
+    int i = text.indexOf(word, from);
+    while (i >= 0) {
+      boolean startOk = i == 0 || !isNameChar(text.charAt(i - 1));
+      int end = i + word.length();
+      boolean endOk = end >= text.length() || !isNameChar(text.charAt(end));
+      if (startOk && endOk) return true;
+      i = text.indexOf(word, i + 1);
+    }
+    return false;
+  }
+}
@@ -4,9 +4,11 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,9 +43,13 @@ public class TargetKey {
 
   private boolean isOpm;               // Is this key opm?
   private boolean objectExists = false;        // Does the compiled object exists?
+  private volatile boolean invalidated = false; // A child was rebuilt in this run
 
   private final List<TargetKey> childs = new ArrayList<>(); // List of child targets
   private final List<TargetKey> fathers = new ArrayList<>(); // List of fathers targets
+  /* Identity sets for O(1) dedup, see hashCode */
+  private final Set<TargetKey> childsSet = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final Set<TargetKey> fathersSet = Collections.newSetFromMap(new IdentityHashMap<>());
 
   public TargetKey(String key) {
     String[] parts = key.split("\\.");
@@ -198,8 +204,19 @@ public class TargetKey {
     return this.objectType == ObjectType.SRVPGM;
   }
 
+  /* A child was rebuilt, this target must be rebuilt too whatever its own sources say */
+  public void invalidate() {
+    this.invalidated = true;
+  }
+
+  public boolean isInvalidated() {
+    return this.invalidated;
+  }
+
   /* Used for diff build */
   public boolean needsRebuild() {
+    if (this.invalidated) return true;
+
     /* If no timestamp, rebuild */
     if (this.lastSourceEdit == null || this.lastBuild == null) {
         return true;
@@ -208,6 +225,7 @@ public class TargetKey {
   }
 
   public String getTimestmaps() {
+    if (this.invalidated) return " (a child was rebuilt)";
     if (this.lastSourceEdit == null) return " (source has no previous edit)";
     if (this.lastBuild == null) return " (object has no previous edit)";
 
@@ -425,14 +443,14 @@ public class TargetKey {
   public void addChild(TargetKey child) {
     if (child == null) return; /* Prevents nulls */
     if (child.equals(this)) return; /* Prevents cycles */
-    if (childs.contains(child)) return; /* Prevents cylces */
+    if (!childsSet.add(child)) return; /* Prevents cylces */
     childs.add(child);
   }
 
   public void addFather(TargetKey father) {
     if (father == null) return; /* Prevents nulls */
     if (father.equals(this)) return; /* Prevents cycles */
-    if (fathers.contains(father)) return; /* Prevents cycles */
+    if (!fathersSet.add(father)) return; /* Prevents cycles */
     fathers.add(father);
   }
 
@@ -522,6 +540,11 @@ public class TargetKey {
     return this.asString().toUpperCase().equals(targetKey.asString().toUpperCase());
   }
 
+  /*
+   * Built from the library, which is *CURLIB until resolveCurLib sets the real one during the build.
+   * A key put in a hash map before that is not found after, so maps and sets of targets that live
+   * across the build (graph, scheduler, catalog index, specs by target) are identity based.
+   */
   @Override
   public int hashCode() {
     return Objects.hash(this.asString().toUpperCase());
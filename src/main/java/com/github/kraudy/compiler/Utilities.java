@@ -6,8 +6,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,6 +30,8 @@ import com.github.kraudy.compiler.CompilationPattern.ObjectType;
 import com.github.kraudy.compiler.CompilationPattern.ParamCmd;
 import com.github.kraudy.compiler.CompilationPattern.SysCmd;
 import com.github.kraudy.compiler.CompilationPattern.ValCmd;
+import com.ibm.as400.access.AS400;
+import com.ibm.as400.access.AS400JDBCDataSource;
 import com.ibm.as400.access.IFSFile;
 import com.ibm.as400.access.IFSFileInputStream;
 
@@ -614,4 +621,91 @@ public class Utilities {
             .map(Enum::name)
             .toList());
   }
-}
\ No newline at end of file
+  /* 'A', 'B', 'C' for sql IN predicates */
+  public static String sqlInList(Collection<String> values) {
+    StringBuilder sb = new StringBuilder();
+    for (String value : values) {
+      if (sb.length() > 0) sb.append(", ");
+      sb.append("'").append(value.replace("'", "''")).append("'");
+    }
+    return sb.toString();
+  }
+
+  /* ('A'), ('B'), ('C') for sql VALUES rows of one column */
+  public static String sqlValuesList(Collection<String> values) {
+    StringBuilder sb = new StringBuilder();
+    for (String value : values) {
+      if (sb.length() > 0) sb.append(", ");
+      sb.append("('").append(value.replace("'", "''")).append("')");
+    }
+    return sb.toString();
+  }
+
+  /* Splits a list in consecutive sublists of at most size elements */
+  public static <T> List<List<T>> batches(List<T> items, int size) {
+    List<List<T>> batches = new ArrayList<>();
+    for (int i = 0; i < items.size(); i += size) {
+      batches.add(items.subList(i, Math.min(i + size, items.size())));
+    }
+    return batches;
+  }
+
+  /* 
+   * Executor for blocking I/O (IFS reads) with at most threads running at once.
+   * Uses virtual threads when the JVM has them (Java 21+), platform daemon threads otherwise.
+   */
+  public static ExecutorService newIoExecutor(int threads, String namePrefix) {
+    ThreadFactory factory = virtualThreadFactory(namePrefix);
+    if (factory == null) {
+      AtomicInteger count = new AtomicInteger();
+      factory = r -> {
+        Thread thread = new Thread(r, namePrefix + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      };
+    }
+    return Executors.newFixedThreadPool(threads, factory);
+  }
+
+  public static boolean hasVirtualThreads() {
+    return virtualThreadFactory("probe-") != null;
+  }
+
+  /* Thread.ofVirtual().name(prefix, 1).factory() through reflection, the build targets Java 8 */
+  private static ThreadFactory virtualThreadFactory(String namePrefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;  // Not available or still a preview feature
+    }
+  }
+
+  /*
+   * Data source of the build jobs. With an SQL package ([LIB/]NAME, QGPL if no library) the
+   * prepared statements are stored on the server in that package, so later runs and other jobs
+   * reuse their access plans instead of preparing them again. Null keeps plain dynamic SQL.
+   */
+  public static AS400JDBCDataSource newDataSource(AS400 system, String sqlPackage) {
+    AS400JDBCDataSource dataSource = new AS400JDBCDataSource(system);
+    if (sqlPackage == null) return dataSource;
+
+    int slash = sqlPackage.indexOf('/');
+    dataSource.setExtendedDynamic(true);
+    dataSource.setPackage(slash < 0 ? sqlPackage : sqlPackage.substring(slash + 1));
+    dataSource.setPackageLibrary(slash < 0 ? "QGPL" : sqlPackage.substring(0, slash));
+    dataSource.setPackageCache(true);   // Package read once per connection, not on every prepare
+    return dataSource;
+  }
+
+  /* Only warnings and errors of the compiler are logged from now on */
+  public static void quietLogs() {
+    Logger logger = LoggerFactory.getLogger("com.github.kraudy.compiler");
+    if (logger instanceof ch.qos.logback.classic.Logger) {
+      ((ch.qos.logback.classic.Logger) logger).setLevel(ch.qos.logback.classic.Level.WARN);
+    }
+  }
+
+}
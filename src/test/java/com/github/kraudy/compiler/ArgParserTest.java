@@ -7,6 +7,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Arrays;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -142,6 +144,94 @@ public class ArgParserTest {
     assertTrue(parser.isDryRun());  
   }
 
+  @Test
+  void testJobsDefault() {
+    String filePath = this.tempYaml.toString();
+    
+    String[] args = {"-f", filePath};
+    ArgParser parser = new ArgParser(args);
+
+    assertEquals(1, parser.getJobs());
+  }
+
+  @Test
+  void testJobsOption() {
+    String filePath = this.tempYaml.toString();
+    
+    String[] args = {"-f", filePath, "-j", "4", "--diff"};
+    ArgParser parser = new ArgParser(args);
+
+    assertEquals(4, parser.getJobs());
+    assertTrue(parser.isDiff());
+
+    assertEquals(8, new ArgParser(new String[]{"-f", filePath, "--jobs", "8"}).getJobs());
+  }
+
+  @Test
+  void testLocalClockOption() {
+    String filePath = this.tempYaml.toString();
+
+    assertFalse(new ArgParser(new String[]{"-f", filePath}).isLocalClock());
+    assertTrue(new ArgParser(new String[]{"-f", filePath, "--local-clock"}).isLocalClock());
+  }
+
+  @Test
+  void testMigrateAheadOption() {
+    String filePath = this.tempYaml.toString();
+
+    assertEquals(0, new ArgParser(new String[]{"-f", filePath}).getMigrateAhead());
+    assertEquals(3, new ArgParser(new String[]{"-f", filePath, "--migrate-ahead", "3"}).getMigrateAhead());
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--migrate-ahead", "x"}).getMigrateAhead());
+  }
+
+  @Test
+  void testScanThreadsOption() {
+    String filePath = this.tempYaml.toString();
+
+    assertEquals(0, new ArgParser(new String[]{"-f", filePath}).getScanThreads());
+    assertEquals(32, new ArgParser(new String[]{"-f", filePath, "--scan-threads", "32"}).getScanThreads());
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--scan-threads", "0"}).getScanThreads());
+  }
+
+  @Test
+  void testImpactOption() {
+    String filePath = this.tempYaml.toString();
+
+    assertNull(new ArgParser(new String[]{"-f", filePath}).getImpact());
+    ArgParser parser = new ArgParser(new String[]{"-f", filePath, "--impact", "qrpglesrc/a.rpgle, mylib.b.pgm.rpgle", "--json"});
+    assertEquals(Arrays.asList("qrpglesrc/a.rpgle", "mylib.b.pgm.rpgle"), parser.getImpact());
+    assertTrue(parser.isJson());
+  }
+
+  @Test
+  void testSqlPackageOption() {
+    String filePath = this.tempYaml.toString();
+
+    assertNull(new ArgParser(new String[]{"-f", filePath}).getSqlPackage());
+    assertEquals("MCPKG", new ArgParser(new String[]{"-f", filePath, "--sql-package", "mcpkg"}).getSqlPackage());
+    assertEquals("MYLIB/MCPKG", new ArgParser(new String[]{"-f", filePath, "--sql-package", "MyLib/McPkg"}).getSqlPackage());
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--sql-package", "MY LIB/PKG"}).getSqlPackage());
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--sql-package", "A/B/C"}).getSqlPackage());
+  }
+
+  @Test
+  void testExecBackendOption() {
+    String filePath = this.tempYaml.toString();
+
+    assertEquals("jdbc", new ArgParser(new String[]{"-f", filePath}).getExecBackend());
+    assertEquals("cmdcall", new ArgParser(new String[]{"-f", filePath, "--exec-backend", "CmdCall"}).getExecBackend());
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--exec-backend", "qsh"}).getExecBackend());
+  }
+
+  @Test
+  void testInvalidJobsThrowsException() {
+    String filePath = this.tempYaml.toString();
+
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--jobs", "0"}).getJobs());
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--jobs", "many"}).getJobs());
+    assertThrows(IllegalArgumentException.class, () -> new ArgParser(new String[]{"-f", filePath, "--jobs"}));
+  }
+
   @Test
   void testInvalidOptionThrowsException() {
     String filePath = this.tempYaml.toString();
@@ -0,0 +1,108 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BuildSchedulerTest {
+
+  /* Jobs without connection, the builder under test never touches the server */
+  private List<BuildJob> jobs(int count) {
+    List<BuildJob> jobs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      jobs.add(new BuildJob(i, null, null, new CatalogIndex(), true, false, false, true));
+    }
+    return jobs;
+  }
+
+  private void link(TargetKey father, TargetKey child) {
+    father.addChild(child);
+    child.addFather(father);
+  }
+
+  @Test
+  void test_Single_Job_Keeps_Spec_Order() throws Exception {
+    TargetKey file = new TargetKey("MYLIB.CUSTOMER.PF.DDS");
+    TargetKey module = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    link(module, file);
+    link(pgm, module);
+
+    List<String> built = Collections.synchronizedList(new ArrayList<>());
+    new BuildScheduler(jobs(1), false, false).run(List.of(file, module, pgm), (key, job) -> built.add(key.getObjectName()));
+
+    assertEquals(List.of("CUSTOMER", "CUSTMOD", "CUSTPGM"), built);
+  }
+
+  @Test
+  void test_Childs_Are_Built_Before_Fathers() throws Exception {
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    TargetKey modA = new TargetKey("MYLIB.MODA.MODULE.RPGLE");
+    TargetKey modB = new TargetKey("MYLIB.MODB.MODULE.RPGLE");
+    link(pgm, modA);
+    link(pgm, modB);
+
+    List<String> built = Collections.synchronizedList(new ArrayList<>());
+    /* Father listed first on purpose */
+    new BuildScheduler(jobs(3), false, false).run(List.of(pgm, modA, modB), (key, job) -> built.add(key.getObjectName()));
+
+    assertEquals(3, built.size());
+    assertEquals("CUSTPGM", built.get(2), "Father must be built after its childs");
+  }
+
+  @Test
+  void test_Independent_Targets_Overlap() throws Exception {
+    TargetKey modA = new TargetKey("MYLIB.MODA.MODULE.RPGLE");
+    TargetKey modB = new TargetKey("MYLIB.MODB.MODULE.RPGLE");
+
+    /* Both builds must be running at the same time to release the latch */
+    CountDownLatch bothRunning = new CountDownLatch(2);
+    ConcurrentHashMap<String, String> jobPerTarget = new ConcurrentHashMap<>();
+
+    new BuildScheduler(jobs(2), false, false).run(List.of(modA, modB), (key, job) -> {
+      jobPerTarget.put(key.getObjectName(), job.getName());
+      bothRunning.countDown();
+      assertTrue(bothRunning.await(5, TimeUnit.SECONDS), "Targets were not built in parallel");
+    });
+
+    assertNotEquals(jobPerTarget.get("MODA"), jobPerTarget.get("MODB"));
+  }
+
+  @Test
+  void test_Failure_Stops_Dispatching() {
+    TargetKey module = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    link(pgm, module);
+
+    List<String> built = Collections.synchronizedList(new ArrayList<>());
+    CompilerException e = assertThrows(CompilerException.class, () ->
+      new BuildScheduler(jobs(2), false, false).run(List.of(module, pgm), (key, job) -> {
+        if (key == module) throw new CompilerException("Module failed");
+        built.add(key.getObjectName());
+      }));
+
+    assertEquals("Module failed", e.getMessage());
+    assertTrue(built.isEmpty(), "Father of a failed target must not be built");
+  }
+
+  @Test
+  void test_Cycle_Is_Reported() {
+    TargetKey modA = new TargetKey("MYLIB.MODA.MODULE.RPGLE");
+    TargetKey modB = new TargetKey("MYLIB.MODB.MODULE.RPGLE");
+    link(modA, modB);
+    link(modB, modA);
+
+    CompilerException e = assertThrows(CompilerException.class, () ->
+      new BuildScheduler(jobs(2), false, false).run(List.of(modA, modB), (key, job) -> {}));
+
+    assertTrue(e.getMessage().contains("MODA"));
+    assertTrue(e.getMessage().contains("MODB"));
+  }
+}
@@ -0,0 +1,202 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.kraudy.compiler.CompilationPattern.ParamCmd;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class BuildStateTest {
+  private Path baseDir;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    this.baseDir = Files.createTempDirectory("mc-state");
+    Files.createDirectories(baseDir.resolve("QRPGLESRC"));
+    write("QRPGLESRC/CUSTMOD.RPGLE", "dcl-proc getCustomer export;\nend-proc;\n");
+    write("QRPGLESRC/CUSTPGM.RPGLE", "dcl-pr getCustomer end-pr;\n*inlr = *on;\n");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(baseDir)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  private void write(String relativePath, String content) throws IOException {
+    Files.write(baseDir.resolve(relativePath), content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /* Fresh spec, as read from the yaml on every run */
+  private BuildSpec newSpec(String pgmText) {
+    BuildSpec spec = new BuildSpec();
+    spec.setBaseDirectory(baseDir.toString());
+
+    TargetKey module = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    BuildSpec.TargetSpec moduleSpec = new BuildSpec.TargetSpec();
+    moduleSpec.params.put(ParamCmd.SRCSTMF, "QRPGLESRC/CUSTMOD.RPGLE");
+
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    BuildSpec.TargetSpec pgmSpec = new BuildSpec.TargetSpec();
+    pgmSpec.params.put(ParamCmd.SRCSTMF, "QRPGLESRC/CUSTPGM.RPGLE");
+    pgmSpec.params.put(ParamCmd.TEXT, pgmText);
+
+    pgm.addChild(module);
+    module.addFather(pgm);
+
+    spec.targets.put(module, moduleSpec);
+    spec.targets.put(pgm, pgmSpec);
+    spec.setTargetsList(spec.targets.keySet());
+    return spec;
+  }
+
+  private BuildState newState(BuildSpec spec) {
+    BuildState state = new BuildState(null, BuildState.stateFileOf(spec), false, false);
+    state.load();
+    state.prepare(spec);
+    return state;
+  }
+
+  /* Builds (records) every target whose decision is not UP_TO_DATE. Returns how many were built */
+  private int run(BuildSpec spec) {
+    BuildState state = newState(spec);
+    int built = 0;
+    for (TargetKey key : spec.targets.keySet()) {
+      if (state.check(key) == BuildState.Decision.UP_TO_DATE) continue;
+      state.record(key);
+      built++;
+    }
+    state.save();
+    return built;
+  }
+
+  @Test
+  void test_No_State_Is_Unknown() {
+    BuildSpec spec = newSpec("Customer program");
+    BuildState state = newState(spec);
+
+    for (TargetKey key : spec.targets.keySet()) {
+      assertEquals(BuildState.Decision.UNKNOWN, state.check(key));
+    }
+  }
+
+  @Test
+  void test_Unchanged_Targets_Are_Up_To_Date() {
+    assertEquals(2, run(newSpec("Customer program")));
+    assertTrue(baseDir.resolve(BuildState.STATE_FILE).toFile().exists());
+
+    BuildSpec spec = newSpec("Customer program");
+    BuildState state = newState(spec);
+    for (TargetKey key : spec.targets.keySet()) {
+      assertEquals(BuildState.Decision.UP_TO_DATE, state.check(key), key.asString());
+    }
+  }
+
+  @Test
+  void test_Child_Source_Change_Rebuilds_Father() throws IOException {
+    run(newSpec("Customer program"));
+
+    write("QRPGLESRC/CUSTMOD.RPGLE", "dcl-proc getCustomer export;\n  return;\nend-proc;\n");
+
+    BuildSpec spec = newSpec("Customer program");
+    BuildState state = newState(spec);
+    TargetKey module = spec.getTargetsList().get(0);
+    TargetKey pgm = spec.getTargetsList().get(1);
+
+    assertEquals(BuildState.Decision.CHANGED, state.check(module));
+    state.record(module);
+    assertEquals(BuildState.Decision.CHANGED, state.check(pgm), "Father must follow its child");
+  }
+
+  @Test
+  void test_Param_Change_Is_Detected() {
+    run(newSpec("Customer program"));
+
+    BuildSpec spec = newSpec("Customer program v2");
+    BuildState state = newState(spec);
+
+    assertEquals(BuildState.Decision.UP_TO_DATE, state.check(spec.getTargetsList().get(0)));
+    assertEquals(BuildState.Decision.CHANGED, state.check(spec.getTargetsList().get(1)));
+  }
+
+  @Test
+  void test_Touch_Without_Content_Change_Is_Up_To_Date() throws IOException {
+    run(newSpec("Customer program"));
+
+    baseDir.resolve("QRPGLESRC/CUSTMOD.RPGLE").toFile().setLastModified(System.currentTimeMillis() + 60_000);
+
+    assertEquals(0, run(newSpec("Customer program")));
+  }
+
+  @Test
+  void test_Build_Duration_Is_Kept_Until_Measured_Again() {
+    BuildSpec spec = newSpec("Customer program");
+    BuildState state = newState(spec);
+    for (TargetKey key : spec.targets.keySet()) {
+      state.check(key);
+      state.record(key, 1500L);
+    }
+    state.save();
+
+    /* Up to date targets keep it, a baseline record without time too */
+    BuildSpec next = newSpec("Customer program");
+    BuildState nextState = newState(next);
+    TargetKey module = next.getTargetsList().get(0);
+    assertEquals(BuildState.Decision.UP_TO_DATE, nextState.check(module));
+    assertEquals(Long.valueOf(1500L), nextState.getDuration(module));
+    nextState.record(next.getTargetsList().get(1));
+    assertEquals(Long.valueOf(1500L), nextState.getDuration(next.getTargetsList().get(1)));
+  }
+
+  @Test
+  void test_Forgotten_Target_Is_Rebuilt() {
+    run(newSpec("Customer program"));
+
+    BuildSpec spec = newSpec("Customer program");
+    BuildState state = newState(spec);
+    state.forget(spec.getTargetsList().get(0));
+    state.save();
+
+    BuildSpec next = newSpec("Customer program");
+    BuildState nextState = newState(next);
+    assertEquals(BuildState.Decision.UNKNOWN, nextState.check(next.getTargetsList().get(0)));
+  }
+
+  @Test
+  void test_Include_Change_Rebuilds_Includer() {
+    TargetKey pgm = null;
+    BuildSpec spec = newSpec("Customers");
+    for (TargetKey key : spec.targets.keySet()) if (key.isProgram()) pgm = key;
+
+    BuildState state = new BuildState(null, BuildState.stateFileOf(spec), false, false);
+    state.setIncludes(Collections.singletonMap(pgm, Collections.singletonMap("QRPGLESRC/CUSTPR.RPGLEINC", "aaa")));
+    state.prepare(spec);
+    for (TargetKey key : spec.targets.keySet()) state.record(key);
+    state.save();
+
+    for (String hash : new String[] { "aaa", "bbb" }) {
+      spec = newSpec("Customers");
+      for (TargetKey key : spec.targets.keySet()) if (key.isProgram()) pgm = key;
+      state = new BuildState(null, BuildState.stateFileOf(spec), false, false);
+      state.load();
+      state.setIncludes(Collections.singletonMap(pgm, Collections.singletonMap("QRPGLESRC/CUSTPR.RPGLEINC", hash)));
+      state.prepare(spec);
+      for (TargetKey key : spec.targets.keySet()) {
+        BuildState.Decision expected = key.isProgram() && hash.equals("bbb") ? BuildState.Decision.CHANGED : BuildState.Decision.UP_TO_DATE;
+        assertEquals(expected, state.check(key), key.asString() + " with include " + hash);
+      }
+    }
+  }
+}
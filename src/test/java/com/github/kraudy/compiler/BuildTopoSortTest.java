@@ -0,0 +1,124 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BuildTopoSortTest {
+
+  private BuildSpec specOf(TargetKey... keys) {
+    BuildSpec spec = new BuildSpec();
+    for (TargetKey key : keys) {
+      spec.targets.put(key, new BuildSpec.TargetSpec());
+    }
+    spec.setTargetsList(spec.targets.keySet());
+    return spec;
+  }
+
+  private void link(TargetKey father, TargetKey child) {
+    father.addChild(child);
+    child.addFather(father);
+  }
+
+  private List<String> names(List<TargetKey> keys) {
+    List<String> names = new ArrayList<>();
+    for (TargetKey key : keys) names.add(key.getObjectName());
+    return names;
+  }
+
+  @Test
+  void test_Childs_First_And_Yaml_Order_Kept() {
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    TargetKey module = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    TargetKey file = new TargetKey("MYLIB.CUSTOMER.PF.DDS");
+    TargetKey other = new TargetKey("MYLIB.OTHER.PGM.CLLE");
+    link(pgm, module);
+    link(module, file);
+
+    BuildSpec spec = specOf(pgm, other, module, file);
+    List<TargetKey> order = new BuildTopoSort(false, false).topologicalSort(spec);
+
+    assertEquals(List.of("OTHER", "CUSTOMER", "CUSTMOD", "CUSTPGM"), names(order));
+  }
+
+  @Test
+  void test_Valid_Order_Is_Untouched() {
+    TargetKey file = new TargetKey("MYLIB.CUSTOMER.PF.DDS");
+    TargetKey other = new TargetKey("MYLIB.OTHER.PGM.CLLE");
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    link(pgm, file);
+
+    BuildSpec spec = specOf(file, other, pgm);
+    List<TargetKey> order = new BuildTopoSort(false, false).topologicalSort(spec);
+
+    assertEquals(List.of("CUSTOMER", "OTHER", "CUSTPGM"), names(order));
+  }
+
+  @Test
+  void test_Levels() {
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    TargetKey modA = new TargetKey("MYLIB.MODA.MODULE.RPGLE");
+    TargetKey modB = new TargetKey("MYLIB.MODB.MODULE.RPGLE");
+    TargetKey file = new TargetKey("MYLIB.CUSTOMER.PF.DDS");
+    link(pgm, modA);
+    link(pgm, modB);
+    link(modA, file);
+
+    List<List<TargetKey>> levels = new BuildTopoSort(false, false).levels(specOf(pgm, modA, modB, file));
+
+    assertEquals(3, levels.size());
+    assertEquals(List.of("MODB", "CUSTOMER"), names(levels.get(0)));
+    assertEquals(List.of("MODA"), names(levels.get(1)));
+    assertEquals(List.of("CUSTPGM"), names(levels.get(2)));
+  }
+
+  @Test
+  void test_Childs_Outside_Spec_Are_Ignored() {
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    TargetKey external = new TargetKey("MYLIB.EXTMOD.MODULE.RPGLE");
+    link(pgm, external);
+
+    List<List<TargetKey>> levels = new BuildTopoSort(false, false).levels(specOf(pgm));
+
+    assertEquals(1, levels.size());
+    assertEquals(List.of("CUSTPGM"), names(levels.get(0)));
+  }
+
+  @Test
+  void test_Cycle_Names_Targets() {
+    TargetKey modA = new TargetKey("MYLIB.MODA.MODULE.RPGLE");
+    TargetKey modB = new TargetKey("MYLIB.MODB.MODULE.RPGLE");
+    TargetKey modC = new TargetKey("MYLIB.MODC.MODULE.RPGLE");
+    TargetKey free = new TargetKey("MYLIB.FREE.MODULE.RPGLE");
+    link(modA, modB);
+    link(modB, modC);
+    link(modC, modA);
+
+    BuildSpec spec = specOf(free, modA, modB, modC);
+    CompilerException e = assertThrows(CompilerException.class, () -> new BuildTopoSort(false, false).topologicalSort(spec));
+
+    assertTrue(e.getMessage().contains(modA.asString() + " -> " + modB.asString() + " -> " + modC.asString() + " -> " + modA.asString()), e.getMessage());
+    assertFalse(e.getMessage().contains("FREE"));
+
+    assertThrows(CompilerException.class, () -> new BuildTopoSort(false, false).levels(spec));
+  }
+
+  @Test
+  void test_Reorder_Targets() {
+    TargetKey pgm = new TargetKey("MYLIB.CUSTPGM.PGM.RPGLE");
+    TargetKey module = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    link(pgm, module);
+
+    BuildSpec spec = specOf(pgm, module);
+    BuildSpec.TargetSpec pgmSpec = spec.targets.get(pgm);
+
+    spec.reorderTargets(new BuildTopoSort(false, false).topologicalSort(spec));
+
+    assertEquals(List.of("CUSTMOD", "CUSTPGM"), names(new ArrayList<>(spec.targets.keySet())));
+    assertEquals(List.of("CUSTMOD", "CUSTPGM"), names(spec.getTargetsList()));
+    assertSame(pgmSpec, spec.targets.get(pgm));
+  }
+}
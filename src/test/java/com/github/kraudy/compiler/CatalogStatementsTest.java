@@ -0,0 +1,35 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CatalogStatementsTest {
+
+  @Test
+  void testStatementsPreparedOnceAndClosed() throws Exception {
+    StubConnection stub = new StubConnection(Collections.singletonList(SourceDescriptorTest.row("NAME", "HELLO")));
+    CatalogStatements statements = new CatalogStatements(stub.connection());
+
+    for (String name : new String[] { "HELLO", "BYE" }) {
+      try (ResultSet rs = statements.query("SELECT NAME FROM QSYS2.SYSFILES WHERE TABLE_NAME = ?", name)) {
+        assertTrue(rs.next());
+      }
+    }
+    statements.execute("CALL QSYS2.QCMDEXC(?)", "DLTF MYLIB/HELLO");
+
+    assertEquals(2, stub.prepared, "One statement per text");
+    assertEquals(Arrays.asList("BYE"), stub.params.get(1));
+
+    statements.close();
+    assertEquals(2, stub.closed);
+
+    /* Closed statements are prepared again on the next use */
+    statements.query("SELECT NAME FROM QSYS2.SYSFILES WHERE TABLE_NAME = ?", "HELLO").close();
+    assertEquals(3, stub.prepared);
+  }
+}
@@ -0,0 +1,18 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommandCallBackendTest {
+
+  @Test
+  void testJobEnvironmentCommands() {
+    assertTrue(CommandCallBackend.changesJobEnvironment("CHGLIBL LIBL(MYLIB QGPL) CURLIB(MYLIB)"));
+    assertTrue(CommandCallBackend.changesJobEnvironment(" addlible MYLIB"));
+    assertTrue(CommandCallBackend.changesJobEnvironment("QSYS/CHGCURDIR DIR(''/home/user'')"));
+    assertTrue(CommandCallBackend.changesJobEnvironment("CHGCURLIB(MYLIB)"));
+    assertFalse(CommandCallBackend.changesJobEnvironment("CRTBNDRPG PGM(MYLIB/HELLO) SRCSTMF(''CHGLIBL.rpgle'')"));
+    assertFalse(CommandCallBackend.changesJobEnvironment("CHGLIBLX"));
+  }
+}
@@ -0,0 +1,189 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.stream.Stream;
+
+/* Dependency detection over local sources, no server needed */
+public class DependencyAwarenessTest {
+  private Path dir;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    dir = Files.createTempDirectory("deps");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  private void write(String relPath, String content) throws IOException {
+    Path file = dir.resolve(relPath);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private TargetKey target(BuildSpec spec, String key) {
+    return spec.getTargetKey(new TargetKey(key));
+  }
+
+  @Test
+  void test_Detects_Dependencies_From_Local_Sources() throws Exception {
+    write("sql/custfile.sql", "CREATE TABLE MYLIB.CUSTFILE (ID INT);\n");
+    write("rpg/hello.rpgle", "**FREE\ndcl-f custfile usage(*input);\ndsply 'hello';\n");
+    write("build.yaml",
+      "targets:\n" +
+      "  mylib.custfile.table.sql:\n" +
+      "    params:\n" +
+      "      SRCSTMF: sql/custfile.sql\n" +
+      "  mylib.hello.pgm.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/hello.rpgle\n");
+
+    BuildSpec spec = Utilities.deserializeYaml(dir.resolve("build.yaml").toString());
+    new DependencyAwareness(null, false, false).detectDependencies(spec);
+
+    TargetKey table = target(spec, "mylib.custfile.table.sql");
+    TargetKey program = target(spec, "mylib.hello.pgm.rpgle");
+
+    assertTrue(program.getChildsList().contains(table));
+    assertTrue(table.getFathersList().contains(program));
+    assertTrue(table.getChildsList().isEmpty());
+  }
+
+  @Test
+  void test_Links_Procedure_Callers_To_Exporters() throws Exception {
+    write("rpg/custmod.rpgle", "**FREE\nctl-opt nomain;\ndcl-proc getCustName export;\nend-proc;\n");
+    write("rpg/ordmod.rpgle", "**FREE\nctl-opt nomain;\ndcl-pr getCustName;\nend-pr;\n" +
+        "dcl-proc makeOrder export;\n  getCustName();\nend-proc;\n");
+    write("rpg/report.rpgle", "**FREE\ndcl-pr makeOrder;\nend-pr;\nmakeOrder();\n");
+    write("build.yaml",
+      "targets:\n" +
+      "  mylib.custmod.module.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/custmod.rpgle\n" +
+      "  mylib.ordmod.module.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/ordmod.rpgle\n" +
+      "  mylib.custsrv.srvpgm.bnd:\n" +
+      "    params:\n" +
+      "      MODULE: CUSTMOD\n" +
+      "  mylib.ordsrv.srvpgm.bnd:\n" +
+      "    params:\n" +
+      "      MODULE: ORDMOD\n" +
+      "  mylib.report.pgm.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/report.rpgle\n");
+
+    BuildSpec spec = Utilities.deserializeYaml(dir.resolve("build.yaml").toString());
+    new DependencyAwareness(null, false, false).detectDependencies(spec);
+
+    TargetKey custMod = target(spec, "mylib.custmod.module.rpgle");
+    TargetKey ordMod = target(spec, "mylib.ordmod.module.rpgle");
+    TargetKey custSrv = target(spec, "mylib.custsrv.srvpgm.bnd");
+    TargetKey ordSrv = target(spec, "mylib.ordsrv.srvpgm.bnd");
+    TargetKey report = target(spec, "mylib.report.pgm.rpgle");
+
+    assertTrue(ordMod.getChildsList().contains(custMod), "Caller module on the exporting module");
+    assertTrue(ordSrv.getChildsList().contains(custSrv), "Caller service program on the exporting one");
+    assertTrue(report.getChildsList().contains(ordSrv), "Program on the service program it calls");
+    assertFalse(report.getChildsList().contains(custSrv));
+  }
+
+  @Test
+  void test_Missing_Source_Fails_The_Scan() throws Exception {
+    write("build.yaml",
+      "targets:\n" +
+      "  mylib.hello.pgm.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/missing.rpgle\n");
+
+    BuildSpec spec = Utilities.deserializeYaml(dir.resolve("build.yaml").toString());
+
+    CompilerException e = assertThrows(CompilerException.class,
+        () -> new DependencyAwareness(null, false, false).detectDependencies(spec));
+    assertTrue(e.getMessage().contains("rpg/missing.rpgle"));
+  }
+
+  @Test
+  void test_Includes_Add_Dependencies_And_Hashes() throws Exception {
+    write("sql/custfile.sql", "CREATE TABLE MYLIB.CUSTFILE (ID INT);\n");
+    write("rpg/custmod.rpgle", "**FREE\nctl-opt nomain;\ndcl-proc getCustName export;\nend-proc;\n");
+    write("QRPGLESRC/CUSTPR.rpgleinc", "**FREE\ndcl-pr getCustName;\nend-pr;\n/include '../inc/files.rpgleinc'\n");
+    write("inc/files.rpgleinc", "**FREE\ndcl-f custfile usage(*input);\n");
+    write("rpg/report.rpgle", "**FREE\n/copy QRPGLESRC,CUSTPR\n/copy QRPGLESRC,NOTHERE\ngetCustName();\n");
+    write("build.yaml",
+      "targets:\n" +
+      "  mylib.custfile.table.sql:\n" +
+      "    params:\n" +
+      "      SRCSTMF: sql/custfile.sql\n" +
+      "  mylib.custmod.module.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/custmod.rpgle\n" +
+      "  mylib.report.module.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/report.rpgle\n");
+
+    BuildSpec spec = Utilities.deserializeYaml(dir.resolve("build.yaml").toString());
+    DependencyAwareness deps = new DependencyAwareness(null, false, false);
+    deps.detectDependencies(spec);
+
+    TargetKey table = target(spec, "mylib.custfile.table.sql");
+    TargetKey custMod = target(spec, "mylib.custmod.module.rpgle");
+    TargetKey report = target(spec, "mylib.report.module.rpgle");
+
+    /* The file comes from a nested include, the prototype from the member include */
+    assertTrue(report.getChildsList().contains(table));
+    assertTrue(report.getChildsList().contains(custMod));
+
+    assertEquals(new HashSet<>(Arrays.asList("QRPGLESRC/CUSTPR.rpgleinc", "inc/files.rpgleinc")),
+        deps.getIncludeHashes().get(report).keySet());
+    assertNull(deps.getIncludeHashes().get(custMod));
+
+    /* A copybook change shows in the hash */
+    String before = deps.getIncludeHashes().get(report).get("inc/files.rpgleinc");
+    write("inc/files.rpgleinc", "**FREE\ndcl-f custfile usage(*update);\n");
+    BuildSpec again = Utilities.deserializeYaml(dir.resolve("build.yaml").toString());
+    DependencyAwareness rescan = new DependencyAwareness(null, false, false);
+    rescan.detectDependencies(again);
+    assertNotEquals(before, rescan.getIncludeHashes().get(target(again, "mylib.report.module.rpgle")).get("inc/files.rpgleinc"));
+  }
+
+  @Test
+  void test_Include_Matches_Stream_File_In_Any_Case() throws Exception {
+    write("sql/custfile.sql", "CREATE TABLE MYLIB.CUSTFILE (ID INT);\n");
+    write("inc/files.rpgleinc", "**FREE\ndcl-f custfile usage(*input);\n");
+    write("rpg/report.rpgle", "**FREE\n/include 'INC/Files.RPGLEINC'\n");
+    write("build.yaml",
+      "targets:\n" +
+      "  mylib.custfile.table.sql:\n" +
+      "    params:\n" +
+      "      SRCSTMF: sql/custfile.sql\n" +
+      "  mylib.report.module.rpgle:\n" +
+      "    params:\n" +
+      "      SRCSTMF: rpg/report.rpgle\n");
+
+    BuildSpec spec = Utilities.deserializeYaml(dir.resolve("build.yaml").toString());
+    DependencyAwareness deps = new DependencyAwareness(null, false, false);
+    deps.detectDependencies(spec);
+
+    /* The root file system finds it whatever the case, the checkout name is kept */
+    TargetKey report = target(spec, "mylib.report.module.rpgle");
+    assertTrue(report.getChildsList().contains(target(spec, "mylib.custfile.table.sql")));
+    assertEquals(new HashSet<>(Arrays.asList("inc/files.rpgleinc")), deps.getIncludeHashes().get(report).keySet());
+  }
+}
@@ -0,0 +1,83 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class DependencyGraphTest {
+
+  private List<TargetKey> targets(int count) {
+    List<TargetKey> targets = new ArrayList<>();
+    for (int i = 0; i < count; i++) targets.add(new TargetKey("MYLIB.OBJ" + i + ".PGM.RPGLE"));
+    return targets;
+  }
+
+  private List<String> names(List<TargetKey> keys) {
+    List<String> names = new ArrayList<>();
+    for (TargetKey key : keys) names.add(key.getObjectName());
+    return names;
+  }
+
+  @Test
+  void test_Duplicates_And_Outside_Edges_Are_Dropped() {
+    List<TargetKey> targets = targets(3);
+    DependencyGraph graph = new DependencyGraph(targets);
+
+    assertTrue(graph.addEdge(targets.get(0), targets.get(1)));
+    assertFalse(graph.addEdge(targets.get(0), targets.get(1)), "Duplicate edge");
+    assertFalse(graph.addEdge(targets.get(0), targets.get(0)), "Self edge");
+    assertFalse(graph.addEdge(targets.get(0), new TargetKey("MYLIB.OTHER.PGM.RPGLE")), "Not a spec target");
+
+    assertEquals(1, graph.edgeCount());
+    assertEquals(1, graph.childCount(targets.get(0)));
+    assertTrue(targets.get(0).getChildsList().isEmpty(), "Targets are only linked by apply");
+
+    graph.apply();
+    assertEquals(List.of("OBJ1"), names(targets.get(0).getChildsList()));
+    assertEquals(List.of("OBJ0"), names(targets.get(1).getFathersList()));
+  }
+
+  @Test
+  void test_Parallel_Insertion_Gives_The_Same_Graph() throws Exception {
+    int size = 200;
+    List<TargetKey> targets = targets(size);
+    DependencyGraph graph = new DependencyGraph(targets);
+
+    /* Every target depends on all the lower ones, inserted from many threads in random order */
+    List<int[]> edges = new ArrayList<>();
+    for (int father = 0; father < size; father++) {
+      for (int child = 0; child < father; child++) {
+        edges.add(new int[]{father, child});
+        edges.add(new int[]{father, child});  // Same edge found twice
+      }
+    }
+    Collections.shuffle(edges);
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    for (int[] edge : edges) {
+      pool.submit(() -> graph.addEdge(targets.get(edge[0]), targets.get(edge[1])));
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+    graph.apply();
+
+    assertEquals(size * (size - 1) / 2, graph.edgeCount());
+    for (int i = 0; i < size; i++) {
+      List<TargetKey> childs = targets.get(i).getChildsList();
+      assertEquals(i, childs.size());
+      for (int c = 0; c < childs.size(); c++) assertSame(targets.get(c), childs.get(c), "Childs in spec order");
+
+      List<TargetKey> fathers = targets.get(i).getFathersList();
+      assertEquals(size - 1 - i, fathers.size());
+      for (int f = 0; f < fathers.size(); f++) assertSame(targets.get(i + 1 + f), fathers.get(f), "Fathers in spec order");
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.kraudy.compiler.DependencyIndex.Origin;
+import com.github.kraudy.compiler.SourceScanner.Dialect;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+public class DependencyIndexTest {
+  private Path dir;
+  private File indexFile;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    dir = Files.createTempDirectory("index");
+    indexFile = dir.resolve(DependencyIndex.INDEX_FILE).toFile();
+    Files.write(dir.resolve("hello.rpgle"), "**FREE\ndcl-f custfile;\n".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(dir)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+    }
+  }
+
+  /* One run: load, scan the source, save */
+  private DependencyIndex run() throws Exception {
+    DependencyIndex index = new DependencyIndex(indexFile, false);
+    index.load();
+    SourceCache sources = new SourceCache(dir.toString(), Arrays.asList(new LocalSourceProvider("local", dir)));
+    ScanResult scan = index.scan("hello.rpgle", Dialect.RPG, sources);
+    assertTrue(scan.getFiles().contains("CUSTFILE"));
+    index.save();
+    return index;
+  }
+
+  @Test
+  void test_Unchanged_Sources_Are_Not_Scanned_Again() throws Exception {
+    assertEquals(1, run().count(Origin.SCANNED));
+    assertTrue(indexFile.exists());
+
+    /* Same stamp, not even read */
+    assertEquals(1, run().count(Origin.STAMP));
+
+    /* Touched, same content */
+    Path source = dir.resolve("hello.rpgle");
+    Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 60_000));
+    assertEquals(1, run().count(Origin.HASH));
+
+    /* Changed content */
+    Files.write(source, "**FREE\ndcl-f custfile;\ndcl-f orders;\n".getBytes(StandardCharsets.UTF_8));
+    DependencyIndex index = run();
+    assertEquals(1, index.count(Origin.SCANNED));
+  }
+
+  @Test
+  void test_Each_Dialect_Keeps_Its_Scan() throws Exception {
+    SourceCache sources = new SourceCache(dir.toString(), Arrays.asList(new LocalSourceProvider("local", dir)));
+    DependencyIndex index = new DependencyIndex(indexFile, false);
+    index.load();
+    index.scan("hello.rpgle", Dialect.RPG, sources);
+    index.scan("hello.rpgle", Dialect.SQLRPG, sources);
+    index.scan("hello.rpgle", Dialect.RPG, sources);
+    assertEquals(2, index.count(Origin.SCANNED), "Scanned once per dialect");
+    assertNotNull(index.hashOf("hello.rpgle", Dialect.SQLRPG));
+    index.save();
+
+    /* The next run finds both */
+    DependencyIndex again = new DependencyIndex(indexFile, false);
+    again.load();
+    again.scan("hello.rpgle", Dialect.SQLRPG, sources);
+    again.scan("hello.rpgle", Dialect.RPG, sources);
+    assertEquals(2, again.count(Origin.STAMP));
+    assertEquals(0, again.count(Origin.SCANNED));
+  }
+
+  @Test
+  void test_Other_Dialect_Or_Broken_Index_Rescans() throws Exception {
+    run();
+
+    DependencyIndex index = new DependencyIndex(indexFile, false);
+    index.load();
+    SourceCache sources = new SourceCache(dir.toString(), Arrays.asList(new LocalSourceProvider("local", dir)));
+    index.scan("hello.rpgle", Dialect.SQLRPG, sources);
+    assertEquals(1, index.count(Origin.SCANNED));
+
+    Files.write(indexFile.toPath(), "{ not json".getBytes(StandardCharsets.UTF_8));
+    assertEquals(1, run().count(Origin.SCANNED));
+  }
+}
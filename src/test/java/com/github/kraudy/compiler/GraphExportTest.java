@@ -0,0 +1,66 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class GraphExportTest {
+
+  private void link(TargetKey father, TargetKey child) {
+    father.addChild(child);
+    child.addFather(father);
+  }
+
+  private List<String> names(List<TargetKey> keys) {
+    List<String> names = new ArrayList<>();
+    for (TargetKey key : keys) names.add(key.getObjectName());
+    return names;
+  }
+
+  /* CUSTFILE (100) <- CUSTMOD (300) <- CUSTSRV (50) <- REPORT (20), ORDERS (500) <- REPORT */
+  @Test
+  void test_Critical_Path_Is_The_Longest_Chain() throws Exception {
+    TargetKey custFile = new TargetKey("MYLIB.CUSTFILE.TABLE.SQL");
+    TargetKey orders = new TargetKey("MYLIB.ORDERS.TABLE.SQL");
+    TargetKey custMod = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    TargetKey custSrv = new TargetKey("MYLIB.CUSTSRV.SRVPGM.BND");
+    TargetKey report = new TargetKey("MYLIB.REPORT.PGM.RPGLE");
+    link(custMod, custFile);
+    link(custSrv, custMod);
+    link(report, custSrv);
+    link(report, orders);
+
+    Map<TargetKey, Long> durations = new IdentityHashMap<>();
+    durations.put(custFile, 100L);
+    durations.put(orders, 500L);
+    durations.put(custMod, 300L);
+    durations.put(report, 20L);  // CUSTSRV unknown, counts as zero
+
+    GraphExport graph = new GraphExport(Arrays.asList(custFile, orders, custMod, custSrv, report), durations);
+
+    assertEquals(Arrays.asList("ORDERS", "REPORT"), names(graph.getCriticalPath()));
+    assertEquals(520, graph.getCriticalMillis());
+    assertEquals(920, graph.getSerialMillis());
+
+    String dot = graph.toDot();
+    assertTrue(dot.contains("\"MYLIB.REPORT.PGM.RPGLE\" -> \"MYLIB.ORDERS.TABLE.SQL\" [color=red, penwidth=2];"));
+    assertTrue(dot.contains("\"MYLIB.REPORT.PGM.RPGLE\" -> \"MYLIB.CUSTSRV.SRVPGM.BND\";"));
+    assertTrue(dot.contains("MYLIB.CUSTSRV.SRVPGM.BND\\n?"));
+
+    JsonNode json = new ObjectMapper().readTree(graph.toJson());
+    assertEquals(520, json.get("criticalPathMillis").asLong());
+    assertEquals(5, json.get("nodes").size());
+    assertEquals(4, json.get("edges").size());
+    assertTrue(json.get("nodes").get(1).get("critical").asBoolean());
+    assertTrue(json.get("nodes").get(3).get("durationMillis").isNull());
+  }
+}
@@ -0,0 +1,105 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ImpactAnalysisTest {
+
+  private void link(TargetKey father, TargetKey child) {
+    father.addChild(child);
+    child.addFather(father);
+  }
+
+  private List<String> names(List<TargetKey> keys) {
+    List<String> names = new ArrayList<>();
+    for (TargetKey key : keys) names.add(key.getObjectName());
+    return names;
+  }
+
+  /* CUSTFILE <- CUSTMOD <- CUSTSRV <- REPORT, ORDERS <- ORDPGM */
+  private List<TargetKey> buildOrder() {
+    TargetKey custFile = new TargetKey("MYLIB.CUSTFILE.TABLE.SQL").setStreamSourceFile("sql/custfile.sql");
+    TargetKey orders = new TargetKey("MYLIB.ORDERS.TABLE.SQL").setStreamSourceFile("sql/orders.sql");
+    TargetKey custMod = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE").setStreamSourceFile("rpg/custmod.rpgle");
+    TargetKey custSrv = new TargetKey("MYLIB.CUSTSRV.SRVPGM.BND");
+    TargetKey ordPgm = new TargetKey("MYLIB.ORDPGM.PGM.RPGLE").setStreamSourceFile("rpg/ordpgm.rpgle");
+    TargetKey report = new TargetKey("MYLIB.REPORT.PGM.RPGLE").setStreamSourceFile("rpg/report.rpgle");
+
+    link(custMod, custFile);
+    link(custSrv, custMod);
+    link(report, custSrv);
+    link(ordPgm, orders);
+    link(report, custFile);
+
+    return Arrays.asList(custFile, orders, custMod, custSrv, ordPgm, report);
+  }
+
+  @Test
+  void test_Rebuild_Set_Is_Transitive_And_In_Build_Order() {
+    List<TargetKey> order = buildOrder();
+    ImpactAnalysis impact = new ImpactAnalysis(order);
+
+    assertEquals(Arrays.asList("CUSTFILE", "CUSTMOD", "CUSTSRV", "REPORT"),
+        names(impact.rebuildSet(Collections.singletonList(order.get(0)))));
+    assertEquals(Arrays.asList("ORDERS", "ORDPGM"), names(impact.rebuildSet(Collections.singletonList(order.get(1)))));
+    assertEquals(Arrays.asList("REPORT"), names(impact.rebuildSet(Collections.singletonList(order.get(5)))));
+
+    BitSet reached = impact.reach(Arrays.asList(order.get(2), order.get(1)));
+    assertEquals(5, reached.cardinality());
+    assertFalse(reached.get(0));
+  }
+
+  @Test
+  void test_Propagate_Checks_Only_Targets_With_Clean_Childs() throws Exception {
+    List<TargetKey> order = buildOrder();
+    ImpactAnalysis impact = new ImpactAnalysis(order);
+
+    /* Only CUSTMOD changed on its own */
+    List<String> checked = new ArrayList<>();
+    BitSet dirty = impact.propagate(key -> {
+      checked.add(key.getObjectName());
+      return key.getObjectName().equals("CUSTMOD");
+    });
+
+    assertEquals(Arrays.asList("CUSTMOD", "CUSTSRV", "REPORT"), names(impact.targetsOf(dirty)));
+    /* CUSTSRV and REPORT are dirty through CUSTMOD, their own state is never asked */
+    assertEquals(Arrays.asList("CUSTFILE", "ORDERS", "CUSTMOD", "ORDPGM"), checked);
+  }
+
+  @Test
+  void test_Changes_Resolve_By_Key_Or_Stream_File() throws Exception {
+    ImpactAnalysis impact = new ImpactAnalysis(buildOrder());
+
+    assertEquals(Arrays.asList("CUSTMOD"), names(impact.resolve("mylib.custmod.module.rpgle", "/home/user/build")));
+    assertEquals(Arrays.asList("ORDERS"), names(impact.resolve("sql/orders.sql", "/home/user/build")));
+    assertEquals(Arrays.asList("ORDERS"), names(impact.resolve("/home/user/build/sql/../sql/orders.sql", "/home/user/build")));
+    assertTrue(impact.resolve("sql/missing.sql", "/home/user/build").isEmpty());
+
+    /* A copybook names every target including it */
+    List<TargetKey> order = buildOrder();
+    Map<TargetKey, Map<String, String>> includes = new IdentityHashMap<>();
+    includes.put(order.get(2), Collections.singletonMap("qrpgleref/custpr.rpgleinc", "hash"));
+    includes.put(order.get(5), Collections.singletonMap("qrpgleref/custpr.rpgleinc", "hash"));
+    assertEquals(Arrays.asList("CUSTMOD", "REPORT"),
+        names(new ImpactAnalysis(order).setIncludes(includes).resolve("qrpgleref/custpr.rpgleinc", "/home/user/build")));
+
+    JsonNode report = new ObjectMapper().readTree(
+        impact.report(Arrays.asList("sql/orders.sql", "nothing.rpgle"), "/home/user/build", true));
+    assertEquals("MYLIB.ORDERS.TABLE.SQL", report.get("changed").get(0).asText());
+    assertEquals("nothing.rpgle", report.get("unmatched").get(0).asText());
+    assertEquals(2, report.get("rebuild").size());
+    assertEquals("MYLIB.ORDPGM.PGM.RPGLE", report.get("rebuild").get(1).asText());
+  }
+}
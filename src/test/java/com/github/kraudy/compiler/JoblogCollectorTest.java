@@ -0,0 +1,80 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.ibm.as400.access.AS400Message;
+
+public class JoblogCollectorTest {
+
+  @Test
+  void testCollectWithoutCommandsSkipsQuery() {
+    /* No connection needed, nothing ran */
+    JoblogCollector collector = new JoblogCollector(null);
+
+    assertFalse(collector.hasPending());
+    assertEquals("", collector.collect());
+  }
+
+  @Test
+  void testDiscardDropsPendingCommands() {
+    JoblogCollector collector = new JoblogCollector(null);
+    collector.begin("CRTBNDRPG PGM(MYLIB/HELLO)", new Timestamp(System.currentTimeMillis()));
+
+    assertTrue(collector.hasPending());
+    collector.discard();
+    assertFalse(collector.hasPending());
+    assertEquals("", collector.collect());
+  }
+
+  @Test
+  void testCompletedCommandsSkipQuery() {
+    /* No connection needed, the messages came back with the command */
+    JoblogCollector collector = new JoblogCollector(null);
+    collector.complete("CRTBNDRPG PGM(MYLIB/HELLO)", new Timestamp(System.currentTimeMillis()), new AS400Message[0]);
+
+    assertTrue(collector.hasPending());
+    assertEquals("\nJoblog info\nNo relevant joblog messages found.\n", collector.collect());
+    assertFalse(collector.hasPending());
+  }
+
+  @Test
+  void testReadBindsPositionAndTime() {
+    Timestamp since = Timestamp.valueOf(LocalDateTime.of(2025, 3, 1, 10, 5, 0));
+    StubConnection stub = new StubConnection(Collections.singletonList(SourceDescriptorTest.row(
+        "ORDINAL_POSITION", 42L, "MESSAGE_TIMESTAMP", since, "MESSAGE_ID", "CPC2206",
+        "SEVERITY", "0", "MESSAGE_TEXT", "Ownership of object changed.")));
+    JoblogCollector collector = new JoblogCollector(new CatalogStatements(stub.connection()));
+
+    /* Without a marker the position filter is off, the next read starts after the last message */
+    collector.begin("CRTBNDRPG PGM(MYLIB/HELLO)", since);
+    assertTrue(collector.collect().contains("CPC2206"));
+    collector.begin("CRTBNDRPG PGM(MYLIB/HELLO)", since);
+    collector.collect();
+
+    assertEquals(Arrays.asList(JoblogCollector.MESSAGES_QUERY, JoblogCollector.MESSAGES_QUERY), stub.sql);
+    assertEquals(Arrays.asList(-1L, -1L, since), stub.params.get(0));
+    assertEquals(Arrays.asList(42L, 42L, since), stub.params.get(1));
+    assertEquals(1, stub.prepared, "Prepared once for the job");
+  }
+
+  @Test
+  void testMessageFormat() {
+    StringBuilder sb = new StringBuilder();
+    Timestamp time = Timestamp.valueOf(LocalDateTime.of(2025, 3, 1, 10, 5, 7, 123_000_000));
+
+    JoblogCollector.appendMessage(sb, time, "CPC2206 ", "0 ", " Ownership of object changed. ");
+    JoblogCollector.appendMessage(sb, time, "SQL7905", "20", null);
+
+    assertEquals(
+      "2025-03-01 10:05:07  | CPC2206    | 0    | Ownership of object changed.\n" +
+      "2025-03-01 10:05:07  | SQL7905    | 20   | \n",
+      sb.toString());
+  }
+}
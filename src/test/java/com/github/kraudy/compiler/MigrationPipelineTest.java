@@ -0,0 +1,88 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MigrationPipelineTest {
+
+  /* Job without connection, the stages under test never touch the server */
+  private BuildJob job() {
+    return new BuildJob(1, null, null, new CatalogIndex(), true, false, false, true);
+  }
+
+  private List<TargetKey> targets(String... names) {
+    List<TargetKey> targets = new ArrayList<>();
+    for (String name : names) targets.add(new TargetKey("MYLIB." + name + ".PGM.RPGLE"));
+    return targets;
+  }
+
+  @Test
+  void test_Targets_Are_Prepared_In_Build_Order() throws Exception {
+    List<TargetKey> targets = targets("PGMA", "PGMB", "PGMC", "PGMD");
+    List<String> prepared = Collections.synchronizedList(new ArrayList<>());
+
+    try (MigrationPipeline pipeline = new MigrationPipeline(job(), targets, key -> false, 2,
+          (key, job) -> prepared.add(key.getObjectName()), false, false)) {
+      for (TargetKey target : targets) {
+        assertTrue(pipeline.await(target));
+        assertTrue(prepared.contains(target.getObjectName()), "Target must be prepared before it is built");
+      }
+    }
+
+    assertEquals(List.of("PGMA", "PGMB", "PGMC", "PGMD"), prepared);
+  }
+
+  @Test
+  void test_Next_Target_Is_Prepared_While_Current_Builds() throws Exception {
+    List<TargetKey> targets = targets("PGMA", "PGMB");
+    CountDownLatch nextPrepared = new CountDownLatch(1);
+
+    try (MigrationPipeline pipeline = new MigrationPipeline(job(), targets, key -> false, 1,
+          (key, job) -> { if (key.getObjectName().equals("PGMB")) nextPrepared.countDown(); }, false, false)) {
+      assertTrue(pipeline.await(targets.get(0)));
+      /* PGMA is "compiling", PGMB gets ready meanwhile */
+      assertTrue(nextPrepared.await(5, TimeUnit.SECONDS));
+      assertTrue(pipeline.await(targets.get(1)));
+    }
+  }
+
+  @Test
+  void test_Inline_Target_Is_A_Barrier() throws Exception {
+    List<TargetKey> targets = targets("PGMA", "HOOKED", "PGMC");
+    List<String> prepared = Collections.synchronizedList(new ArrayList<>());
+
+    try (MigrationPipeline pipeline = new MigrationPipeline(job(), targets, key -> key.getObjectName().equals("HOOKED"), 3,
+          (key, job) -> prepared.add(key.getObjectName()), false, false)) {
+      assertTrue(pipeline.await(targets.get(0)));
+      assertEquals(List.of("PGMA"), prepared, "Nothing after the hooked target is prepared before it is built");
+
+      assertFalse(pipeline.await(targets.get(1)));
+      assertEquals(List.of("PGMA"), prepared);
+
+      assertTrue(pipeline.await(targets.get(2)));
+    }
+
+    assertEquals(List.of("PGMA", "PGMC"), prepared);
+  }
+
+  @Test
+  void test_Preparation_Error_Is_Raised_On_Its_Target() throws Exception {
+    List<TargetKey> targets = targets("PGMA", "BROKEN");
+
+    try (MigrationPipeline pipeline = new MigrationPipeline(job(), targets, key -> false, 2,
+          (key, job) -> { if (key.getObjectName().equals("BROKEN")) throw new IllegalStateException("CPYFRMSTMF failed"); },
+          false, false)) {
+      assertTrue(pipeline.await(targets.get(0)));
+
+      CompilerException e = assertThrows(CompilerException.class, () -> pipeline.await(targets.get(1)));
+      assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MigrationPlanTest {
+
+  @Test
+  void test_Unplanned_Pair_Is_Unknown() {
+    MigrationPlan plan = new MigrationPlan();
+
+    assertNull(plan.sourcePfExists("MYLIB", "QDDSSRC"));
+    assertNull(plan.memberExists("MYLIB", "QDDSSRC", "CUSTOMER"));
+  }
+
+  @Test
+  void test_Missing_Source_Pf_Is_Known_Once_Resolved() {
+    MigrationPlan plan = new MigrationPlan();
+    plan.setSourcePfExists("MYLIB", "QDDSSRC", false);
+
+    assertEquals(false, plan.sourcePfExists("MYLIB", "QDDSSRC"));
+    assertEquals(false, plan.memberExists("MYLIB", "QDDSSRC", "CUSTOMER"));
+  }
+
+  @Test
+  void test_Created_Source_Pf_And_Member_Are_Recorded() {
+    MigrationPlan plan = new MigrationPlan();
+    plan.setSourcePfExists("MYLIB", "QDDSSRC", true);
+    plan.setMemberExists("MYLIB", "QDDSSRC", "CUSTOMER");
+
+    assertEquals(true, plan.sourcePfExists("MYLIB", "QDDSSRC"));
+    assertEquals(true, plan.memberExists("MYLIB", "QDDSSRC", "CUSTOMER"));
+    assertEquals(false, plan.memberExists("MYLIB", "QDDSSRC", "ORDERS"), "Other members of a resolved file are missing");
+    assertNull(plan.sourcePfExists("OTHERLIB", "QDDSSRC"));
+  }
+
+  @Test
+  void test_Same_Lock_Per_Source_Pf() {
+    MigrationPlan plan = new MigrationPlan();
+
+    assertSame(plan.lockOf("MYLIB", "QDDSSRC"), plan.lockOf("MYLIB", "QDDSSRC"));
+    assertNotSame(plan.lockOf("MYLIB", "QDDSSRC"), plan.lockOf("MYLIB", "QCLSRC"));
+  }
+
+  @Test
+  void test_Prefetch_Skips_Targets_Without_Member_Migration() throws Exception {
+    BuildSpec spec = new BuildSpec();
+    spec.targets.put(new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE"), new BuildSpec.TargetSpec());
+    spec.targets.put(new TargetKey("MYLIB.CUSTOMER.PF.DDS"), new BuildSpec.TargetSpec()); // No stream file
+    spec.setTargetsList(spec.targets.keySet());
+
+    /* Nothing to plan, the server is never asked */
+    new MigrationPlan().prefetch(null, spec, null, false);
+  }
+}
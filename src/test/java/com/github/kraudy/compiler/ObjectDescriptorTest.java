@@ -0,0 +1,83 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.kraudy.compiler.CompilationPattern.ParamCmd;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ObjectDescriptorTest {
+
+  /* No connection: any live lookup would fail, everything must come from the catalog index */
+  private ObjectDescriptor descriptorOf(CatalogIndex catalog) {
+    return new ObjectDescriptor(null, false, false, catalog);
+  }
+
+  @Test
+  void test_Prefetched_Pgm_Info_Is_Applied() throws Exception {
+    TargetKey key = new TargetKey("MYLIB.HELLO.PGM.RPGLE");
+
+    Map<String, String> row = new HashMap<>();
+    row.put("ACTGRP", "QILE");
+    row.put("STGMDL", "*SNGLVL");
+    row.put("TGTRLS", "V7R5M0");
+    row.put("TEXT", "Hello program");
+    row.put("FIXNBR", "1");
+
+    CatalogIndex catalog = new CatalogIndex();
+    catalog.setExists(key, true);
+    catalog.setObjectInfo(key, row);
+
+    descriptorOf(catalog).getObjectInfo(key);
+
+    assertTrue(key.objectExists());
+    assertEquals("QILE", key.get(ParamCmd.ACTGRP));
+    assertEquals("*NO", key.get(ParamCmd.DFTACTGRP));
+    assertEquals("*SNGLVL", key.get(ParamCmd.STGMDL));
+    assertEquals("V7R5M0", key.get(ParamCmd.TGTRLS));
+    assertEquals("*YES", key.get(ParamCmd.FIXNBR));
+  }
+
+  @Test
+  void test_Prefetched_Missing_Object() throws Exception {
+    TargetKey key = new TargetKey("MYLIB.HELLO.PGM.RPGLE");
+
+    CatalogIndex catalog = new CatalogIndex();
+    catalog.setExists(key, false);
+
+    descriptorOf(catalog).getObjectInfo(key);
+
+    assertFalse(key.objectExists());
+    assertEquals("", key.get(ParamCmd.ACTGRP));
+  }
+
+  @Test
+  void test_Prefetched_Without_Info_Row() throws Exception {
+    TargetKey key = new TargetKey("MYLIB.HELLO.MODULE.RPGLE");
+
+    CatalogIndex catalog = new CatalogIndex();
+    catalog.setExists(key, true);
+    catalog.setObjectInfo(key, Collections.emptyMap());
+
+    descriptorOf(catalog).getObjectInfo(key);
+
+    assertTrue(key.objectExists());
+    assertEquals("", key.get(ParamCmd.OPTIMIZE));
+  }
+
+  @Test
+  void test_Index_Is_By_Identity() {
+    TargetKey key = new TargetKey("MYLIB.HELLO.PGM.RPGLE");
+    TargetKey same = new TargetKey("MYLIB.HELLO.PGM.RPGLE");
+
+    CatalogIndex catalog = new CatalogIndex();
+    catalog.setExists(key, true);
+
+    assertTrue(catalog.exists(key));
+    assertNull(catalog.exists(same));
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Timestamp;
+
+public class ServerClockTest {
+
+  @Test
+  void testNowAppliesOffset() {
+    ServerClock clock = new ServerClock(60_000, 5);
+
+    long before = System.currentTimeMillis();
+    Timestamp now = clock.now();
+    long after = System.currentTimeMillis();
+
+    assertTrue(now.getTime() >= before + 60_000);
+    assertTrue(now.getTime() <= after + 60_000);
+  }
+
+  @Test
+  void testLowerBoundWidensByUncertainty() {
+    ServerClock clock = new ServerClock(0, 25);
+    Timestamp estimate = new Timestamp(1_000_000);
+
+    assertEquals(999_975, clock.lowerBound(estimate).getTime());
+    assertEquals(0, clock.getOffsetMillis());
+    assertEquals(25, clock.getUncertaintyMillis());
+  }
+}
@@ -0,0 +1,98 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class SourceCacheTest {
+  private Path mirror;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    mirror = Files.createTempDirectory("mirror");
+    Files.createDirectories(mirror.resolve("qrpglesrc"));
+    Files.write(mirror.resolve("qrpglesrc/hello.rpgle"), "**FREE\ndsply 'hello';\n".getBytes(StandardCharsets.UTF_8));
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(mirror.resolve("qrpglesrc/hello.rpgle"));
+    Files.deleteIfExists(mirror.resolve("qrpglesrc"));
+    Files.deleteIfExists(mirror);
+  }
+
+  @Test
+  void test_Concurrent_Readers_Share_One_Fetch() throws Exception {
+    SourceCache cache = new SourceCache("/home/user/build", Arrays.asList(new LocalSourceProvider("mirror", mirror)));
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> reads = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        reads.add(executor.submit(() -> cache.read("qrpglesrc/hello.rpgle")));
+      }
+      String first = reads.get(0).get(5, TimeUnit.SECONDS);
+      assertEquals("**FREE\ndsply 'hello';\n", first);
+      for (Future<String> read : reads) assertSame(first, read.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, cache.getReads("mirror"));
+  }
+
+  @Test
+  void test_Clear_Reads_Again() throws Exception {
+    SourceCache cache = new SourceCache("/home/user/build", Arrays.asList(new LocalSourceProvider("mirror", mirror)));
+
+    cache.read("qrpglesrc/hello.rpgle");
+    cache.clear();
+    cache.read("qrpglesrc/hello.rpgle");
+
+    assertEquals(2, cache.getReads("mirror"));
+  }
+
+  @Test
+  void test_Providers_In_Order_And_Missing_File() throws Exception {
+    Path other = Files.createTempDirectory("other");
+    try {
+      Files.write(other.resolve("only.sql"), "SELECT 1".getBytes(StandardCharsets.UTF_8));
+      SourceCache cache = new SourceCache("/home/user/build", Arrays.asList(
+        new LocalSourceProvider("mirror", mirror), new LocalSourceProvider("local", other)));
+
+      assertEquals("SELECT 1", cache.read("only.sql"));
+      assertEquals(0, cache.getReads("mirror"));
+      assertEquals(1, cache.getReads("local"));
+
+      CompilerException e = assertThrows(CompilerException.class, () -> cache.read("qrpglesrc/missing.rpgle"));
+      assertTrue(e.getMessage().contains("/home/user/build/qrpglesrc/missing.rpgle"));
+      assertNull(new LocalSourceProvider("local", other).read("/home/user/build/only.sql"), "Absolute paths are IFS paths");
+    } finally {
+      Files.deleteIfExists(other.resolve("only.sql"));
+      Files.deleteIfExists(other);
+    }
+  }
+
+  @Test
+  void test_Read_Chunks_Larger_Than_Buffer() throws IOException {
+    byte[] data = new byte[200 * 1024 + 7];
+    for (int i = 0; i < data.length; i++) data[i] = (byte) i;
+
+    assertArrayEquals(data, IfsSourceProvider.readChunks(new ByteArrayInputStream(data)));
+  }
+}
@@ -0,0 +1,176 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.kraudy.compiler.CompilationPattern.ObjectType;
+
+public class SourceDescriptorTest {
+
+  @Test
+  void test_Absolute_Stream_File() {
+    assertEquals("/home/user/repo/QRPGLESRC/HELLO.RPGLE", 
+        SourceDescriptor.absoluteStreamFile("/home/user/repo", "QRPGLESRC/HELLO.RPGLE"));
+    assertEquals("/home/user/repo/QRPGLESRC/HELLO.RPGLE", 
+        SourceDescriptor.absoluteStreamFile("/home/user/repo/", "./QRPGLESRC/HELLO.RPGLE"));
+    assertEquals("/home/user/common/HELLO.RPGLE", 
+        SourceDescriptor.absoluteStreamFile("/home/user/repo", "../common/HELLO.RPGLE"));
+    assertEquals("/other/HELLO.RPGLE", 
+        SourceDescriptor.absoluteStreamFile("/home/user/repo", "/other/HELLO.RPGLE"));
+  }
+
+  @Test
+  void test_Unresolved_Stream_File() {
+    assertNull(SourceDescriptor.absoluteStreamFile(null, "QRPGLESRC/HELLO.RPGLE"));
+    assertNull(SourceDescriptor.absoluteStreamFile("C:\\repo", "QRPGLESRC/HELLO.RPGLE"));
+    assertNull(SourceDescriptor.absoluteStreamFile("/home/user/repo", ""));
+  }
+
+  @Test
+  void test_Path_Key_Case() {
+    assertEquals("/HOME/USER/REPO/QRPGLESRC/HELLO.RPGLE", SourceDescriptor.pathKey("/home/user/repo/QRPGLESRC/hello.rpgle"));
+    assertEquals(SourceDescriptor.pathKey("/home/user/Hello.rpgle"), SourceDescriptor.pathKey("/HOME/USER/HELLO.RPGLE"));
+
+    /* QOpenSys is case sensitive below its own name */
+    assertEquals("/QOPENSYS/home/user/Hello.rpgle", SourceDescriptor.pathKey("/qopensys/home/user/Hello.rpgle"));
+    assertNotEquals(SourceDescriptor.pathKey("/QOpenSys/src/hello.rpgle"), SourceDescriptor.pathKey("/QOpenSys/src/HELLO.rpgle"));
+    assertEquals("/HOME/QOPENSYSX/A", SourceDescriptor.pathKey("/home/QOpenSysX/a"));
+  }
+
+  @Test
+  void test_Timestamps_From_Catalog_Index() throws Exception {
+    TargetKey key = new TargetKey("MYLIB.HELLO.PGM.RPGLE");
+    key.setStreamSourceFile("QRPGLESRC/HELLO.RPGLE");
+
+    Timestamp built = Timestamp.valueOf("2025-01-01 10:00:00");
+    Timestamp edited = Timestamp.valueOf("2025-01-02 10:00:00");
+
+    CatalogIndex catalog = new CatalogIndex();
+    catalog.setLastBuild(key, built);
+    catalog.setLastEdit(key, edited);
+
+    /* No connection: any live lookup would fail */
+    new SourceDescriptor(null, false, false, catalog).getObjectTimestamps(key);
+
+    assertTrue(key.needsRebuild());
+
+    catalog.setLastEdit(key, Timestamp.valueOf("2024-12-31 10:00:00"));
+    new SourceDescriptor(null, false, false, catalog).getObjectTimestamps(key);
+
+    assertFalse(key.needsRebuild());
+  }
+
+  @Test
+  void test_Module_And_Dds_Creation_Prefetch() throws Exception {
+    TargetKey module = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    module.setStreamSourceFile("QRPGLESRC/CUSTMOD.RPGLE");
+    TargetKey display = new TargetKey("MYLIB.CUSTDSP.DSPF.DDS");
+    display.setStreamSourceFile("QDDSSRC/CUSTDSP.DSPF");
+
+    BuildSpec spec = new BuildSpec();
+    spec.targets.put(module, new BuildSpec.TargetSpec());
+    spec.targets.put(display, new BuildSpec.TargetSpec());
+
+    Timestamp moduleCreated = Timestamp.valueOf("2025-01-02 10:00:00");
+    StubConnection stub = new StubConnection(Arrays.asList(
+      row("NAME", "CUSTMOD   ", "OBJCREATED", moduleCreated),
+      row("NAME", "OTHER", "OBJCREATED", Timestamp.valueOf("2025-01-03 10:00:00"))
+    ));
+    CatalogIndex catalog = new CatalogIndex();
+
+    /* No base directory: the stream files are left to the live lookup, only the creation is prefetched */
+    new SourceDescriptor(stub.connection(), false, false, catalog).prefetchTimestamps(spec);
+
+    assertEquals(2, stub.sql.size(), "One statement per object type");
+    assertTrue(stub.sql.get(0).contains("QSYS2.OBJECT_STATISTICS"));
+    assertTrue(stub.sql.get(0).contains("OBJTYPELIST => '*MODULE'"));
+    assertTrue(stub.sql.get(0).contains("('CUSTMOD')"));
+    assertTrue(stub.sql.get(1).contains("OBJTYPELIST => 'FILE'"));
+    assertTrue(stub.sql.get(1).contains("('CUSTDSP')"));
+
+    assertEquals(moduleCreated, catalog.lastBuild(module));
+    assertTrue(catalog.hasLastBuild(display), "Not found is known too");
+    assertNull(catalog.lastBuild(display));
+  }
+
+  @Test
+  void test_Module_And_Dds_Creation_Live() throws Exception {
+    TargetKey module = new TargetKey("MYLIB.CUSTMOD.MODULE.RPGLE");
+    module.setStreamSourceFile("QRPGLESRC/CUSTMOD.RPGLE");
+    TargetKey display = new TargetKey("MYLIB.CUSTDSP.DSPF.DDS");
+    display.setStreamSourceFile("QDDSSRC/CUSTDSP.DSPF");
+
+    /* Every query gets this row: creation from OBJECT_STATISTICS, last change from IFS_OBJECT_STATISTICS */
+    StubConnection stub = new StubConnection(Collections.singletonList(
+      row("OBJCREATED", Timestamp.valueOf("2025-01-02 10:00:00"),
+          "DATA_CHANGE_TIMESTAMP", Timestamp.valueOf("2025-01-01 10:00:00"))
+    ));
+    SourceDescriptor descriptor = new SourceDescriptor(stub.connection(), false, false, new CatalogIndex());
+    descriptor.getObjectTimestamps(module);
+    descriptor.getObjectTimestamps(display);
+
+    assertFalse(module.needsRebuild());
+    assertFalse(display.needsRebuild());
+
+    assertTrue(stub.sql.get(0).contains("QSYS2.OBJECT_STATISTICS"));
+    assertTrue(stub.sql.get(0).contains("SELECT OBJCREATED"));
+    assertEquals(Arrays.asList("*MODULE", "CUSTMOD"), stub.params.get(0));
+    assertEquals(Arrays.asList("FILE", "CUSTDSP"), stub.params.get(2));
+    assertEquals(stub.sql.get(0), stub.sql.get(2), "Same prepared text for every object type");
+  }
+
+  @Test
+  void test_Sql_Creation_Query_Of_Routines() {
+    for (ObjectType type : new ObjectType[] { ObjectType.PROCEDURE, ObjectType.FUNCTION }) {
+      String sql = SourceDescriptor.sqlCreationQuery(type, "?");
+      assertTrue(sql.contains("FROM QSYS2.SYSROUTINES "));
+      assertTrue(sql.contains("SPECIFIC_NAME As NAME"));
+      assertTrue(sql.contains("LAST_ALTERED As LAST_BUILD"));
+      assertTrue(sql.contains("SPECIFIC_NAME IN (?)"));
+      assertTrue(sql.contains("ROUTINE_TYPE = '" + type.name() + "'"));
+    }
+  }
+
+  @Test
+  void test_Sql_Creation_Query_Of_Triggers() {
+    String sql = SourceDescriptor.sqlCreationQuery(ObjectType.TRIGGER, "'TRG1', 'TRG2'");
+    assertTrue(sql.contains("FROM QSYS2.SYSTRIGGERS "));
+    assertTrue(sql.contains("TRIGGER_NAME As NAME"));
+    assertTrue(sql.contains("CREATED As LAST_BUILD"));
+    assertTrue(sql.contains("TRIGGER_NAME IN ('TRG1', 'TRG2')"));
+  }
+
+  @Test
+  void test_Sql_Creation_Query_Of_Sequences() {
+    String sql = SourceDescriptor.sqlCreationQuery(ObjectType.SEQUENCE, "?");
+    assertTrue(sql.contains("FROM QSYS2.SYSSEQUENCES "));
+    assertTrue(sql.contains("SEQUENCE_NAME As NAME"));
+    assertTrue(sql.contains("LAST_ALTERED_TIMESTAMP As LAST_BUILD"));
+    assertTrue(sql.contains("SEQUENCE_NAME IN (?)"));
+  }
+
+  @Test
+  void test_Sql_Creation_Query_Of_Files() {
+    for (ObjectType type : new ObjectType[] { ObjectType.TABLE, ObjectType.VIEW, ObjectType.INDEX, ObjectType.ALIAS }) {
+      String sql = SourceDescriptor.sqlCreationQuery(type, "?");
+      assertTrue(sql.contains("FROM QSYS2.SYSFILES "));
+      assertTrue(sql.contains("TABLE_NAME As NAME"));
+      assertTrue(sql.contains("LAST_ALTERED_TIMESTAMP As LAST_BUILD"));
+      assertTrue(sql.contains("TABLE_NAME IN (?)"));
+      assertTrue(sql.contains("SQL_OBJECT_TYPE = '" + type.name() + "'"), "Sql object type, not FILE: " + type);
+    }
+  }
+
+  static Map<String, Object> row(Object... columns) {
+    Map<String, Object> row = new HashMap<>();
+    for (int i = 0; i < columns.length; i += 2) row.put((String) columns[i], columns[i + 1]);
+    return row;
+  }
+}
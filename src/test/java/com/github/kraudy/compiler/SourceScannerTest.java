@@ -0,0 +1,234 @@
+package com.github.kraudy.compiler;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.kraudy.compiler.SourceScanner.Dialect;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class SourceScannerTest {
+
+  private Set<String> set(String... names) {
+    return new LinkedHashSet<>(Arrays.asList(names));
+  }
+
+  @Test
+  void test_Free_Rpg_Keywords_Files_And_Exports() {
+    String source =
+      "**FREE\n" +
+      "ctl-opt nomain bnddir('UTILS' : 'QC2LE');\n" +
+      "dcl-f custfile usage(*input) keyed;\n" +
+      "dcl-f MYLIB/ORDERS;\n" +
+      "dcl-ds custDs extname('CUSTFILE' : *all) qualified end-ds;\n" +
+      "dcl-s counter packed(5) dtaara('CNTAREA');\n" +
+      "dcl-pr runOrder extpgm('ORD100');\n" +
+      "end-pr;\n" +
+      "// dcl-f oldfile;   commented out\n" +
+      "dcl-proc getCustomerName export;\n" +
+      "end-proc;\n" +
+      "dcl-proc internalHelper;\n" +
+      "  dsply 'export';\n" +
+      "end-proc;\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.RPG);
+
+    assertEquals(set("UTILS", "QC2LE"), scan.getBndDirs());
+    assertEquals(set("CUSTFILE", "ORDERS"), scan.getFiles());
+    assertEquals(set("CUSTFILE"), scan.getExtNames());
+    assertEquals(set("CNTAREA"), scan.getDtaAras());
+    assertEquals(set("ORD100"), scan.getExtPgms());
+    assertEquals(set("GETCUSTOMERNAME"), scan.getExports(), "EXPORT must belong to the procedure header");
+  }
+
+  @Test
+  void test_Fixed_Rpg_Specs() {
+    String source =
+      "     H BNDDIR('UTILS')\n" +
+      "     FCUSTFILE  IF   E           K DISK\n" +
+      "     F* ORDERS is not used anymore\n" +
+      "     FORDERS    UF A E           K DISK\n" +
+      "     P GetCust         B                   EXPORT\n" +
+      "     P Helper          B\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.RPG);
+
+    assertEquals(set("UTILS"), scan.getBndDirs());
+    assertEquals(set("CUSTFILE", "ORDERS"), scan.getFiles());
+    assertEquals(set("GETCUST"), scan.getExports());
+  }
+
+  @Test
+  void test_Embedded_Sql_Only_Inside_Exec_Sql() {
+    String source =
+      "**FREE\n" +
+      "dcl-s from int;\n" +
+      "exec sql declare c1 cursor for\n" +
+      "  select c.name into :name\n" +
+      "  from MYLIB.CUSTOMER c, \"DETORD\" as d -- , NOTATABLE\n" +
+      "  inner join ORDERS o on o.id = c.id\n" +
+      "  where c.id = :id;\n" +
+      "exec sql update STOCK set qty = 0;\n" +
+      "update notsql;\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.SQLRPG);
+
+    assertEquals(set("CUSTOMER", "DETORD", "ORDERS", "STOCK"), scan.getSqlTables());
+  }
+
+  @Test
+  void test_Sql_Statement_Tables() {
+    String source =
+      "/* Report view over FROM OLDTABLE */\n" +
+      "CREATE OR REPLACE VIEW MYLIB.CUSTRPT AS\n" +
+      "  SELECT * FROM CUSTOMER C, ORDERS O, \n" +
+      "    DETORD\n" +
+      "  WHERE C.ID = O.ID, LOOSE;\n" +
+      "INSERT INTO AUDIT VALUES (1);\n" +
+      "SELECT * FROM TABLE(QSYS2.OBJECT_STATISTICS('MYLIB', '*ALL')) X;\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.SQL);
+
+    assertEquals(set("CUSTOMER", "ORDERS", "DETORD", "AUDIT"), scan.getSqlTables());
+  }
+
+  @Test
+  void test_Dds_Keywords() {
+    String source =
+      "     A*  REF(OLDREF) commented\n" +
+      "     A                                      REF(CUSTREF)\n" +
+      "     A          R CUSTLR                    PFILE(CUSTPF)\n" +
+      "     A            NAME          R               REFFLD(CUSNAM MYLIB/CUSTREF)\n" +
+      "     A            CODE          R               REFFLD(CUSCOD)\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.DDS);
+
+    assertEquals(set("CUSTREF"), scan.getRefFiles());
+    assertEquals(set("CUSTPF"), scan.getPfiles());
+    assertEquals(set("CUSTREF"), scan.getRefFldFiles());
+  }
+
+  @Test
+  void test_Cl_Calls() {
+    String source =
+      "PGM\n" +
+      "  /* CALL PGM(OLDPGM) */\n" +
+      "  CALL PGM(MYLIB/ORD100)\n" +
+      "  CALL ORD200 PARM(&A)\n" +
+      "  CALL 'ORD300'\n" +
+      "  CALL +\n" +
+      "    PGM(ORD400)\n" +
+      "  CALL PGM(&DYNAMIC)\n" +
+      "ENDPGM\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.CL);
+
+    assertEquals(set("ORD100", "ORD200", "ORD300", "ORD400"), scan.getCalls());
+  }
+
+  @Test
+  void test_Called_Prototypes_Are_Procedure_Calls() {
+    String source =
+      "**FREE\n" +
+      "dcl-pr getCustName varchar(50);\n" +
+      "  id int(10) const;\n" +
+      "end-pr;\n" +
+      "dcl-pr logIt extproc('LOG_MESSAGE');\n" +
+      "end-pr;\n" +
+      "dcl-pr notCalled extproc('NEVER');\n" +
+      "end-pr;\n" +
+      "dcl-pr runOrder extpgm('ORD100');\n" +
+      "end-pr;\n" +
+      "dcl-pr dynamic extproc(procPtr);\n" +
+      "end-pr;\n" +
+      "name = getCustName(1);\n" +
+      "callp logIt;\n" +
+      "runOrder();\n" +
+      "dynamic();\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.RPG);
+
+    assertEquals(set("GETCUSTNAME", "LOG_MESSAGE"), scan.getProcedureCalls());
+    assertEquals(set("ORD100"), scan.getExtPgms());
+  }
+
+  @Test
+  void test_Fixed_Prototypes_Are_Procedure_Calls() {
+    String source =
+      "     D GetCust         PR            50A\n" +
+      "     D                                     EXTPROC('GET_CUSTOMER')\n" +
+      "     D  id                           10I 0 CONST\n" +
+      "     D Helper          PR\n" +
+      "     C                   CALLP     GetCust(1)\n" +
+      "     C                   EVAL      x = Helper()\n";
+
+    ScanResult scan = SourceScanner.scan(source, Dialect.RPG);
+
+    assertEquals(set("GET_CUSTOMER", "HELPER"), scan.getProcedureCalls());
+  }
+
+  @Test
+  void test_Large_Source_Scans_In_Linear_Time() {
+    /* Many procedures without EXPORT used to make the lazy DOTALL pattern crawl */
+    StringBuilder sb = new StringBuilder("**FREE\n");
+    for (int i = 0; i < 20000; i++) {
+      sb.append("dcl-proc proc").append(i).append(";\n  x = y + 1; // comment\nend-proc;\n");
+    }
+    sb.append("dcl-proc lastOne export;\nend-proc;\n");
+
+    long start = System.nanoTime();
+    ScanResult scan = SourceScanner.scan(sb.toString(), Dialect.RPG);
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(set("LASTONE"), scan.getExports());
+    assertTrue(millis < 5000, "Scan took " + millis + " ms");
+  }
+
+  @Test
+  void test_Include_Directives() {
+    String rpg =
+      "**FREE\n" +
+      "/COPY QRPGLESRC,CUSTPR\n" +
+      "/include MYLIB/QCPYSRC,Dates // comment\n" +
+      "/INCLUDE 'qrpgleref/util.rpgleinc'\n" +
+      "/copy utils\n" +
+      "/COPYRIGHT is not a directive\n" +
+      "exec sql include sqlca;\n" +
+      "exec sql include ordsql;\n";
+    assertEquals(set("QRPGLESRC,CUSTPR", "QCPYSRC,DATES", "qrpgleref/util.rpgleinc", "UTILS", "ORDSQL"),
+        SourceScanner.scan(rpg, Dialect.SQLRPG).getIncludes());
+
+    String fixed =
+      "     H DFTACTGRP(*NO)\n" +
+      "      /COPY QRPGLESRC,FIXPR\n" +
+      "     C*    /COPY QRPGLESRC,OLDPR\n";
+    assertEquals(set("QRPGLESRC,FIXPR"), SourceScanner.scan(fixed, Dialect.RPG).getIncludes());
+
+    String cl =
+      "PGM\n" +
+      "  INCLUDE SRCMBR(CLINC) +\n" +
+      "          SRCFILE(MYLIB/QCLSRC)\n" +
+      "  INCLUDE SRCSTMF('cl/common.clinc')\n" +
+      "  CRTRPGMOD MODULE(X) SRCMBR(NOTINC)\n" +
+      "  CALL PGM(ORD100)\n" +
+      "ENDPGM\n";
+    ScanResult clScan = SourceScanner.scan(cl, Dialect.CL);
+    assertEquals(set("CLINC", "cl/common.clinc"), clScan.getIncludes());
+    assertEquals(set("ORD100"), clScan.getCalls());
+  }
+
+  @Test
+  void test_Calls_Resolve_Against_Included_Prototypes() {
+    ScanResult copybook = SourceScanner.scan("**FREE\ndcl-pr getCustName extproc('CUST_NAME');\nend-pr;\n", Dialect.RPG);
+    ScanResult program = SourceScanner.scan("**FREE\n/copy QRPGLESRC,CUSTPR\nname = getCustName(1);\n", Dialect.RPG);
+    assertTrue(program.getProcedureCalls().isEmpty());
+
+    ScanResult merged = new ScanResult();
+    merged.addAll(program);
+    merged.addAll(copybook);
+    assertEquals(set("CUST_NAME"), merged.getProcedureCalls());
+  }
+}
@@ -26,7 +26,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -477,10 +479,23 @@ public class StreamCompilationIT {
       errorFound = diffCompiler.foundCompilationError();
       assertFalse(errorFound, "Diff build failed");
 
-      // ASSERTIONS: Only changed targets rebuilt, others skipped
-      int expectedRebuilt = changedRelativePaths.size() + 1;  // Add one for bnddir build
-      assertEquals(expectedRebuilt, diffCompiler.getBuiltCount(), "Diff build should rebuild only changed sources");
-      assertEquals(totalTargets - expectedRebuilt, diffCompiler.getSkippedCount(), "Diff build should skip unchanged");
+      // ASSERTIONS: Changed targets and every target depending on them rebuilt, others skipped
+      // ADDNUM is the ExtPgm and ART200D the DSPF of ART200, which is the top of art200.yaml
+      List<String> expectedRebuilt = List.of(
+        "CURLIB.ADDNUM.PGM.RPGLE",
+        "CURLIB.ART200D.DSPF.DDS",
+        "CURLIB.ART200.PGM.SQLRPGLE"
+      );
+      Set<TargetKey> expectedKeys = Collections.newSetFromMap(new IdentityHashMap<>());
+      for (String target : expectedRebuilt) {
+        TargetKey key = spec.getTargetKey(new TargetKey(target));
+        assertNotNull(key, "Expected rebuild should be a spec target: " + target);
+        expectedKeys.add(key);
+      }
+      Set<TargetKey> builtKeys = Collections.newSetFromMap(new IdentityHashMap<>());
+      builtKeys.addAll(diffCompiler.getBuiltTargets());
+      assertEquals(expectedKeys, builtKeys, "Diff build should rebuild changed sources and their fathers");
+      assertEquals(totalTargets - expectedRebuilt.size(), diffCompiler.getSkippedCount(), "Diff build should skip unchanged");
 
     } catch (CompilerException e) {
       System.out.println(e.getFullContext());
@@ -0,0 +1,107 @@
+package com.github.kraudy.compiler;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Connection without a server for catalog lookups: every query returns the same rows and the SQL,
+ * parameters and closed statements are recorded. Only the JDBC methods used by the descriptors
+ * are answered, anything else fails the test.
+ */
+class StubConnection {
+  final List<String> sql = new ArrayList<>();        // Statement text in execution order
+  final List<List<Object>> params = new ArrayList<>(); // Bound parameters per execution, empty for plain statements
+  int prepared = 0;
+  int closed = 0;
+
+  private final List<Map<String, Object>> rows;
+
+  StubConnection(List<Map<String, Object>> rows) {
+    this.rows = rows;
+  }
+
+  Connection connection() {
+    return proxy(Connection.class, (name, args) -> {
+      switch (name) {
+        case "createStatement": return statement(null);
+        case "prepareStatement": prepared++; return statement((String) args[0]);
+        default: throw new UnsupportedOperationException(name);
+      }
+    });
+  }
+
+  private PreparedStatement statement(String preparedSql) {
+    List<Object> bound = new ArrayList<>();
+    boolean[] isClosed = { false };
+    return proxy(PreparedStatement.class, (name, args) -> {
+      switch (name) {
+        case "setString":
+        case "setObject":
+          while (bound.size() < (int) args[0]) bound.add(null);
+          bound.set((int) args[0] - 1, args[1]);
+          return null;
+        case "clearParameters": bound.clear(); return null;
+        case "setFetchSize": return null;
+        case "executeQuery":
+          record(preparedSql != null ? preparedSql : (String) args[0], bound);
+          return resultSet();
+        case "execute":
+          record(preparedSql != null ? preparedSql : (String) args[0], bound);
+          return false;
+        case "isClosed": return isClosed[0];
+        case "close":
+          if (!isClosed[0]) closed++;
+          isClosed[0] = true;
+          return null;
+        default: throw new UnsupportedOperationException(name);
+      }
+    });
+  }
+
+  private void record(String text, List<Object> bound) {
+    sql.add(text);
+    params.add(new ArrayList<>(bound));
+  }
+
+  private ResultSet resultSet() {
+    Iterator<Map<String, Object>> it = rows.iterator();
+    Object[] current = { null };
+    return proxy(ResultSet.class, (name, args) -> {
+      switch (name) {
+        case "next":
+          current[0] = it.hasNext() ? it.next() : null;
+          return current[0] != null;
+        case "getString":
+        case "getTimestamp":
+        case "getLong":
+          @SuppressWarnings("unchecked")
+          Object value = ((Map<String, Object>) current[0]).get((String) args[0]);
+          return value;
+        case "setFetchSize":
+        case "close": return null;
+        default: throw new UnsupportedOperationException(name);
+      }
+    });
+  }
+
+  private interface Handler {
+    Object invoke(String name, Object[] args) throws Exception;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T proxy(Class<T> type, Handler handler) {
+    return (T) Proxy.newProxyInstance(StubConnection.class.getClassLoader(), new Class<?>[] { type },
+      (self, method, args) -> {
+        if (method.getName().equals("toString")) return type.getSimpleName() + " stub";
+        return handler.invoke(method.getName(), args == null ? new Object[0] : Arrays.copyOf(args, args.length));
+      });
+  }
+}
@@ -297,6 +297,19 @@ public class TargetKeyTest {
     assertFalse(key.needsRebuild());
   }
 
+  @Test
+  void testInvalidatedNeedsRebuild() {
+    TargetKey key = new TargetKey("MYLIB.HELLO.PGM.RPGLE");
+    key.setLastBuild(Timestamp.valueOf("2023-01-02 00:00:00"))
+       .setLastEdit(Timestamp.valueOf("2023-01-01 00:00:00"));
+    assertFalse(key.needsRebuild());
+
+    // A child was rebuilt: rebuild even if the source is older
+    key.invalidate();
+    assertTrue(key.isInvalidated());
+    assertTrue(key.needsRebuild());
+  }
+
   @Test
   void testDefaultParamsApplied() {
     TargetKey key = new TargetKey("MYLIB.HELLO.PGM.RPGLE");
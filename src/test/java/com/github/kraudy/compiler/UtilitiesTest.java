@@ -9,7 +9,14 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class UtilitiesTest {
   @Test
@@ -251,6 +258,34 @@ public class UtilitiesTest {
     }
   }
 
+  @Test
+  void testIoExecutor_BoundsConcurrentTasks() throws Exception {
+    ExecutorService executor = Utilities.newIoExecutor(2, "test-io-");
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        futures.add(executor.submit(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try { Thread.sleep(20); } catch (InterruptedException e) { }
+          running.decrementAndGet();
+        }));
+      }
+      for (Future<?> future : futures) future.get(5, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertTrue(maxRunning.get() <= 2, "At most 2 tasks at once: " + maxRunning.get());
+  }
+
+  @Test
+  void testSqlValuesList_EscapesQuotes() {
+    assertEquals("('ART200'), ('O''BRIEN')", Utilities.sqlValuesList(Arrays.asList("ART200", "O'BRIEN")));
+    assertEquals("", Utilities.sqlValuesList(new ArrayList<>()));
+  }
+
   /*
    * Negative validations
    */